@@ -0,0 +1,94 @@
+package com.abc.tradingstatisticsservice.benchmark;
+
+import com.abc.tradingstatisticsservice.aggregation.AccumulatorMode;
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.BackfillResult;
+import com.abc.tradingstatisticsservice.ingest.BackfillFormat;
+import com.abc.tradingstatisticsservice.ingest.BackfillLoader;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Time of loading a file of PRICES tick prices into a new symbol (prices/s = PRICES / time). Sums are COMPENSATED,
+// BIG_DECIMAL sums would dominate the load time.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx3g"})
+public class BackfillBenchmark {
+    private static final int PRICES = 10_000_000;
+
+    @Param({"CSV", "BINARY"})
+    public BackfillFormat format;
+
+    @Param({"1", "0"})
+    public int threads;
+
+    private Path directory;
+    private TradingStatsProperties properties;
+    private TradingStatsService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        Benchmarks.quietLogging();
+        directory = Files.createTempDirectory("tss-backfill-benchmark");
+        float[] prices = PriceDistribution.TICK.generate(PRICES, 1);
+        if (format == BackfillFormat.CSV) {
+            try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve("prices"))) {
+                for (float price : prices) {
+                    writer.write(Float.toString(price));
+                    writer.write('\n');
+                }
+            }
+        } else {
+            ByteBuffer bytes = ByteBuffer.allocate(PRICES * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asFloatBuffer().put(prices);
+            Files.write(directory.resolve("prices"), bytes.array());
+        }
+        properties = new TradingStatsProperties();
+        properties.setAccumulatorMode(AccumulatorMode.COMPENSATED);
+        properties.getBackfill().setDirectory(directory);
+        properties.getBackfill().setThreads(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void newService() {
+        service = new TradingStatsService(properties);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("prices"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public BackfillResult load() {
+        BackfillResult result = new BackfillLoader(service, properties).load("LOAD", "prices", format);
+        if (result.getError() != null || result.getPrices() != PRICES) {
+            throw new IllegalStateException("Backfill failed: " + result.getError());
+        }
+        return result;
+    }
+}
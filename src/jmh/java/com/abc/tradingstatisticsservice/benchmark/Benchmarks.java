@@ -0,0 +1,17 @@
+package com.abc.tradingstatisticsservice.benchmark;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+final class Benchmarks {
+    // K level window sizes of TradingStatsService
+    static final long[] K_SIZES = {10, 100, 1000, 10_000, 100_000, 1000_000, 10_000_000, 100_000_000};
+
+    private Benchmarks() {
+    }
+
+    // The service logs every batch at INFO, which would be measured along with it
+    static void quietLogging() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+}
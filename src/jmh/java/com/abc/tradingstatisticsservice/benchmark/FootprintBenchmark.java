@@ -0,0 +1,77 @@
+package com.abc.tradingstatisticsservice.benchmark;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.abc.tradingstatisticsservice.storage.StorageMode;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+// Bytes retained per symbol after loading SYMBOLS symbols: residentBytesPerSymbol is what the memory budget
+// accounts for, heapBytesPerSymbol the heap growth measured after a full GC. The time is that of loading them.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx3g"})
+public class FootprintBenchmark {
+    private static final int SYMBOLS = 32;
+
+    @Param({"10000", "1000000"})
+    public int prices;
+
+    @Param({"HEAP", "COMPRESSED"})
+    public StorageMode storageMode;
+
+    @Param({"TICK", "UNIFORM"})
+    public PriceDistribution distribution;
+
+    private float[] history;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long residentBytesPerSymbol;
+        public long heapBytesPerSymbol;
+    }
+
+    @Setup
+    public void setUp() {
+        Benchmarks.quietLogging();
+        history = distribution.generate(prices, 4);
+    }
+
+    @Benchmark
+    public TradingStatsService load(Footprint footprint) throws InsufficientDataException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getStorage().setMode(storageMode);
+        TradingStatsService service = new TradingStatsService(properties);
+        for (int s = 0; s < SYMBOLS; s++) {
+            service.addHistory("S" + s, history, history.length);
+        }
+
+        System.gc();
+        footprint.residentBytesPerSymbol = service.getResidentBytes() / SYMBOLS;
+        footprint.heapBytesPerSymbol = (memory.getHeapMemoryUsage().getUsed() - heapBefore) / SYMBOLS;
+        return service;
+    }
+}
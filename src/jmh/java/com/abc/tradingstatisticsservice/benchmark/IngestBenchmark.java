@@ -0,0 +1,71 @@
+package com.abc.tradingstatisticsservice.benchmark;
+
+import com.abc.tradingstatisticsservice.aggregation.AccumulatorMode;
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+// addBatch throughput of one symbol, an operation is one batch of batchSize prices (prices/s = ops/s * batchSize).
+// The history of the symbol fills up and then wraps around as the run goes on, like a live symbol.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx3g"})
+public class IngestBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int batchSize;
+
+    @Param({"TICK", "UNIFORM", "CONSTANT"})
+    public PriceDistribution distribution;
+
+    @Param({"BIG_DECIMAL", "COMPENSATED"})
+    public AccumulatorMode accumulatorMode;
+
+    // rolling p50/p95/p99, see WindowQuantiles
+    @Param({"false", "true"})
+    public boolean quantiles;
+
+    private TradingStatsService service;
+    private Float[] boxedPrices;
+    private FloatBuffer prices;
+
+    @Setup
+    public void setUp() {
+        Benchmarks.quietLogging();
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setAccumulatorMode(accumulatorMode);
+        properties.setQuantilesEnabled(quantiles);
+        service = new TradingStatsService(properties);
+        boxedPrices = distribution.generateBoxed(batchSize, 1);
+        prices = FloatBuffer.wrap(distribution.generate(batchSize, 1));
+    }
+
+    // JSON path: boxed prices as deserialized from /add_batch/
+    @Benchmark
+    public void addBatch() throws InsufficientDataException {
+        service.addBatch("BENCH", boxedPrices);
+    }
+
+    // Binary and streaming path: prices read from a buffer without boxing
+    @Benchmark
+    public void addBatchUnboxed() throws InsufficientDataException {
+        service.addBatch("BENCH", prices);
+    }
+}
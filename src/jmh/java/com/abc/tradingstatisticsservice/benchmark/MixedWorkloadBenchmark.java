@@ -0,0 +1,74 @@
+package com.abc.tradingstatisticsservice.benchmark;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Concurrent writers and readers over a set of symbols: 2 threads add batches of 1000 prices and 6 threads read
+// stats of k levels 1-5 of random symbols. With a single symbol all threads contend on one symbol lock.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx3g"})
+public class MixedWorkloadBenchmark {
+    private static final int BATCH_SIZE = 1000;
+    private static final int READ_LEVELS = 5;
+
+    @Param({"1", "16", "256"})
+    public int symbols;
+
+    private TradingStatsService service;
+    private String[] names;
+    private Float[] batch;
+
+    @State(Scope.Thread)
+    public static class ThreadRandom {
+        final SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+    }
+
+    @Setup
+    public void setUp() throws InsufficientDataException {
+        Benchmarks.quietLogging();
+        service = new TradingStatsService(new TradingStatsProperties());
+        names = new String[symbols];
+        float[] history = PriceDistribution.TICK.generate((int) Benchmarks.K_SIZES[READ_LEVELS - 1], 2);
+        for (int s = 0; s < symbols; s++) {
+            names[s] = "S" + s;
+            service.addHistory(names[s], history, history.length);
+        }
+        batch = PriceDistribution.TICK.generateBoxed(BATCH_SIZE, 3);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public void write(ThreadRandom thread) throws InsufficientDataException {
+        service.addBatch(names[thread.random.nextInt(symbols)], batch);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(6)
+    public TradingStats read(ThreadRandom thread) throws InsufficientDataException {
+        return service.calculateStats(names[thread.random.nextInt(symbols)], 1 + thread.random.nextInt(READ_LEVELS));
+    }
+}
@@ -0,0 +1,59 @@
+package com.abc.tradingstatisticsservice.benchmark;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+import com.abc.tradingstatisticsservice.storage.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Time per price of reading a full history back in blocks of 1024, as window scans and checkpoints do. COMPRESSED
+// decodes every block, HEAP is the plain copy it is compared to.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class PriceDecodeBenchmark {
+    private static final int PRICES = 1_000_000;
+
+    @Param({"HEAP", "COMPRESSED"})
+    public StorageMode storageMode;
+
+    @Param({"TICK", "UNIFORM"})
+    public PriceDistribution distribution;
+
+    private PriceHistory history;
+    private final float[] block = new float[1024];
+
+    @Setup
+    public void setUp() {
+        history = new PriceHistory(PRICES, storageMode.newStore("DECODE", PRICES, Path.of("target", "jmh-prices")));
+        float[] prices = distribution.generate(PRICES, 11);
+        history.appendAll(prices, 0, prices.length);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRICES)
+    public float copyBlocks() {
+        float checksum = 0;
+        for (long sequence = 0; sequence < PRICES; sequence += block.length) {
+            int length = (int) Math.min(block.length, PRICES - sequence);
+            history.copyTo(sequence, block, 0, length);
+            checksum += block[length - 1];
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,41 @@
+package com.abc.tradingstatisticsservice.benchmark;
+
+import java.util.SplittableRandom;
+
+// Shapes of generated benchmark prices, they matter to compression, quantile buckets and sums
+public enum PriceDistribution {
+    // random walk on a 0.01 tick grid, most trades print at the previous price
+    TICK,
+    // uniform in [1, 1000)
+    UNIFORM,
+    // the same price over and over
+    CONSTANT;
+
+    public float[] generate(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        float[] prices = new float[size];
+        long ticks = 10_000;
+        for (int i = 0; i < size; i++) {
+            prices[i] = switch (this) {
+                case TICK -> {
+                    if (random.nextInt(10) < 4) {
+                        ticks += random.nextInt(7) - 3;
+                    }
+                    yield (float) (ticks / 100.0);
+                }
+                case UNIFORM -> (float) random.nextDouble(1, 1000);
+                case CONSTANT -> 100.25f;
+            };
+        }
+        return prices;
+    }
+
+    public Float[] generateBoxed(int size, long seed) {
+        float[] prices = generate(size, seed);
+        Float[] boxed = new Float[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = prices[i];
+        }
+        return boxed;
+    }
+}
@@ -0,0 +1,64 @@
+package com.abc.tradingstatisticsservice.benchmark;
+
+import com.abc.tradingstatisticsservice.aggregation.PriceKernel;
+import com.abc.tradingstatisticsservice.aggregation.ScalarPriceKernel;
+import com.abc.tradingstatisticsservice.aggregation.VectorPriceKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Time of the batch kernels over one batch of batchSize prices, scalar against vectorized. Sums reuse their
+// scratch arrays like CompensatedAccumulator does, so the GC profiler should report no allocation.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class PriceKernelBenchmark {
+
+    public enum Kernel {
+        SCALAR,
+        VECTOR
+    }
+
+    @Param({"SCALAR", "VECTOR"})
+    public Kernel kernel;
+
+    @Param({"1000", "10000"})
+    public int batchSize;
+
+    private PriceKernel priceKernel;
+    private float[] prices;
+    private final double[] sums = new double[4];
+    private final double[] lanes = new double[PriceKernel.LANE_SCRATCH];
+
+    @Setup
+    public void setUp() {
+        priceKernel = kernel == Kernel.SCALAR ? new ScalarPriceKernel() : new VectorPriceKernel();
+        prices = PriceDistribution.UNIFORM.generate(batchSize, 8);
+    }
+
+    @Benchmark
+    public double[] sum() {
+        priceKernel.sum(prices, 0, batchSize, sums, lanes);
+        return sums;
+    }
+
+    @Benchmark
+    public void minMax(Blackhole blackhole) {
+        blackhole.consume(priceKernel.min(prices, 0, batchSize));
+        blackhole.consume(priceKernel.max(prices, 0, batchSize));
+    }
+}
@@ -0,0 +1,74 @@
+package com.abc.tradingstatisticsservice.benchmark;
+
+import com.abc.tradingstatisticsservice.aggregation.AccumulatorMode;
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Stats latency per k level of a symbol whose history just covers the level (PARTIAL) or is full and has wrapped
+// around (FULL). calculateStats reads the snapshot published by the last batch, calculateWindowStats computes
+// the same window from the block summaries on every call. Histories are loaded with COMPENSATED sums, loading
+// 1e8 prices with BIG_DECIMAL sums would take most of a run.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx3g"})
+public class StatsBenchmark {
+    private static final int LOAD_CHUNK = 1 << 20;
+
+    public enum Fill {
+        PARTIAL,
+        FULL
+    }
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8"})
+    public int kLevel;
+
+    @Param({"PARTIAL", "FULL"})
+    public Fill fill;
+
+    private TradingStatsService service;
+    private long window;
+
+    @Setup
+    public void setUp() throws InsufficientDataException {
+        Benchmarks.quietLogging();
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setAccumulatorMode(AccumulatorMode.COMPENSATED);
+        service = new TradingStatsService(properties);
+        window = Benchmarks.K_SIZES[kLevel - 1];
+
+        long capacity = Benchmarks.K_SIZES[Benchmarks.K_SIZES.length - 1];
+        long prices = fill == Fill.FULL ? capacity + capacity / 2 : window;
+        float[] chunk = PriceDistribution.TICK.generate(LOAD_CHUNK, 1);
+        for (long loaded = 0; loaded < prices; loaded += LOAD_CHUNK) {
+            service.addHistory("BENCH", chunk, (int) Math.min(LOAD_CHUNK, prices - loaded));
+        }
+    }
+
+    @Benchmark
+    public TradingStats calculateStats() throws InsufficientDataException {
+        return service.calculateStats("BENCH", kLevel);
+    }
+
+    @Benchmark
+    public TradingStats calculateWindowStats() throws InsufficientDataException {
+        return service.calculateWindowStats("BENCH", window);
+    }
+}
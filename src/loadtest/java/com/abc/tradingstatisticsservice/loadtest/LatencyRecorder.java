@@ -0,0 +1,38 @@
+package com.abc.tradingstatisticsservice.loadtest;
+
+import java.util.Arrays;
+
+// Latencies of the requests of one client, merged once a step is over
+final class LatencyRecorder {
+    private long[] nanos = new long[1024];
+    private int count;
+    int errors;
+
+    void record(long latencyNanos) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, 2 * count);
+        }
+        nanos[count++] = latencyNanos;
+    }
+
+    // Sorted latencies of all clients
+    static long[] merge(LatencyRecorder[] recorders) {
+        long[] merged = new long[Arrays.stream(recorders).mapToInt(recorder -> recorder.count).sum()];
+        int length = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.nanos, 0, merged, length, recorder.count);
+            length += recorder.count;
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    // Nearest-rank quantile in milliseconds
+    static double quantileMs(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.max(1, Math.ceil(quantile * sorted.length));
+        return sorted[rank - 1] / 1e6;
+    }
+}
@@ -0,0 +1,180 @@
+package com.abc.tradingstatisticsservice.loadtest;
+
+import com.abc.tradingstatisticsservice.TradingStatisticsServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Closed-loop load of /add_batch/ and /stats/ at increasing concurrency. For every thread mode the service is started
+// in this JVM on a random port, symbols are prefilled, then each step runs as many clients as its concurrency, each
+// sending its next request once the previous one is answered. Clients are virtual threads with a fixed seed, so runs
+// send the same request mix. Latency percentiles and throughput of each step are printed and written as CSV.
+public final class LoadTest {
+    private static final int PREFILL_PRICES = 10_000;
+    // k levels covered by the prefill
+    private static final int K_LEVELS = 4;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        List<String> rows = new ArrayList<>();
+        rows.add("threads,concurrency,requests,errors,throughput,p50_ms,p99_ms,p999_ms,max_ms");
+        System.out.printf("%-9s %11s %10s %7s %12s %9s %9s %9s %9s%n",
+                "threads", "concurrency", "requests", "errors", "requests/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+
+        List<String> modes = options.url != null ? List.of("external") : options.threads;
+        for (String mode : modes) {
+            Path persistence = Files.createTempDirectory("tss-loadtest");
+            ConfigurableApplicationContext context = options.url != null ? null : start(mode, persistence, options);
+            String url = options.url != null ? options.url
+                    : "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            try (HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build()) {
+                prefill(client, url, options);
+                for (int concurrency : options.concurrency) {
+                    run(client, url, options, concurrency, options.warmupSeconds);
+                    long started = System.nanoTime();
+                    LatencyRecorder[] recorders = run(client, url, options, concurrency, options.durationSeconds);
+                    double seconds = (System.nanoTime() - started) / 1e9;
+                    rows.add(report(mode, concurrency, recorders, seconds));
+                }
+            } finally {
+                if (context != null) {
+                    context.close();
+                }
+            }
+        }
+
+        if (options.output.getParent() != null) {
+            Files.createDirectories(options.output.getParent());
+        }
+        Files.write(options.output, rows);
+        System.out.println("Load test result is saved to " + options.output);
+    }
+
+    private static ConfigurableApplicationContext start(String mode, Path persistence, LoadTestOptions options) {
+        List<String> properties = new ArrayList<>(List.of(
+                "server.port=0",
+                "spring.threads.virtual.enabled=" + "virtual".equals(mode),
+                "logging.level.root=WARN",
+                "spring.main.banner-mode=off"));
+        if (!"OFF".equals(options.fsync)) {
+            properties.add("tss.persistence.enabled=true");
+            properties.add("tss.persistence.directory=" + persistence);
+            properties.add("tss.persistence.fsync=" + options.fsync);
+        }
+        return new SpringApplicationBuilder(TradingStatisticsServiceApplication.class)
+                .properties(properties.toArray(new String[0]))
+                .run();
+    }
+
+    private static void prefill(HttpClient client, String url, LoadTestOptions options) throws IOException, InterruptedException {
+        for (int symbol = 0; symbol < options.symbols; symbol++) {
+            for (int prices = 0; prices < PREFILL_PRICES; prices += options.batchSize) {
+                HttpResponse<String> response = client.send(addBatch(url, symbol, options.batchSize, prices),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Prefill failed: " + response.statusCode() + " " + response.body());
+                }
+            }
+        }
+    }
+
+    // Runs concurrency clients for the given time, their latencies are returned
+    private static LatencyRecorder[] run(HttpClient client, String url, LoadTestOptions options, int concurrency,
+                                         int seconds) throws InterruptedException {
+        LatencyRecorder[] recorders = new LatencyRecorder[concurrency];
+        HttpRequest[] writes = new HttpRequest[options.symbols];
+        for (int symbol = 0; symbol < options.symbols; symbol++) {
+            writes[symbol] = addBatch(url, symbol, options.batchSize, symbol);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                LatencyRecorder recorder = recorders[c] = new LatencyRecorder();
+                SplittableRandom random = new SplittableRandom(options.seed * 1_000_003 + c);
+                clients.submit(() -> {
+                    while (running.get()) {
+                        int symbol = random.nextInt(options.symbols);
+                        HttpRequest request = random.nextDouble() < options.writeRatio ? writes[symbol]
+                                : stats(url, symbol, 1 + random.nextInt(K_LEVELS));
+                        long started = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            recorder.record(System.nanoTime() - started);
+                            if (response.statusCode() != 200) {
+                                recorder.errors++;
+                            }
+                        } catch (IOException e) {
+                            recorder.errors++;
+                            failure.compareAndSet(null, e);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                });
+            }
+            Thread.sleep(seconds * 1000L);
+            running.set(false);
+        }
+        if (failure.get() != null) {
+            System.out.println("First request failure: " + failure.get());
+        }
+        return recorders;
+    }
+
+    private static String report(String mode, int concurrency, LatencyRecorder[] recorders, double seconds) {
+        long[] latencies = LatencyRecorder.merge(recorders);
+        int errors = 0;
+        for (LatencyRecorder recorder : recorders) {
+            errors += recorder.errors;
+        }
+        double throughput = latencies.length / seconds;
+        double p50 = LatencyRecorder.quantileMs(latencies, 0.5);
+        double p99 = LatencyRecorder.quantileMs(latencies, 0.99);
+        double p999 = LatencyRecorder.quantileMs(latencies, 0.999);
+        double max = LatencyRecorder.quantileMs(latencies, 1);
+        System.out.printf(Locale.ROOT, "%-9s %11d %10d %7d %12.0f %9.2f %9.2f %9.2f %9.2f%n",
+                mode, concurrency, latencies.length, errors, throughput, p50, p99, p999, max);
+        return String.format(Locale.ROOT, "%s,%d,%d,%d,%.0f,%.3f,%.3f,%.3f,%.3f",
+                mode, concurrency, latencies.length, errors, throughput, p50, p99, p999, max);
+    }
+
+    private static HttpRequest addBatch(String url, int symbol, int batchSize, int offset) {
+        StringBuilder body = new StringBuilder("{\"symbol\":\"LOAD").append(symbol).append("\",\"values\":[");
+        for (int i = 0; i < batchSize; i++) {
+            body.append(i > 0 ? "," : "").append(100 + (offset + i) % 50 / 10.0);
+        }
+        body.append("]}");
+        return HttpRequest.newBuilder(URI.create(url + "/add_batch/"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    private static HttpRequest stats(String url, int symbol, int k) {
+        return HttpRequest.newBuilder(URI.create(url + "/stats/?symbol=LOAD" + symbol + "&k=" + k)).GET().build();
+    }
+}
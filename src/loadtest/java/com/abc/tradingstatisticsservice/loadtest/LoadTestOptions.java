@@ -0,0 +1,54 @@
+package com.abc.tradingstatisticsservice.loadtest;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Options of a load test run given as --name=value, see README
+final class LoadTestOptions {
+    // Thread modes of the service started in process, ignored with url
+    final List<String> threads;
+    // Concurrent clients of the successive steps
+    final int[] concurrency;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final int symbols;
+    // Share of /add_batch/ requests, the others are /stats/ requests
+    final double writeRatio;
+    final int batchSize;
+    // Write-ahead log fsync policy of the started service, OFF disables persistence
+    final String fsync;
+    // Service to load instead of starting one, e.g. http://localhost:8080
+    final String url;
+    final Path output;
+    final long seed;
+
+    private LoadTestOptions(Map<String, String> values) {
+        this.threads = List.of(values.getOrDefault("threads", "platform,virtual").split(","));
+        this.concurrency = Arrays.stream(values.getOrDefault("concurrency", "16,64,256,1024").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        this.warmupSeconds = Integer.parseInt(values.getOrDefault("warmup", "3"));
+        this.durationSeconds = Integer.parseInt(values.getOrDefault("duration", "10"));
+        this.symbols = Integer.parseInt(values.getOrDefault("symbols", "4"));
+        this.writeRatio = Double.parseDouble(values.getOrDefault("write-ratio", "0.5"));
+        this.batchSize = Integer.parseInt(values.getOrDefault("batch-size", "100"));
+        this.fsync = values.getOrDefault("fsync", "ALWAYS");
+        this.url = values.get("url");
+        this.output = Path.of(values.getOrDefault("output", "target/loadtest-result.csv"));
+        this.seed = Long.parseLong(values.getOrDefault("seed", "1"));
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestOptions(values);
+    }
+}
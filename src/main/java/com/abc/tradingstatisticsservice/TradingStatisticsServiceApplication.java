@@ -2,8 +2,10 @@ package com.abc.tradingstatisticsservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class TradingStatisticsServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,27 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import java.util.function.Supplier;
+
+public enum AccumulatorMode {
+    // BigDecimal running sums, allocates on every price
+    BIG_DECIMAL(BigDecimalAccumulator::new, 200),
+    // double-double running sums, no allocation on ingest
+    COMPENSATED(CompensatedAccumulator::new, 48);
+
+    private final Supplier<PriceAccumulator> factory;
+    private final int estimatedBytes;
+
+    AccumulatorMode(Supplier<PriceAccumulator> factory, int estimatedBytes) {
+        this.factory = factory;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public PriceAccumulator newAccumulator() {
+        return factory.get();
+    }
+
+    // Approximate heap footprint of an accumulator holding sums of many prices
+    public int estimatedBytes() {
+        return estimatedBytes;
+    }
+}
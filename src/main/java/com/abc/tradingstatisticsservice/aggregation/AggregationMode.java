@@ -0,0 +1,24 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+public enum AggregationMode {
+    // block summaries sealed on ingest, stats of all k levels precomputed on every batch
+    EAGER,
+    // only appends on ingest, stats computed by scanning the window when requested
+    LAZY,
+    // same block summaries as EAGER, stats computed from blocks when requested
+    HYBRID,
+    // switches between the above per symbol according to its observed reads per batch
+    AUTO;
+
+    // Strategy for a concrete mode, built over the prices already in the history
+    public AggregationStrategy newStrategy(PriceHistory history, AccumulatorMode accumulatorMode) {
+        return switch (this) {
+            case EAGER -> new BlockAggregation(history, accumulatorMode, true);
+            case LAZY -> new LazyAggregation(history);
+            case HYBRID -> new BlockAggregation(history, accumulatorMode, false);
+            case AUTO -> throw new IllegalArgumentException("AUTO has to be resolved to a concrete mode first");
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+// How aggregates of a symbol history are maintained and queried. Implementations trade ingest cost
+// against query cost, all of them answer the same questions about the newest n prices.
+// append is called under the symbol write lock, queries at least under the read lock.
+public interface AggregationStrategy {
+
+    // Appends the price to the underlying history and keeps own aggregates in sync
+    void append(float value);
+
+    // Appends values[from, to) in order, same result as appending them one by one
+    default void appendAll(float[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            append(values[i]);
+        }
+    }
+
+    // Adds sum and squared sum of the newest n prices to target
+    void accumulateNewest(long n, PriceAccumulator target);
+
+    // Adds sum and squared sum of the newest older prices except the newest newer ones, lets a caller
+    // extend the sums of a window to an enclosing window without adding the shared prices again
+    void accumulateBetween(long newer, long older, PriceAccumulator target);
+
+    float minOfNewest(long n);
+
+    float maxOfNewest(long n);
+
+    // Approximate heap footprint of own aggregates, without the history
+    long residentBytes();
+
+    // True when aggregates are complete after every append, so stats are cheap enough to precompute on commit
+    boolean isEager();
+}
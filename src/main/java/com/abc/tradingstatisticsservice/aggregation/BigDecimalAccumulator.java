@@ -0,0 +1,51 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import java.math.BigDecimal;
+
+// Reference accumulator, exact over the decimal representation of each price but allocates on every update
+public class BigDecimalAccumulator implements PriceAccumulator {
+    private BigDecimal sum = BigDecimal.ZERO;
+    private BigDecimal squaredSum = BigDecimal.ZERO;
+
+    @Override
+    public void add(float value) {
+        BigDecimal bgValue = BigDecimal.valueOf(value);
+        sum = sum.add(bgValue);
+        squaredSum = squaredSum.add(bgValue.pow(2));
+    }
+
+    @Override
+    public void subtract(float value) {
+        BigDecimal bgValue = BigDecimal.valueOf(value);
+        sum = sum.subtract(bgValue);
+        squaredSum = squaredSum.subtract(bgValue.pow(2));
+    }
+
+    @Override
+    public void add(PriceAccumulator other) {
+        sum = sum.add(other.sum());
+        squaredSum = squaredSum.add(other.squaredSum());
+    }
+
+    @Override
+    public void subtract(PriceAccumulator other) {
+        sum = sum.subtract(other.sum());
+        squaredSum = squaredSum.subtract(other.squaredSum());
+    }
+
+    @Override
+    public BigDecimal sum() {
+        return sum;
+    }
+
+    @Override
+    public BigDecimal squaredSum() {
+        return squaredSum;
+    }
+
+    @Override
+    public void reset() {
+        sum = BigDecimal.ZERO;
+        squaredSum = BigDecimal.ZERO;
+    }
+}
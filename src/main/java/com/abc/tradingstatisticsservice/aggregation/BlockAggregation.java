@@ -0,0 +1,66 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+// Block summaries are sealed as prices arrive, so aggregates are complete after every append. Ingest cost per price
+// is one add to the open block whatever the number of k levels, sums and min/max of a block are built once when it
+// seals and drop out with the whole block when it is overwritten. A query combines the running totals of two sealed
+// blocks, the open block and a scan of the partial oldest block.
+// EAGER precomputes stats of all k levels on commit, HYBRID keeps the same summaries and computes stats on request.
+public class BlockAggregation implements AggregationStrategy {
+    private final PriceHistory history;
+    private final BlockPrefixSums pricePrefixSums;
+    private final BlockMinMaxIndex priceMinMaxIndex;
+    private final boolean eager;
+
+    public BlockAggregation(PriceHistory history, AccumulatorMode accumulatorMode, boolean eager) {
+        this.history = history;
+        this.eager = eager;
+        this.pricePrefixSums = new BlockPrefixSums(history, accumulatorMode);
+        this.priceMinMaxIndex = new BlockMinMaxIndex(history);
+    }
+
+    @Override
+    public void append(float value) {
+        history.append(value);
+        pricePrefixSums.onAppend(value);
+        priceMinMaxIndex.onAppend();
+    }
+
+    @Override
+    public void appendAll(float[] values, int from, int to) {
+        history.appendAll(values, from, to);
+        pricePrefixSums.onAppendAll(values, from, to);
+        priceMinMaxIndex.onAppendAll(values, from, to);
+    }
+
+    @Override
+    public void accumulateNewest(long n, PriceAccumulator target) {
+        pricePrefixSums.accumulateBetween(0, n, target);
+    }
+
+    @Override
+    public void accumulateBetween(long newer, long older, PriceAccumulator target) {
+        pricePrefixSums.accumulateBetween(newer, older, target);
+    }
+
+    @Override
+    public float minOfNewest(long n) {
+        return priceMinMaxIndex.min(n);
+    }
+
+    @Override
+    public float maxOfNewest(long n) {
+        return priceMinMaxIndex.max(n);
+    }
+
+    @Override
+    public long residentBytes() {
+        return pricePrefixSums.residentBytes() + priceMinMaxIndex.residentBytes();
+    }
+
+    @Override
+    public boolean isEager() {
+        return eager;
+    }
+}
@@ -0,0 +1,159 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+import java.util.Arrays;
+
+// Exact min/max of the newest n prices of a PriceHistory.
+// History is split into blocks of BLOCK_SIZE prices aligned to the absolute sequence, min and max of every
+// block are computed once when the block gets sealed and kept in two segment trees over the block ring.
+// A window query combines O(log n) tree nodes for full blocks with a scan of at most two partial edge blocks.
+public class BlockMinMaxIndex {
+    public static final int BLOCK_BITS = 10;
+    public static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+    private final PriceHistory history;
+    private final int blockSlots;
+    private final int leaves;
+    private final float[] minTree;
+    private final float[] maxTree;
+
+    public BlockMinMaxIndex(PriceHistory history) {
+        this.history = history;
+        // one extra slot for the partially overwritten oldest block
+        this.blockSlots = (int) ((history.capacity() + BLOCK_SIZE - 1) >>> BLOCK_BITS) + 1;
+        this.leaves = Integer.highestOneBit(blockSlots - 1) << 1;
+        this.minTree = new float[2 * leaves];
+        this.maxTree = new float[2 * leaves];
+        Arrays.fill(minTree, Float.POSITIVE_INFINITY);
+        Arrays.fill(maxTree, Float.NEGATIVE_INFINITY);
+
+        // seal complete blocks already retained by the history
+        PriceKernel kernel = PriceKernel.get();
+        float[] block = new float[BLOCK_SIZE];
+        for (long blockStart = firstFullBlockStart(history); blockStart + BLOCK_SIZE <= history.written(); blockStart += BLOCK_SIZE) {
+            history.copyTo(blockStart, block, 0, BLOCK_SIZE);
+            update((int) ((blockStart >>> BLOCK_BITS) % blockSlots), kernel.min(block, 0, BLOCK_SIZE), kernel.max(block, 0, BLOCK_SIZE));
+        }
+    }
+
+    public long residentBytes() {
+        return (long) (minTree.length + maxTree.length) * Float.BYTES;
+    }
+
+    // Start of the oldest block whose prices are all still retained
+    static long firstFullBlockStart(PriceHistory history) {
+        return (history.oldestSequence() + BLOCK_SIZE - 1) & -BLOCK_SIZE;
+    }
+
+    // To be called after every append, seals the block once its last price is written
+    public void onAppend() {
+        long written = history.written();
+        if ((written & (BLOCK_SIZE - 1)) == 0) {
+            seal(written - BLOCK_SIZE);
+        }
+    }
+
+    // To be called after history.appendAll(values, from, to), blocks lying entirely in the batch are summarized
+    // from the batch array by the PriceKernel, a block started by earlier appends is scanned in the history
+    public void onAppendAll(float[] values, int from, int to) {
+        PriceKernel kernel = PriceKernel.get();
+        long sequence = history.written() - (to - from);
+        for (int i = from; i < to; ) {
+            long blockStart = sequence & -BLOCK_SIZE;
+            int segmentEnd = (int) Math.min(to, i + (blockStart + BLOCK_SIZE - sequence));
+            if (blockStart + BLOCK_SIZE == sequence + (segmentEnd - i)) {
+                if (blockStart == sequence) {
+                    update((int) ((blockStart >>> BLOCK_BITS) % blockSlots),
+                            kernel.min(values, i, segmentEnd), kernel.max(values, i, segmentEnd));
+                } else {
+                    seal(blockStart);
+                }
+            }
+            sequence += segmentEnd - i;
+            i = segmentEnd;
+        }
+    }
+
+    private void seal(long blockStart) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (long sequence = blockStart; sequence < blockStart + BLOCK_SIZE; sequence++) {
+            float value = history.get(sequence);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        update((int) ((blockStart >>> BLOCK_BITS) % blockSlots), min, max);
+    }
+
+    public float min(long n) {
+        return query(n, true);
+    }
+
+    public float max(long n) {
+        return query(n, false);
+    }
+
+    private float query(long n, boolean min) {
+        long to = history.written() - 1;
+        long from = to - n + 1;
+        long firstBlock = from >>> BLOCK_BITS;
+        long lastBlock = to >>> BLOCK_BITS;
+
+        if (firstBlock == lastBlock) {
+            return scan(from, to, min);
+        }
+        float result = combine(scan(from, ((firstBlock + 1) << BLOCK_BITS) - 1, min),
+                scan(lastBlock << BLOCK_BITS, to, min), min);
+        if (lastBlock - firstBlock > 1) {
+            result = combine(result, queryBlocks(firstBlock + 1, lastBlock - 1, min), min);
+        }
+        return result;
+    }
+
+    private float scan(long from, long to, boolean min) {
+        float result = min ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+        for (long sequence = from; sequence <= to; sequence++) {
+            result = combine(result, history.get(sequence), min);
+        }
+        return result;
+    }
+
+    // Full blocks [firstBlock, lastBlock] by absolute block number, the range may wrap around the slot ring
+    private float queryBlocks(long firstBlock, long lastBlock, boolean min) {
+        int firstSlot = (int) (firstBlock % blockSlots);
+        int lastSlot = (int) (lastBlock % blockSlots);
+        if (firstSlot <= lastSlot) {
+            return queryTree(firstSlot, lastSlot, min);
+        }
+        return combine(queryTree(firstSlot, blockSlots - 1, min), queryTree(0, lastSlot, min), min);
+    }
+
+    private float queryTree(int fromSlot, int toSlot, boolean min) {
+        float[] tree = min ? minTree : maxTree;
+        float result = min ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+        for (int l = fromSlot + leaves, r = toSlot + leaves + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                result = combine(result, tree[l++], min);
+            }
+            if ((r & 1) == 1) {
+                result = combine(result, tree[--r], min);
+            }
+        }
+        return result;
+    }
+
+    private void update(int slot, float min, float max) {
+        int node = slot + leaves;
+        minTree[node] = min;
+        maxTree[node] = max;
+        for (node >>= 1; node > 0; node >>= 1) {
+            minTree[node] = Math.min(minTree[2 * node], minTree[2 * node + 1]);
+            maxTree[node] = Math.max(maxTree[2 * node], maxTree[2 * node + 1]);
+        }
+    }
+
+    private static float combine(float a, float b, boolean min) {
+        return min ? Math.min(a, b) : Math.max(a, b);
+    }
+}
@@ -0,0 +1,130 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+import static com.abc.tradingstatisticsservice.aggregation.BlockMinMaxIndex.BLOCK_BITS;
+import static com.abc.tradingstatisticsservice.aggregation.BlockMinMaxIndex.BLOCK_SIZE;
+
+// Sum and squared sum of any window of the newest prices of a PriceHistory, independent of the window length.
+// Blocks are the ones of BlockMinMaxIndex. When a block gets sealed its slot stores the running total of all prices
+// up to the end of the block, so the full blocks of a window are the difference of two totals. Only prices of the
+// partial edge blocks are scanned, the open block is kept summed on append.
+public class BlockPrefixSums {
+    private final PriceHistory history;
+    private final AccumulatorMode accumulatorMode;
+    // Allocated when a block slot is sealed for the first time, so short histories stay small
+    private final PriceAccumulator[] blockEndTotals;
+    private int allocatedTotals;
+    private final PriceAccumulator sealedTotal;
+    private final PriceAccumulator openBlock;
+    // Totals are counted from this block on, prices before it were not seen by the index
+    private final long baseBlockStart;
+
+    public BlockPrefixSums(PriceHistory history, AccumulatorMode accumulatorMode) {
+        this.history = history;
+        this.accumulatorMode = accumulatorMode;
+        // one extra slot for the total before the oldest full block
+        this.blockEndTotals = new PriceAccumulator[(int) ((history.capacity() + BLOCK_SIZE - 1) >>> BLOCK_BITS) + 1];
+        this.sealedTotal = accumulatorMode.newAccumulator();
+        this.openBlock = accumulatorMode.newAccumulator();
+
+        // rebuild from prices already in the history, the partial oldest block stays outside of the totals
+        this.baseBlockStart = BlockMinMaxIndex.firstFullBlockStart(history);
+        long openBlockStart = history.written() & -BLOCK_SIZE;
+        for (long sequence = Math.max(baseBlockStart, openBlockStart); sequence < history.written(); sequence++) {
+            openBlock.add(history.get(sequence));
+        }
+        float[] block = new float[BLOCK_SIZE];
+        for (long blockStart = baseBlockStart; blockStart < openBlockStart; blockStart += BLOCK_SIZE) {
+            PriceAccumulator blockTotal = blockTotal(blockStart);
+            blockTotal.add(sealedTotal);
+            history.copyTo(blockStart, block, 0, BLOCK_SIZE);
+            blockTotal.addAll(block, 0, BLOCK_SIZE);
+            sealedTotal.reset();
+            sealedTotal.add(blockTotal);
+        }
+    }
+
+    // To be called with every price appended to the history, seals the block once its last price is written
+    public void onAppend(float value) {
+        openBlock.add(value);
+        long written = history.written();
+        if ((written & (BLOCK_SIZE - 1)) == 0) {
+            sealOpenBlock(written - BLOCK_SIZE);
+        }
+    }
+
+    // To be called after history.appendAll(values, from, to), the batch is added to the open block one block at a time
+    public void onAppendAll(float[] values, int from, int to) {
+        long sequence = history.written() - (to - from);
+        for (int i = from; i < to; ) {
+            long blockEnd = (sequence & -BLOCK_SIZE) + BLOCK_SIZE;
+            int segmentEnd = (int) Math.min(to, i + (blockEnd - sequence));
+            openBlock.addAll(values, i, segmentEnd);
+            sequence += segmentEnd - i;
+            i = segmentEnd;
+            if (sequence == blockEnd) {
+                sealOpenBlock(blockEnd - BLOCK_SIZE);
+            }
+        }
+    }
+
+    private void sealOpenBlock(long blockStart) {
+        sealedTotal.add(openBlock);
+        PriceAccumulator blockTotal = blockTotal(blockStart);
+        blockTotal.reset();
+        blockTotal.add(sealedTotal);
+        openBlock.reset();
+    }
+
+    // Total slot of the block for writing, only totals of sealed blocks are ever read
+    private PriceAccumulator blockTotal(long blockStart) {
+        int slot = blockSlot(blockStart);
+        if (blockEndTotals[slot] == null) {
+            blockEndTotals[slot] = accumulatorMode.newAccumulator();
+            allocatedTotals++;
+        }
+        return blockEndTotals[slot];
+    }
+
+    // Approximate heap footprint of the totals
+    public long residentBytes() {
+        return (long) blockEndTotals.length * Long.BYTES + (long) (allocatedTotals + 2) * accumulatorMode.estimatedBytes();
+    }
+
+    // Adds sum and squared sum of the newest older prices except the newest newer ones to target
+    public void accumulateBetween(long newer, long older, PriceAccumulator target) {
+        long written = history.written();
+        long from = written - older;
+        long to = written - newer;
+        long firstFullBlockStart = (from + BLOCK_SIZE - 1) & -BLOCK_SIZE;
+        long lastFullBlockEnd = to & -BLOCK_SIZE;
+
+        if (firstFullBlockStart >= lastFullBlockEnd) {
+            scan(from, to, target);
+            return;
+        }
+
+        scan(from, firstFullBlockStart, target);
+        target.add(blockEndTotals[blockSlot(lastFullBlockEnd - BLOCK_SIZE)]);
+        if (firstFullBlockStart > baseBlockStart) {
+            target.subtract(blockEndTotals[blockSlot(firstFullBlockStart - BLOCK_SIZE)]);
+        }
+        // the open block is summed up already when the range reaches the newest price, otherwise scan the rest
+        if (to == written) {
+            target.add(openBlock);
+        } else {
+            scan(lastFullBlockEnd, to, target);
+        }
+    }
+
+    private void scan(long from, long to, PriceAccumulator target) {
+        for (long sequence = from; sequence < to; sequence++) {
+            target.add(history.get(sequence));
+        }
+    }
+
+    private int blockSlot(long blockStart) {
+        return (int) ((blockStart >>> BLOCK_BITS) % blockEndTotals.length);
+    }
+}
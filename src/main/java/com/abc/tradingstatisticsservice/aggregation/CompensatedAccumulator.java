@@ -0,0 +1,101 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import java.math.BigDecimal;
+
+// Allocation free accumulator keeping sum and squared sum as double-double (hi + lo) values.
+// A float and its square are exact doubles, with the error term of every addition carried in lo
+// the running sums keep ~106 bits of precision, far more than 1e8 float prices can use up.
+public class CompensatedAccumulator implements PriceAccumulator {
+    private double sumHi;
+    private double sumLo;
+    private double squaredSumHi;
+    private double squaredSumLo;
+    // Only open block accumulators add runs, thousands of sealed block totals never need them.
+    // Sums of the last run and the lane scratch of the kernel, reused by every run of this accumulator
+    private double[] runSums;
+    private double[] runLanes;
+
+    @Override
+    public void add(float value) {
+        double x = value;
+        addToSum(x, 0d);
+        addToSquaredSum(x * x, 0d);
+    }
+
+    @Override
+    public void subtract(float value) {
+        double x = value;
+        addToSum(-x, 0d);
+        addToSquaredSum(-(x * x), 0d);
+    }
+
+    // Run is summed by the PriceKernel in lanes, its double-double sums are added as a whole
+    @Override
+    public void addAll(float[] values, int from, int to) {
+        if (runSums == null) {
+            runSums = new double[4];
+            runLanes = new double[PriceKernel.LANE_SCRATCH];
+        }
+        PriceKernel.get().sum(values, from, to, runSums, runLanes);
+        addToSum(runSums[0], runSums[1]);
+        addToSquaredSum(runSums[2], runSums[3]);
+    }
+
+    @Override
+    public void add(PriceAccumulator other) {
+        if (other instanceof CompensatedAccumulator compensated) {
+            addToSum(compensated.sumHi, compensated.sumLo);
+            addToSquaredSum(compensated.squaredSumHi, compensated.squaredSumLo);
+        } else {
+            throw new IllegalArgumentException("Cannot merge " + other.getClass().getSimpleName() + " into compensated accumulator");
+        }
+    }
+
+    @Override
+    public void subtract(PriceAccumulator other) {
+        if (other instanceof CompensatedAccumulator compensated) {
+            addToSum(-compensated.sumHi, -compensated.sumLo);
+            addToSquaredSum(-compensated.squaredSumHi, -compensated.squaredSumLo);
+        } else {
+            throw new IllegalArgumentException("Cannot subtract " + other.getClass().getSimpleName() + " from compensated accumulator");
+        }
+    }
+
+    private void addToSum(double hi, double lo) {
+        double s = sumHi + hi;
+        double e = twoSumError(sumHi, hi, s) + sumLo + lo;
+        sumHi = s + e;
+        sumLo = e - (sumHi - s);
+    }
+
+    private void addToSquaredSum(double hi, double lo) {
+        double s = squaredSumHi + hi;
+        double e = twoSumError(squaredSumHi, hi, s) + squaredSumLo + lo;
+        squaredSumHi = s + e;
+        squaredSumLo = e - (squaredSumHi - s);
+    }
+
+    // Exact rounding error of a + b = s (Knuth TwoSum)
+    private static double twoSumError(double a, double b, double s) {
+        double bb = s - a;
+        return (a - (s - bb)) + (b - bb);
+    }
+
+    @Override
+    public BigDecimal sum() {
+        return new BigDecimal(sumHi).add(new BigDecimal(sumLo));
+    }
+
+    @Override
+    public BigDecimal squaredSum() {
+        return new BigDecimal(squaredSumHi).add(new BigDecimal(squaredSumLo));
+    }
+
+    @Override
+    public void reset() {
+        sumHi = 0d;
+        sumLo = 0d;
+        squaredSumHi = 0d;
+        squaredSumLo = 0d;
+    }
+}
@@ -0,0 +1,60 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+// Ingest only appends to the history, every query scans the requested window.
+// Meant for symbols written much more often than their stats are read.
+public class LazyAggregation implements AggregationStrategy {
+    private final PriceHistory history;
+
+    public LazyAggregation(PriceHistory history) {
+        this.history = history;
+    }
+
+    @Override
+    public void append(float value) {
+        history.append(value);
+    }
+
+    @Override
+    public void accumulateNewest(long n, PriceAccumulator target) {
+        for (long sequence = history.written() - n; sequence < history.written(); sequence++) {
+            target.add(history.get(sequence));
+        }
+    }
+
+    @Override
+    public void accumulateBetween(long newer, long older, PriceAccumulator target) {
+        for (long sequence = history.written() - older; sequence < history.written() - newer; sequence++) {
+            target.add(history.get(sequence));
+        }
+    }
+
+    @Override
+    public float minOfNewest(long n) {
+        float min = Float.POSITIVE_INFINITY;
+        for (long sequence = history.written() - n; sequence < history.written(); sequence++) {
+            min = Math.min(min, history.get(sequence));
+        }
+        return min;
+    }
+
+    @Override
+    public float maxOfNewest(long n) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (long sequence = history.written() - n; sequence < history.written(); sequence++) {
+            max = Math.max(max, history.get(sequence));
+        }
+        return max;
+    }
+
+    @Override
+    public long residentBytes() {
+        return 0;
+    }
+
+    @Override
+    public boolean isEager() {
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import java.math.BigDecimal;
+
+// Running sum and squared sum of a set of prices. Implementations differ in the internal
+// representation, results are always handed out as BigDecimal so stats formatting stays the same.
+public interface PriceAccumulator {
+
+    void add(float value);
+
+    void subtract(float value);
+
+    // Adds values[from, to), implementations may pre-aggregate the run instead of adding price by price
+    default void addAll(float[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(values[i]);
+        }
+    }
+
+    void add(PriceAccumulator other);
+
+    void subtract(PriceAccumulator other);
+
+    BigDecimal sum();
+
+    BigDecimal squaredSum();
+
+    void reset();
+}
@@ -0,0 +1,23 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+// One pass summaries over a run of prices of a batch, used to pre-aggregate whole batches instead of single prices.
+// Sums are kept in LANES lanes: price i goes to lane (i - from) % LANES, each lane keeps a compensated (TwoSum) sum,
+// lanes are merged in lane order. Fixing the lane layout makes every implementation bit-identical.
+public interface PriceKernel {
+    int LANES = 8;
+    // Doubles of the lane scratch array: hi and lo of sums, then hi and lo of squared sums, LANES each
+    int LANE_SCRATCH = 4 * LANES;
+
+    // Writes {sumHi, sumLo, squaredSumHi, squaredSumLo} of values[from, to) as double-double values to sums.
+    // Lanes are kept in lanes[0, LANE_SCRATCH), callers reuse it so a run allocates nothing.
+    void sum(float[] values, int from, int to, double[] sums, double[] lanes);
+
+    float min(float[] values, int from, int to);
+
+    float max(float[] values, int from, int to);
+
+    // Vectorized kernel when jdk.incubator.vector is enabled (--add-modules jdk.incubator.vector), scalar otherwise
+    static PriceKernel get() {
+        return PriceKernels.SELECTED;
+    }
+}
@@ -0,0 +1,61 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Selects the PriceKernel once per JVM and holds lane arithmetic shared by all kernels
+final class PriceKernels {
+    private static final Logger logger = LoggerFactory.getLogger(PriceKernels.class);
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "com.abc.tradingstatisticsservice.aggregation.VectorPriceKernel";
+
+    static final PriceKernel SELECTED = select();
+
+    private PriceKernels() {
+    }
+
+    // The vector kernel is loaded by name, so the scalar one works on a JVM started without the incubator module
+    private static PriceKernel select() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                PriceKernel kernel = (PriceKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+                logger.info("Using vectorized price kernel");
+                return kernel;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                logger.warn("Vectorized price kernel not available, falling back to scalar", e);
+            }
+        } else {
+            logger.info("Module {} not enabled, using scalar price kernel", VECTOR_MODULE);
+        }
+        return new ScalarPriceKernel();
+    }
+
+    // Offsets of the hi and lo lanes of sums and squared sums in the lane scratch array
+    static final int HI = 0;
+    static final int LO = PriceKernel.LANES;
+    static final int SQUARED_HI = 2 * PriceKernel.LANES;
+    static final int SQUARED_LO = 3 * PriceKernel.LANES;
+
+    // Adds x to lane l of the hi/lo lanes at offset hi and lo, the error of hi + x is carried in lo (TwoSum)
+    static void addToLane(double[] lanes, int hi, int lo, int l, double x) {
+        double s = lanes[hi + l] + x;
+        double bb = s - lanes[hi + l];
+        lanes[lo + l] += (lanes[hi + l] - (s - bb)) + (x - bb);
+        lanes[hi + l] = s;
+    }
+
+    // Merges the hi/lo lanes at offset hi and lo in lane order into a double-double {hi, lo} written to sums at offset
+    static void mergeLanes(double[] lanes, int hi, int lo, double[] sums, int offset) {
+        double sumHi = 0d;
+        double sumLo = 0d;
+        for (int l = 0; l < PriceKernel.LANES; l++) {
+            double s = sumHi + lanes[hi + l];
+            double bb = s - sumHi;
+            double e = (sumHi - (s - bb)) + (lanes[hi + l] - bb) + sumLo + lanes[lo + l];
+            sumHi = s + e;
+            sumLo = e - (sumHi - s);
+        }
+        sums[offset] = sumHi;
+        sums[offset + 1] = sumLo;
+    }
+}
@@ -0,0 +1,45 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import java.util.Arrays;
+
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.HI;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.LO;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.SQUARED_HI;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.SQUARED_LO;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.addToLane;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.mergeLanes;
+
+// Plain Java kernel, performs exactly the lane operations of VectorPriceKernel one lane at a time
+public class ScalarPriceKernel implements PriceKernel {
+
+    @Override
+    public void sum(float[] values, int from, int to, double[] sums, double[] lanes) {
+        Arrays.fill(lanes, 0, LANE_SCRATCH, 0d);
+        for (int i = from; i < to; i++) {
+            int lane = (i - from) % LANES;
+            double x = values[i];
+            addToLane(lanes, HI, LO, lane, x);
+            addToLane(lanes, SQUARED_HI, SQUARED_LO, lane, x * x);
+        }
+        mergeLanes(lanes, HI, LO, sums, 0);
+        mergeLanes(lanes, SQUARED_HI, SQUARED_LO, sums, 2);
+    }
+
+    @Override
+    public float min(float[] values, int from, int to) {
+        float min = Float.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public float max(float[] values, int from, int to) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+}
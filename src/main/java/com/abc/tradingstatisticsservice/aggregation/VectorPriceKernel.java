@@ -0,0 +1,134 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.HI;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.LO;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.SQUARED_HI;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.SQUARED_LO;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.addToLane;
+import static com.abc.tradingstatisticsservice.aggregation.PriceKernels.mergeLanes;
+
+// SIMD kernel over 8 float lanes widened to two 4 double vectors, lane layout is fixed to PriceKernel.LANES
+// whatever the hardware vector size so results never depend on the machine. Only loaded by PriceKernels.
+public class VectorPriceKernel implements PriceKernel {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_256;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_256;
+
+    @Override
+    public void sum(float[] values, int from, int to, double[] sums, double[] lanes) {
+        DoubleVector lowHi = DoubleVector.zero(DOUBLES);
+        DoubleVector lowLo = DoubleVector.zero(DOUBLES);
+        DoubleVector highHi = DoubleVector.zero(DOUBLES);
+        DoubleVector highLo = DoubleVector.zero(DOUBLES);
+        DoubleVector lowSquaredHi = DoubleVector.zero(DOUBLES);
+        DoubleVector lowSquaredLo = DoubleVector.zero(DOUBLES);
+        DoubleVector highSquaredHi = DoubleVector.zero(DOUBLES);
+        DoubleVector highSquaredLo = DoubleVector.zero(DOUBLES);
+
+        int i = from;
+        for (int bound = from + ((to - from) & -LANES); i < bound; i += LANES) {
+            FloatVector prices = FloatVector.fromArray(FLOATS, values, i);
+            // lanes 0-3 and 4-7 widened to double, float to double and the square of it are exact
+            DoubleVector low = (DoubleVector) prices.convertShape(VectorOperators.F2D, DOUBLES, 0);
+            DoubleVector high = (DoubleVector) prices.convertShape(VectorOperators.F2D, DOUBLES, 1);
+
+            DoubleVector s = lowHi.add(low);
+            lowLo = lowLo.add(twoSumError(lowHi, low, s));
+            lowHi = s;
+            s = highHi.add(high);
+            highLo = highLo.add(twoSumError(highHi, high, s));
+            highHi = s;
+
+            DoubleVector lowSquared = low.mul(low);
+            DoubleVector highSquared = high.mul(high);
+            s = lowSquaredHi.add(lowSquared);
+            lowSquaredLo = lowSquaredLo.add(twoSumError(lowSquaredHi, lowSquared, s));
+            lowSquaredHi = s;
+            s = highSquaredHi.add(highSquared);
+            highSquaredLo = highSquaredLo.add(twoSumError(highSquaredHi, highSquared, s));
+            highSquaredHi = s;
+        }
+
+        // every lane of the scratch array is overwritten. Lanes are extracted at constant indexes, C2 does not inline
+        // intoArray or lane(variable) this far outside of the loop and would box the vectors on every call.
+        lanes[HI] = lowHi.lane(0);
+        lanes[HI + 1] = lowHi.lane(1);
+        lanes[HI + 2] = lowHi.lane(2);
+        lanes[HI + 3] = lowHi.lane(3);
+        lanes[HI + 4] = highHi.lane(0);
+        lanes[HI + 5] = highHi.lane(1);
+        lanes[HI + 6] = highHi.lane(2);
+        lanes[HI + 7] = highHi.lane(3);
+        lanes[LO] = lowLo.lane(0);
+        lanes[LO + 1] = lowLo.lane(1);
+        lanes[LO + 2] = lowLo.lane(2);
+        lanes[LO + 3] = lowLo.lane(3);
+        lanes[LO + 4] = highLo.lane(0);
+        lanes[LO + 5] = highLo.lane(1);
+        lanes[LO + 6] = highLo.lane(2);
+        lanes[LO + 7] = highLo.lane(3);
+        lanes[SQUARED_HI] = lowSquaredHi.lane(0);
+        lanes[SQUARED_HI + 1] = lowSquaredHi.lane(1);
+        lanes[SQUARED_HI + 2] = lowSquaredHi.lane(2);
+        lanes[SQUARED_HI + 3] = lowSquaredHi.lane(3);
+        lanes[SQUARED_HI + 4] = highSquaredHi.lane(0);
+        lanes[SQUARED_HI + 5] = highSquaredHi.lane(1);
+        lanes[SQUARED_HI + 6] = highSquaredHi.lane(2);
+        lanes[SQUARED_HI + 7] = highSquaredHi.lane(3);
+        lanes[SQUARED_LO] = lowSquaredLo.lane(0);
+        lanes[SQUARED_LO + 1] = lowSquaredLo.lane(1);
+        lanes[SQUARED_LO + 2] = lowSquaredLo.lane(2);
+        lanes[SQUARED_LO + 3] = lowSquaredLo.lane(3);
+        lanes[SQUARED_LO + 4] = highSquaredLo.lane(0);
+        lanes[SQUARED_LO + 5] = highSquaredLo.lane(1);
+        lanes[SQUARED_LO + 6] = highSquaredLo.lane(2);
+        lanes[SQUARED_LO + 7] = highSquaredLo.lane(3);
+
+        // tail shorter than a vector, continues in the lanes the scalar kernel would use
+        for (int lane = 0; i < to; i++, lane++) {
+            double x = values[i];
+            addToLane(lanes, HI, LO, lane, x);
+            addToLane(lanes, SQUARED_HI, SQUARED_LO, lane, x * x);
+        }
+        mergeLanes(lanes, HI, LO, sums, 0);
+        mergeLanes(lanes, SQUARED_HI, SQUARED_LO, sums, 2);
+    }
+
+    // Same expression as PriceKernels.addToLane, evaluated per lane
+    private static DoubleVector twoSumError(DoubleVector a, DoubleVector b, DoubleVector s) {
+        DoubleVector bb = s.sub(a);
+        return a.sub(s.sub(bb)).add(b.sub(bb));
+    }
+
+    @Override
+    public float min(float[] values, int from, int to) {
+        FloatVector min = FloatVector.broadcast(FLOATS, Float.POSITIVE_INFINITY);
+        int i = from;
+        for (int bound = from + ((to - from) & -LANES); i < bound; i += LANES) {
+            min = min.min(FloatVector.fromArray(FLOATS, values, i));
+        }
+        float result = min.reduceLanes(VectorOperators.MIN);
+        for (; i < to; i++) {
+            result = Math.min(result, values[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public float max(float[] values, int from, int to) {
+        FloatVector max = FloatVector.broadcast(FLOATS, Float.NEGATIVE_INFINITY);
+        int i = from;
+        for (int bound = from + ((to - from) & -LANES); i < bound; i += LANES) {
+            max = max.max(FloatVector.fromArray(FLOATS, values, i));
+        }
+        float result = max.reduceLanes(VectorOperators.MAX);
+        for (; i < to; i++) {
+            result = Math.max(result, values[i]);
+        }
+        return result;
+    }
+}
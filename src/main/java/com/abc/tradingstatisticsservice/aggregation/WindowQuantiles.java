@@ -0,0 +1,380 @@
+package com.abc.tradingstatisticsservice.aggregation;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+import java.util.Arrays;
+
+// Nearest-rank p50/p95/p99 of fixed windows of the newest prices of a PriceHistory.
+// Prices are counted in histograms over log-linear buckets taken from the float bits (sign, exponent and the top
+// MANTISSA_BITS bits), so a bucket spans 1/1024 of a power of two and its midpoint is within 0.05% of any price in it.
+// A new price is counted in the histogram of its block of BLOCK prices. Once full the block is sealed: its (bucket,
+// count) pairs are kept as a sketch and added to the histogram of all sealed blocks. A block that has entirely left a
+// window is subtracted from the window's histogram of dropped prices with its sketch, never read back from the
+// history. A window is the difference of the two plus the open block, less the fewer than BLOCK prices of the block
+// straddling its edge which already left it. Those are read back on query while retained, or else taken out as the
+// block's sketch less its prices still inside the window.
+// A new price costs at most one increment whatever the number of windows, a sealed block one pass over its sketch per
+// window. Sketches take 4 bytes per distinct bucket of a block, a few percent of the prices for tick data and about
+// as much as the prices for prices spread over many buckets.
+// Counts may wrap around, differences stay exact in int arithmetic.
+// Windows up to EXACT_WINDOW prices are sorted on query instead.
+public class WindowQuantiles {
+    public static final double[] QUANTILES = {0.5, 0.95, 0.99};
+    static final int EXACT_WINDOW = 100;
+    // Prices per block sketch, aligned to multiples of BLOCK in history sequence
+    static final int BLOCK = 1024;
+    static final int MANTISSA_BITS = 10;
+    private static final int KEY_SHIFT = 23 - MANTISSA_BITS;
+    private static final int KEYS = 1 << (32 - KEY_SHIFT);
+    // A sketch entry is key << COUNT_BITS | count - 1, a block counts at most BLOCK prices per key
+    private static final int COUNT_BITS = 10;
+    private static final int COUNT_MASK = (1 << COUNT_BITS) - 1;
+    // Buckets span at most 16 powers of two, prices further out are counted in the edge bucket
+    static final int MAX_BUCKETS = 16 << MANTISSA_BITS;
+    private static final int INITIAL_BUCKETS = 512;
+    // Buckets a query sums up at once, only the chunk holding a rank is scanned bucket by bucket
+    private static final int SCAN_CHUNK = 256;
+    private static final int INITIAL_SKETCHES = 16;
+    private static final int INITIAL_ENTRIES = 4 * BLOCK;
+
+    private final PriceHistory history;
+    private final long[] windows;
+    // counts[0] counts the prices of the sealed blocks, counts[w + 1] the ones of blocks that left windows[w], then
+    // come the correction of a query and the open block, over keys [keyOffset, keyOffset + length)
+    private int[][] counts;
+    private int keyOffset;
+    // Sequence of the first price counted, older ones were out of all windows already, and of the next one
+    private final long first;
+    private long written;
+    // Blocks subtracted per window, all of their prices are older than the window
+    private final long[] droppedBlocks;
+    // Sketches of the sealed blocks not yet dropped by the largest window, one after the other in a ring of entries
+    // indexed by position & (length - 1). Block i starts at position sketchStarts[i & (length - 1)].
+    private int[] sketchEntries = new int[INITIAL_ENTRIES];
+    private long[] sketchStarts = new long[INITIAL_SKETCHES];
+    private long sealedEntries;
+    // Buckets counted in the open block, a bit per bucket
+    private long[] openBuckets = new long[0];
+    // Buckets of the prices being counted
+    private final int[] buckets = new int[BLOCK];
+    // Prices of the straddling block read back on query
+    private final float[] readBack = new float[BLOCK];
+
+    // windows of any size, the ones up to EXACT_WINDOW are answered without a histogram. Counted from the prices
+    // of the largest window already retained, later ones are passed to append.
+    public WindowQuantiles(PriceHistory history, int[] windowSizes) {
+        this.history = history;
+        this.windows = Arrays.stream(windowSizes).filter(size -> size > EXACT_WINDOW).asLongStream().toArray();
+        this.counts = new int[windows.length + 3][0];
+        this.droppedBlocks = new long[windows.length];
+        long end = history.written();
+        this.first = windows.length == 0 ? end : Math.max(history.oldestSequence(), end - windows[windows.length - 1]);
+        this.written = first;
+        Arrays.fill(droppedBlocks, first / BLOCK);
+
+        float[] retained = new float[BLOCK];
+        for (long chunkStart = first; chunkStart < end; ) {
+            int length = (int) Math.min(BLOCK, end - chunkStart);
+            history.copyTo(chunkStart, retained, 0, length);
+            append(retained, 0, length);
+            chunkStart += length;
+        }
+    }
+
+    // To be called once values[from, to) were appended to the history
+    public void append(float[] values, int from, int to) {
+        if (windows.length == 0) {
+            return;
+        }
+        for (int stepFrom = from; stepFrom < to; ) {
+            // steps end at block boundaries, a full block is sealed before the next one is counted
+            int stepTo = (int) Math.min(to, stepFrom + BLOCK - written % BLOCK);
+            int length = stepTo - stepFrom;
+            int[] stepBuckets = buckets(values, stepFrom, stepTo);
+            // runs of prices in the same bucket, common for ticks, are counted at once
+            int[] open = counts[counts.length - 1];
+            int run = 0;
+            for (int i = 0; i < length; i++) {
+                int bucket = stepBuckets[i];
+                if (i > 0 && bucket != stepBuckets[i - 1]) {
+                    count(open, stepBuckets[i - 1], run);
+                    run = 0;
+                }
+                run++;
+            }
+            if (length > 0) {
+                count(open, stepBuckets[length - 1], run);
+            }
+            written += length;
+            if (written % BLOCK == 0) {
+                seal();
+            }
+            stepFrom = stepTo;
+        }
+        dropBlocks();
+    }
+
+    private void count(int[] open, int bucket, int prices) {
+        open[bucket] += prices;
+        openBuckets[bucket >>> 6] |= 1L << bucket;
+    }
+
+    // Moves the counts of the open block into its sketch and the histogram of the sealed blocks. Entries are in
+    // bucket order, so subtracting a sketch walks the histograms forward.
+    private void seal() {
+        long block = (written - 1) / BLOCK;
+        long oldest = droppedBlocks[windows.length - 1];
+        if (block - oldest >= sketchStarts.length) {
+            long[] grown = new long[Integer.highestOneBit((int) (block - oldest)) << 1];
+            for (long retained = oldest; retained < block; retained++) {
+                grown[(int) (retained & (grown.length - 1))] = sketchStart(retained);
+            }
+            sketchStarts = grown;
+        }
+        long retainedStart = oldest < block ? sketchStart(oldest) : sealedEntries;
+        long retainedEntries = sealedEntries + BLOCK - retainedStart;
+        if (retainedEntries > sketchEntries.length) {
+            int[] grown = new int[Integer.highestOneBit((int) retainedEntries) << 1];
+            for (long position = retainedStart; position < sealedEntries; position++) {
+                grown[(int) (position & (grown.length - 1))] = sketchEntries[(int) (position & (sketchEntries.length - 1))];
+            }
+            sketchEntries = grown;
+        }
+
+        sketchStarts[(int) (block & (sketchStarts.length - 1))] = sealedEntries;
+        int[] all = counts[0];
+        int[] open = counts[counts.length - 1];
+        int mask = sketchEntries.length - 1;
+        for (int word = 0; word < openBuckets.length; word++) {
+            for (long bits = openBuckets[word]; bits != 0; bits &= bits - 1) {
+                int bucket = word << 6 | Long.numberOfTrailingZeros(bits);
+                int count = open[bucket];
+                all[bucket] += count;
+                sketchEntries[(int) (sealedEntries++ & mask)] = (keyOffset + bucket) << COUNT_BITS | (count - 1);
+                open[bucket] = 0;
+            }
+            openBuckets[word] = 0;
+        }
+    }
+
+    // Subtracts the blocks which left a window, their entries are overwritten once they left the largest one
+    private void dropBlocks() {
+        int mask = sketchEntries.length - 1;
+        for (int w = 0; w < windows.length; w++) {
+            int[] dropped = counts[w + 1];
+            long edge = written - windows[w];
+            for (long block = droppedBlocks[w]; (block + 1) * BLOCK <= edge; block++) {
+                int from = (int) sketchStart(block);
+                int length = (int) (sketchEnd(block) - sketchStart(block));
+                for (int i = 0; i < length; i++) {
+                    int entry = sketchEntries[(from + i) & mask];
+                    dropped[(entry >>> COUNT_BITS) - keyOffset] += (entry & COUNT_MASK) + 1;
+                }
+                droppedBlocks[w] = block + 1;
+            }
+        }
+    }
+
+    private long sketchStart(long block) {
+        return sketchStarts[(int) (block & (sketchStarts.length - 1))];
+    }
+
+    private long sketchEnd(long block) {
+        return block + 1 == written / BLOCK ? sealedEntries : sketchStart(block + 1);
+    }
+
+    // QUANTILES of the newest window prices clamped to their min and max, null when the window is not tracked.
+    // Caller guarantees the history retains at least window prices. Concurrent readers take turns, they share the
+    // correction row.
+    public synchronized float[] quantiles(long window, float min, float max) {
+        if (window <= EXACT_WINDOW) {
+            float[] newest = new float[(int) window];
+            history.copyTo(history.written() - window, newest, 0, newest.length);
+            Arrays.sort(newest);
+            float[] result = new float[QUANTILES.length];
+            for (int q = 0; q < QUANTILES.length; q++) {
+                result[q] = newest[(int) rank(QUANTILES[q], window) - 1];
+            }
+            return result;
+        }
+
+        int w = Arrays.binarySearch(windows, window);
+        if (w < 0) {
+            return null;
+        }
+        // the oldest block not dropped yet straddles the edge, its prices which left the window are taken out: read
+        // back while retained, or as the block's counts less its prices still inside the window, whichever is less
+        long block = droppedBlocks[w];
+        long edge = written - window;
+        long outsideFrom = Math.max(block * BLOCK, first);
+        long insideTo = Math.min((block + 1) * BLOCK, written);
+        long blockKeys = block < written / BLOCK ? sketchEnd(block) - sketchStart(block) : BLOCK;
+        boolean readOutside = outsideFrom >= history.oldestSequence() && edge - outsideFrom <= insideTo - edge + blockKeys;
+        int readLength = (int) (readOutside ? edge - outsideFrom : insideTo - edge);
+        history.copyTo(readOutside ? outsideFrom : edge, readBack, 0, readLength);
+        correct(block, readOutside, readLength, 1);
+        float[] result = scan(w, window, min, max);
+        correct(block, readOutside, readLength, -1);
+        return result;
+    }
+
+    // Adds the correction of the block straddling the edge of a window, a sign of -1 clears it again
+    private void correct(long block, boolean readOutside, int readLength, int sign) {
+        int[] correction = counts[counts.length - 2];
+        if (!readOutside && block < written / BLOCK) {
+            int mask = sketchEntries.length - 1;
+            int from = (int) sketchStart(block);
+            int length = (int) (sketchEnd(block) - sketchStart(block));
+            for (int i = 0; i < length; i++) {
+                int entry = sketchEntries[(from + i) & mask];
+                correction[(entry >>> COUNT_BITS) - keyOffset] -= sign * ((entry & COUNT_MASK) + 1);
+            }
+        } else if (!readOutside) {
+            int[] open = counts[counts.length - 1];
+            for (int word = 0; word < openBuckets.length; word++) {
+                for (long bits = openBuckets[word]; bits != 0; bits &= bits - 1) {
+                    int bucket = word << 6 | Long.numberOfTrailingZeros(bits);
+                    correction[bucket] -= sign * open[bucket];
+                }
+            }
+        }
+        int readSign = readOutside ? -sign : sign;
+        for (int i = 0; i < readLength; i++) {
+            correction[bucket(readBack[i])] += readSign;
+        }
+    }
+
+    // Sums up the counts of window w chunk by chunk and scans the chunks holding the ranks
+    private float[] scan(int w, long window, float min, float max) {
+        float[] result = new float[QUANTILES.length];
+        int[] all = counts[0];
+        int[] dropped = counts[w + 1];
+        int[] correction = counts[counts.length - 2];
+        int[] open = counts[counts.length - 1];
+        long seen = 0;
+        int q = 0;
+        long rank = rank(QUANTILES[0], window);
+        for (int chunk = 0; chunk < all.length; chunk += SCAN_CHUNK) {
+            int chunkEnd = Math.min(all.length, chunk + SCAN_CHUNK);
+            int chunkCount = 0;
+            for (int bucket = chunk; bucket < chunkEnd; bucket++) {
+                chunkCount += all[bucket] + open[bucket] - dropped[bucket] + correction[bucket];
+            }
+            if (seen + chunkCount < rank) {
+                seen += chunkCount;
+                continue;
+            }
+            for (int bucket = chunk; bucket < chunkEnd; bucket++) {
+                seen += all[bucket] + open[bucket] - dropped[bucket] + correction[bucket];
+                while (seen >= rank) {
+                    result[q++] = Math.min(max, Math.max(min, midpoint(keyOffset + bucket)));
+                    if (q == QUANTILES.length) {
+                        return result;
+                    }
+                    rank = rank(QUANTILES[q], window);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Bytes of the histograms, sketches and scratch buffers
+    public long residentBytes() {
+        return (long) counts.length * counts[0].length * Integer.BYTES
+                + (long) sketchEntries.length * Integer.BYTES + (long) (sketchStarts.length + openBuckets.length) * Long.BYTES
+                + (long) (buckets.length + readBack.length) * Integer.BYTES;
+    }
+
+    // Bucket of a price counted before, its key is covered or was clamped to an edge
+    private int bucket(float value) {
+        int bucket = key(value) - keyOffset;
+        return bucket < 0 ? 0 : Math.min(bucket, counts[0].length - 1);
+    }
+
+    private static long rank(double quantile, long window) {
+        return Math.max(1, (long) Math.ceil(quantile * window));
+    }
+
+    // Flips negative prices so keys grow with the price, then keeps sign, exponent and top mantissa bits
+    static int key(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        return (bits ^ (bits >> 31 | 0x80000000)) >>> KEY_SHIFT;
+    }
+
+    private static float midpoint(int key) {
+        double lowest = fromSortable(key << KEY_SHIFT);
+        double highest = fromSortable(((key + 1) << KEY_SHIFT) - 1);
+        return (float) ((lowest + highest) / 2);
+    }
+
+    private static float fromSortable(int sortable) {
+        return Float.intBitsToFloat(sortable < 0 ? sortable & 0x7FFFFFFF : ~sortable);
+    }
+
+    // Buckets of up to BLOCK values[from, to), the histograms first grow to cover their keys up to MAX_BUCKETS.
+    // Once they can't grow any more the range is fixed, so a clamped price is uncounted from the same edge bucket.
+    private int[] buckets(float[] values, int from, int to) {
+        int length = to - from;
+        int minKey = Integer.MAX_VALUE;
+        int maxKey = Integer.MIN_VALUE;
+        for (int i = 0; i < length; i++) {
+            buckets[i] = key(values[from + i]);
+        }
+        for (int i = 0; i < length; i++) {
+            minKey = Math.min(minKey, buckets[i]);
+            maxKey = Math.max(maxKey, buckets[i]);
+        }
+        if (length > 0) {
+            cover(minKey, maxKey);
+        }
+        int lastBucket = counts[0].length - 1;
+        for (int i = 0; i < length; i++) {
+            int bucket = buckets[i] - keyOffset;
+            buckets[i] = bucket < 0 ? 0 : Math.min(bucket, lastBucket);
+        }
+        return buckets;
+    }
+
+    private void cover(int minKey, int maxKey) {
+        int length = counts[0].length;
+        if (length == 0) {
+            // centered on the keys, or up from the largest ones when they span too much: zeros and tiny prices
+            // land in the lowest bucket then and are reported as the window min
+            int initialLength = Math.max(INITIAL_BUCKETS, Math.min(MAX_BUCKETS, maxKey - minKey + 1));
+            int offset = Math.max(minKey - (initialLength - (maxKey - minKey + 1)) / 2, maxKey - initialLength + 1);
+            grow(Math.max(0, Math.min(KEYS - initialLength, offset)), initialLength);
+            return;
+        }
+        if (length == MAX_BUCKETS || (minKey >= keyOffset && maxKey < keyOffset + length)) {
+            return;
+        }
+        // the grown range keeps the current one, keys beyond MAX_BUCKETS stay clamped
+        int end = keyOffset + length;
+        int newLength = Math.min(MAX_BUCKETS, Math.max(2 * length, Math.max(maxKey + 1, end) - Math.min(minKey, keyOffset)));
+        int newOffset;
+        if (minKey >= keyOffset) {
+            newOffset = keyOffset;
+        } else if (maxKey < end) {
+            newOffset = end - newLength;
+        } else {
+            newOffset = Math.max(minKey, end - newLength);
+        }
+        grow(Math.max(0, Math.min(newOffset, KEYS - newLength)), newLength);
+    }
+
+    private void grow(int newOffset, int newLength) {
+        int[][] grown = new int[counts.length][newLength];
+        for (int w = 0; w < counts.length && counts[w].length > 0; w++) {
+            System.arraycopy(counts[w], 0, grown[w], keyOffset - newOffset, counts[w].length);
+        }
+        counts = grown;
+        keyOffset = newOffset;
+        int[] open = counts[counts.length - 1];
+        openBuckets = new long[((newLength - 1) >>> 6) + 1];
+        for (int bucket = 0; bucket < newLength; bucket++) {
+            if (open[bucket] != 0) {
+                openBuckets[bucket >>> 6] |= 1L << bucket;
+            }
+        }
+    }
+}
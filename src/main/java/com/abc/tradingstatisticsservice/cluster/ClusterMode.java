@@ -0,0 +1,8 @@
+package com.abc.tradingstatisticsservice.cluster;
+
+public enum ClusterMode {
+    // serves requests from the symbols held by this service, standalone or as a shard behind a router
+    NODE,
+    // holds no symbols, forwards requests to the nodes owning their symbols, see ShardRouter
+    ROUTER
+}
@@ -0,0 +1,81 @@
+package com.abc.tradingstatisticsservice.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Consistent hashing of symbols to nodes. Each node is placed at virtualNodes points of a 64 bit ring and owns the
+// symbols hashing between the point before and its own. A node added later takes over segments of all nodes, so only
+// about 1/n of the symbols move and all of them move to the new node. Hashes do not depend on the JVM, every router
+// given the same nodes in any order routes a symbol the same way.
+public final class ShardRing {
+    private final List<String> nodes;
+    private final int virtualNodes;
+    // Sorted points and the node owning each of them
+    private final long[] points;
+    private final String[] owners;
+
+    public ShardRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("At least one node and one virtual node per node are required");
+        }
+        if (nodes.stream().distinct().count() != nodes.size()) {
+            throw new IllegalArgumentException("Nodes must be distinct: " + nodes);
+        }
+        this.nodes = List.copyOf(nodes);
+        this.virtualNodes = virtualNodes;
+
+        long[][] placed = new long[nodes.size() * virtualNodes][];
+        for (int n = 0; n < nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                placed[n * virtualNodes + v] = new long[]{hash(nodes.get(n) + "#" + v), n};
+            }
+        }
+        // ties are broken by node name, not by the order nodes were given in
+        Arrays.sort(placed, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0])
+                : nodes.get((int) a[1]).compareTo(nodes.get((int) b[1])));
+        this.points = new long[placed.length];
+        this.owners = new String[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            points[i] = placed[i][0];
+            owners[i] = nodes.get((int) placed[i][1]);
+        }
+    }
+
+    public ShardRing withNode(String node) {
+        List<String> grown = new ArrayList<>(nodes);
+        grown.add(node);
+        return new ShardRing(grown, virtualNodes);
+    }
+
+    public String owner(String symbol) {
+        int index = Arrays.binarySearch(points, hash(symbol));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public boolean contains(String node) {
+        return nodes.contains(node);
+    }
+
+    // FNV-1a over the UTF-16 chars, finished with the MurmurHash3 mixer so similar keys spread over the ring
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,582 @@
+package com.abc.tradingstatisticsservice.cluster;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.BulkTradingDataBatch;
+import com.abc.tradingstatisticsservice.dto.RebalanceResult;
+import com.abc.tradingstatisticsservice.dto.SymbolBatchResult;
+import com.abc.tradingstatisticsservice.dto.SymbolStats;
+import com.abc.tradingstatisticsservice.dto.TradingDataBatch;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+// Forwards requests of a ROUTER to the nodes owning their symbols on the ShardRing, bulk requests are split per
+// node and sent in parallel. Each symbol maps to one of GATES read/write locks: forwarded requests hold the read lock
+// until their node answered, a symbol about to be moved takes the write lock to put up its fence and to take it
+// down again with the new owner. Requests of a fenced symbol wait for the fence, so no batch reaches the old node once
+// the export started and none reaches the new node before the import is complete, while the other symbols of its
+// gate keep flowing. Symbols waiting to be moved by a rebalance stay routed to the node holding them. Nodes and
+// pending moves are saved to the state file on every change, so a restarted router routes like before.
+@Component
+@ConditionalOnProperty(prefix = "tss.cluster", name = "mode", havingValue = "ROUTER")
+public class ShardRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ShardRouter.class);
+    private static final int GATES = 256;
+    private static final TypeReference<LinkedHashMap<String, SymbolBatchResult>> BATCH_RESULTS = new TypeReference<>() {
+    };
+    private static final TypeReference<LinkedHashMap<String, SymbolStats>> SYMBOL_STATS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<String>> SYMBOLS = new TypeReference<>() {
+    };
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final ReentrantReadWriteLock[] gates = new ReentrantReadWriteLock[GATES];
+    // Serializes rebalances
+    private final Lock rebalanceLock = new ReentrantLock();
+
+    private final Path stateFile;
+    // Owners once the pending moves are done
+    private volatile ShardRing ring;
+    // Symbols still to be moved by a rebalance with the node holding them
+    private final Map<String, String> pendingMoves = new ConcurrentHashMap<>();
+    // Symbols being copied to their new node, completed once requests may go to their owner again
+    private final Map<String, CompletableFuture<Void>> fences = new ConcurrentHashMap<>();
+
+    // Answer of a node passed on to the client as it is
+    public record NodeResponse(int status, String contentType, String eTag, String body) {
+    }
+
+    // Content of the state file
+    record ClusterState(List<String> nodes, Map<String, String> pendingMoves) {
+    }
+
+    public ShardRouter(TradingStatsProperties properties, ObjectMapper objectMapper) {
+        TradingStatsProperties.Cluster cluster = properties.getCluster();
+        this.stateFile = Objects.requireNonNullElse(cluster.getStateFile(),
+                properties.getPersistence().getDirectory().resolve("cluster.json"));
+        this.objectMapper = objectMapper;
+        ClusterState saved = loadState();
+        List<String> nodes = saved != null ? saved.nodes() : cluster.getNodes();
+        if (nodes.isEmpty()) {
+            throw new IllegalStateException("tss.cluster.nodes is required in ROUTER mode");
+        }
+        try {
+            List<String> validated = new ArrayList<>();
+            for (String node : nodes) {
+                validated.add(validateNode(node));
+            }
+            this.ring = new ShardRing(validated, cluster.getVirtualNodes());
+        } catch (InsufficientDataException e) {
+            throw new IllegalStateException("Invalid cluster node: " + e.getMessage());
+        }
+        if (saved != null) {
+            pendingMoves.putAll(saved.pendingMoves());
+        }
+        this.timeout = Duration.ofMillis(cluster.getTimeoutMs());
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        for (int i = 0; i < GATES; i++) {
+            gates[i] = new ReentrantReadWriteLock();
+        }
+        logger.info("Routing symbols over nodes {}{}", ring.getNodes(), saved != null ? " saved in " + stateFile : "");
+    }
+
+    public NodeResponse addBatch(TradingDataBatch batch) throws InsufficientDataException {
+        if (batch.getSymbol() == null) {
+            throw new InsufficientDataException("Symbol is required");
+        }
+        String body = json(batch);
+        return forward(batch.getSymbol(), node -> post(node, "/add_batch/", body));
+    }
+
+    public NodeResponse getStats(String symbol, int k, String ifNoneMatch) {
+        return forward(symbol, node -> {
+            HttpRequest.Builder request = request(node, "/stats/?symbol=" + encode(symbol) + "&k=" + k);
+            if (ifNoneMatch != null) {
+                request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+            }
+            return request.GET().build();
+        });
+    }
+
+    public NodeResponse getWindowStats(String symbol, long n) {
+        return forward(symbol, node -> request(node, "/stats/window/?symbol=" + encode(symbol) + "&n=" + n).GET().build());
+    }
+
+    // Validated as a whole like on a node, so either every node gets its batches or none does
+    public Map<String, SymbolBatchResult> addBatches(List<TradingDataBatch> batches) throws InsufficientDataException {
+        if (batches == null) {
+            throw new InsufficientDataException("Batches are required");
+        }
+        Set<String> symbols = new LinkedHashSet<>();
+        for (TradingDataBatch batch : batches) {
+            if (batch.getSymbol() == null || batch.getValues() == null) {
+                throw new InsufficientDataException("Symbol and values are required for every batch");
+            }
+            if (batch.getValues().length > TradingStatsService.MAX_BATCH_SIZE) {
+                throw new InsufficientDataException("Singe Batch Size cannot exceed " + TradingStatsService.MAX_BATCH_SIZE);
+            }
+            symbols.add(batch.getSymbol());
+        }
+        return fanOut(symbols, (node, nodeSymbols) -> {
+            BulkTradingDataBatch nodeBatches = new BulkTradingDataBatch();
+            nodeBatches.setBatches(batches.stream().filter(batch -> nodeSymbols.contains(batch.getSymbol())).toList());
+            return post(node, "/add_batches/", json(nodeBatches));
+        }, BATCH_RESULTS, error -> {
+            SymbolBatchResult result = new SymbolBatchResult();
+            result.setError(error);
+            return result;
+        });
+    }
+
+    public Map<String, SymbolStats> getAllStats(List<String> symbols) throws InsufficientDataException {
+        if (symbols == null || symbols.isEmpty()) {
+            throw new InsufficientDataException("At least one symbol is required");
+        }
+        return fanOut(new LinkedHashSet<>(symbols), (node, nodeSymbols) -> request(node, "/stats/all/?symbols="
+                + String.join(",", nodeSymbols.stream().map(ShardRouter::encode).toList())).GET().build(), SYMBOL_STATS, error -> {
+            SymbolStats stats = new SymbolStats();
+            stats.setError(error);
+            return stats;
+        });
+    }
+
+    public List<String> getNodes() {
+        return ring.getNodes();
+    }
+
+    // Adds the node to the ring and moves the symbols it now owns from the other nodes. Requests are held while
+    // the nodes list their symbols, then each moving symbol is held only while it is copied. Adding a node already
+    // on the ring retries the moves which failed before, and the removal of copies left behind by moves whose
+    // old node could not drop the symbol.
+    public RebalanceResult addNode(String url) throws InsufficientDataException {
+        String node = validateNode(url);
+        rebalanceLock.lock();
+        try {
+            long started = System.currentTimeMillis();
+            Map<String, String> failed = new LinkedHashMap<>();
+            // Holders of a symbol other than the one requests are routed to
+            Map<String, List<String>> staleCopies = new LinkedHashMap<>();
+            lockAllGates();
+            try {
+                ShardRing target = ring.contains(node) ? ring : ring.withNode(node);
+                Map<String, List<String>> holders = new LinkedHashMap<>();
+                for (String holder : target.getNodes()) {
+                    for (String symbol : listSymbols(holder)) {
+                        holders.computeIfAbsent(symbol, key -> new ArrayList<>()).add(holder);
+                    }
+                }
+                Map<String, String> moves = new LinkedHashMap<>();
+                holders.forEach((symbol, symbolHolders) -> {
+                    String current = currentHolder(symbol, symbolHolders);
+                    if (current == null) {
+                        failed.put(symbol, "Held by " + String.join(" and ", symbolHolders));
+                        return;
+                    }
+                    symbolHolders.stream().filter(holder -> !holder.equals(current))
+                            .forEach(holder -> staleCopies.computeIfAbsent(symbol, key -> new ArrayList<>()).add(holder));
+                    if (!current.equals(target.owner(symbol))) {
+                        moves.put(symbol, current);
+                    }
+                });
+                try {
+                    saveState(target.getNodes(), moves);
+                } catch (IOException e) {
+                    logger.error("Cluster state could not be saved to {}", stateFile, e);
+                    return rebalanceResult(0, failed, "Cluster state could not be saved: " + e.getMessage(), started);
+                }
+                ring = target;
+                pendingMoves.clear();
+                pendingMoves.putAll(moves);
+            } catch (IOException e) {
+                return rebalanceResult(0, failed, "Symbols could not be listed: " + e.getMessage(), started);
+            } finally {
+                unlockAllGates();
+            }
+
+            // not routed to, a copy on the new owner is dropped before the symbol is moved there
+            staleCopies.forEach((symbol, stale) -> {
+                for (String holder : stale) {
+                    try {
+                        deleteSymbol(symbol, holder);
+                        logger.info("Stale copy of symbol '{}' removed from {}", symbol, holder);
+                    } catch (IOException e) {
+                        logger.warn("Stale copy of symbol '{}' could not be removed from {}", symbol, holder, e);
+                        failed.put(symbol, e.getMessage());
+                    }
+                }
+            });
+            int moved = 0;
+            for (Map.Entry<String, String> move : new ArrayList<>(pendingMoves.entrySet())) {
+                String symbol = move.getKey();
+                if (failed.containsKey(symbol)) {
+                    continue;
+                }
+                try {
+                    moveSymbol(symbol, move.getValue(), ring.owner(symbol));
+                    moved++;
+                } catch (IOException e) {
+                    logger.warn("Symbol '{}' could not be moved from {}", symbol, move.getValue(), e);
+                    failed.put(symbol, e.getMessage());
+                }
+            }
+            logger.info("Rebalanced onto {} nodes: {} symbols moved, {} failed", ring.getNodes().size(), moved, failed.size());
+            return rebalanceResult(moved, failed, null, started);
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    // Node whose copy of the symbol requests are routed to: the one a pending move left it on, else its owner, else
+    // the only node holding it. Null when several nodes hold it and none of them is routed to.
+    private String currentHolder(String symbol, List<String> symbolHolders) {
+        String pending = pendingMoves.get(symbol);
+        if (pending != null && symbolHolders.contains(pending)) {
+            return pending;
+        }
+        if (symbolHolders.contains(ring.owner(symbol))) {
+            return ring.owner(symbol);
+        }
+        return symbolHolders.size() == 1 ? symbolHolders.getFirst() : null;
+    }
+
+    private RebalanceResult rebalanceResult(int moved, Map<String, String> failed, String error, long started) {
+        RebalanceResult result = new RebalanceResult();
+        result.setNodes(ring.getNodes());
+        result.setMovedSymbols(moved);
+        result.setFailed(failed);
+        result.setError(error);
+        result.setDurationMs(System.currentTimeMillis() - started);
+        return result;
+    }
+
+    // Base URL of a node: http(s) with a host, no trailing slash as request paths are appended to it
+    static String validateNode(String url) throws InsufficientDataException {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            throw new InsufficientDataException("Node URL is malformed: " + url);
+        }
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+            throw new InsufficientDataException("Node URL must be http or https: " + url);
+        }
+        if (uri.getHost() == null || uri.getRawUserInfo() != null || uri.getRawQuery() != null || uri.getRawFragment() != null) {
+            throw new InsufficientDataException("Node URL must be a host with an optional port and path: " + url);
+        }
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    // Streams the symbol from one node into the other behind its fence, then drops it on the old one
+    private void moveSymbol(String symbol, String from, String to) throws IOException {
+        CompletableFuture<Void> fence = new CompletableFuture<>();
+        ReentrantReadWriteLock gate = gate(symbol);
+        // in flight requests of the gate are drained, later ones of the symbol find the fence
+        gate.writeLock().lock();
+        try {
+            fences.put(symbol, fence);
+        } finally {
+            gate.writeLock().unlock();
+        }
+        boolean copied = false;
+        try {
+            copySymbol(symbol, from, to);
+            copied = true;
+        } finally {
+            gate.writeLock().lock();
+            try {
+                if (copied) {
+                    pendingMoves.remove(symbol);
+                }
+                fences.remove(symbol);
+            } finally {
+                gate.writeLock().unlock();
+            }
+            fence.complete(null);
+        }
+
+        try {
+            saveState(ring.getNodes(), pendingMoves);
+        } catch (IOException e) {
+            // the next rebalance lists the symbol on its new node and no longer moves it
+            logger.error("Cluster state could not be saved to {} after moving symbol '{}'", stateFile, symbol, e);
+        }
+        try {
+            deleteSymbol(symbol, from);
+        } catch (IOException e) {
+            // not routed to any more, removed by the next rebalance
+            logger.warn("Moved symbol '{}' could not be removed from {}", symbol, from, e);
+        }
+    }
+
+    private void deleteSymbol(String symbol, String node) throws IOException {
+        try {
+            HttpResponse<String> removed = client.send(request(node, "/admin/symbols/?symbol=" + encode(symbol)).DELETE().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (removed.statusCode() != 200) {
+                throw new IOException("Removal from " + node + " failed: " + removed.body());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Removal interrupted", e);
+        }
+    }
+
+    private void copySymbol(String symbol, String from, String to) throws IOException {
+        try {
+            HttpResponse<InputStream> export = client.send(transferRequest(from, "/admin/symbols/export/?symbol=" + encode(symbol))
+                    .GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream prices = export.body()) {
+                if (export.statusCode() != 200) {
+                    throw new IOException("Export from " + from + " failed: " + new String(prices.readAllBytes(), StandardCharsets.UTF_8));
+                }
+                HttpResponse<String> imported = client.send(transferRequest(to, "/admin/symbols/import/?symbol=" + encode(symbol))
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                        .POST(HttpRequest.BodyPublishers.ofInputStream(() -> prices)).build(), HttpResponse.BodyHandlers.ofString());
+                if (imported.statusCode() != 200) {
+                    throw new IOException("Import into " + to + " failed: " + imported.body());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Move interrupted", e);
+        }
+    }
+
+    private ClusterState loadState() {
+        if (!Files.exists(stateFile)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(stateFile.toFile(), ClusterState.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read cluster state " + stateFile, e);
+        }
+    }
+
+    // Written next to the state file and moved over it, a crash leaves the previous state
+    private void saveState(List<String> nodes, Map<String, String> moves) throws IOException {
+        Path parent = stateFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, stateFile.getFileName().toString(), ".tmp");
+        try {
+            objectMapper.writeValue(temporary.toFile(), new ClusterState(nodes, new LinkedHashMap<>(moves)));
+            Files.move(temporary, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private List<String> listSymbols(String node) throws IOException {
+        try {
+            HttpResponse<String> response = client.send(request(node, "/admin/symbols/").GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("Node " + node + " answered " + response.statusCode());
+            }
+            return objectMapper.readValue(response.body(), SYMBOLS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Listing interrupted", e);
+        }
+    }
+
+    private String owner(String symbol) {
+        String holder = pendingMoves.get(symbol);
+        return holder != null ? holder : ring.owner(symbol);
+    }
+
+    private NodeResponse forward(String symbol, Function<String, HttpRequest> request) {
+        ReentrantReadWriteLock gate = gate(symbol);
+        while (true) {
+            CompletableFuture<Void> fence;
+            gate.readLock().lock();
+            try {
+                fence = fences.get(symbol);
+                if (fence == null) {
+                    String node = owner(symbol);
+                    return send(node, request.apply(node));
+                }
+            } finally {
+                gate.readLock().unlock();
+            }
+            fence.join();
+        }
+    }
+
+    // Fence of one of the symbols, null if none is being moved. Caller holds their gates.
+    private CompletableFuture<Void> fence(Set<String> symbols) {
+        if (fences.isEmpty()) {
+            return null;
+        }
+        for (String symbol : symbols) {
+            CompletableFuture<Void> fence = fences.get(symbol);
+            if (fence != null) {
+                return fence;
+            }
+        }
+        return null;
+    }
+
+    private NodeResponse send(String node, HttpRequest request) {
+        try {
+            return nodeResponse(client.send(request, HttpResponse.BodyHandlers.ofString()));
+        } catch (IOException e) {
+            logger.warn("Node {} is unavailable", node, e);
+            return unavailable(node);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return unavailable(node);
+        }
+    }
+
+    private static NodeResponse nodeResponse(HttpResponse<String> response) {
+        return new NodeResponse(response.statusCode(), response.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(null),
+                response.headers().firstValue(HttpHeaders.ETAG).orElse(null), response.body());
+    }
+
+    private static NodeResponse unavailable(String node) {
+        return new NodeResponse(503, MediaType.TEXT_PLAIN_VALUE, null, "Node " + node + " is unavailable.");
+    }
+
+    // Sends the request of each node owning some of the symbols in parallel. Results are in the order of the symbols,
+    // the symbols of a node which failed carry its answer as error.
+    private <T> Map<String, T> fanOut(Set<String> symbols, BiFunction<String, Set<String>, HttpRequest> request,
+                                      TypeReference<LinkedHashMap<String, T>> resultType, Function<String, T> failure) {
+        List<ReentrantReadWriteLock> symbolGates = gates(symbols);
+        symbolGates.forEach(gate -> gate.readLock().lock());
+        for (CompletableFuture<Void> fence = fence(symbols); fence != null; fence = fence(symbols)) {
+            symbolGates.forEach(gate -> gate.readLock().unlock());
+            fence.join();
+            symbolGates.forEach(gate -> gate.readLock().lock());
+        }
+        try {
+            Map<String, Set<String>> symbolsByNode = new LinkedHashMap<>();
+            for (String symbol : symbols) {
+                symbolsByNode.computeIfAbsent(owner(symbol), node -> new LinkedHashSet<>()).add(symbol);
+            }
+            Map<String, CompletableFuture<NodeResponse>> responses = new LinkedHashMap<>();
+            symbolsByNode.forEach((node, nodeSymbols) -> responses.put(node,
+                    client.sendAsync(request.apply(node, nodeSymbols), HttpResponse.BodyHandlers.ofString())
+                            .thenApply(ShardRouter::nodeResponse)
+                            .exceptionally(e -> unavailable(node))));
+
+            Map<String, T> nodeResults = new LinkedHashMap<>();
+            symbolsByNode.forEach((node, nodeSymbols) -> {
+                NodeResponse response = responses.get(node).join();
+                Map<String, T> parsed = response.status() == 200 ? parse(response.body(), resultType) : null;
+                for (String symbol : nodeSymbols) {
+                    nodeResults.put(symbol, parsed != null && parsed.containsKey(symbol) ? parsed.get(symbol) : failure.apply(response.body()));
+                }
+            });
+            Map<String, T> results = new LinkedHashMap<>();
+            symbols.forEach(symbol -> results.put(symbol, nodeResults.get(symbol)));
+            return results;
+        } finally {
+            symbolGates.forEach(gate -> gate.readLock().unlock());
+        }
+    }
+
+    private <T> T parse(String body, TypeReference<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            logger.warn("Unexpected node response: {}", body, e);
+            return null;
+        }
+    }
+
+    private String json(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Request cannot be serialized", e);
+        }
+    }
+
+    private HttpRequest post(String node, String path, String json) {
+        return request(node, path)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String node, String pathAndQuery) {
+        return transferRequest(node, pathAndQuery).timeout(timeout);
+    }
+
+    // Without a timeout, a symbol transfer takes as long as its history
+    private static HttpRequest.Builder transferRequest(String node, String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(node + pathAndQuery));
+    }
+
+    private static String encode(String symbol) {
+        return URLEncoder.encode(symbol, StandardCharsets.UTF_8);
+    }
+
+    private ReentrantReadWriteLock gate(String symbol) {
+        return gates[Math.floorMod(symbol.hashCode(), GATES)];
+    }
+
+    // Gates of the symbols in lock order, each once
+    private List<ReentrantReadWriteLock> gates(Set<String> symbols) {
+        Set<Integer> indexes = new TreeSet<>();
+        symbols.forEach(symbol -> indexes.add(Math.floorMod(symbol.hashCode(), GATES)));
+        return indexes.stream().map(index -> gates[index]).toList();
+    }
+
+    private void lockAllGates() {
+        for (ReentrantReadWriteLock gate : gates) {
+            gate.writeLock().lock();
+        }
+    }
+
+    private void unlockAllGates() {
+        for (ReentrantReadWriteLock gate : gates) {
+            gate.writeLock().unlock();
+        }
+    }
+}
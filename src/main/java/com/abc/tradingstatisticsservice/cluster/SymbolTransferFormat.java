@@ -0,0 +1,82 @@
+package com.abc.tradingstatisticsservice.cluster;
+
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// A symbol moved between nodes, all numbers little-endian:
+//   byte     format version (1)
+//   int64    symbol version (committed batches)
+//   int64    number of prices
+//   float32  prices, oldest first
+// Streamed in chunks both ways, so moving a full history never holds it in memory twice.
+public final class SymbolTransferFormat {
+    public static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 1 + 2 * Long.BYTES;
+    private static final int COPY_PRICES = 64 * 1024;
+
+    private SymbolTransferFormat() {
+    }
+
+    // Writes all retained prices of the symbol, the caller keeps the history from changing meanwhile
+    public static void write(OutputStream out, long version, PriceHistory history) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_PRICES * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(VERSION).putLong(version).putLong(history.size());
+        out.write(buffer.array(), 0, HEADER_BYTES);
+
+        float[] prices = new float[COPY_PRICES];
+        for (long sequence = history.oldestSequence(); sequence < history.written(); ) {
+            int length = (int) Math.min(COPY_PRICES, history.written() - sequence);
+            history.copyTo(sequence, prices, 0, length);
+            buffer.clear().asFloatBuffer().put(prices, 0, length);
+            out.write(buffer.array(), 0, length * Float.BYTES);
+            sequence += length;
+        }
+        out.flush();
+    }
+
+    // Appends the transferred prices to an empty history and returns the symbol version, the stream must end there
+    public static long read(InputStream in, PriceHistory history) throws IOException, InsufficientDataException {
+        long symbolVersion = readNext(in, history);
+        if (in.read() >= 0) {
+            throw new InsufficientDataException("Malformed symbol transfer: more prices sent than declared");
+        }
+        return symbolVersion;
+    }
+
+    // Same as read for a transfer followed by more data, e.g. the next symbol of a replication snapshot
+    public static long readNext(InputStream in, PriceHistory history) throws IOException, InsufficientDataException {
+        ByteBuffer header = ByteBuffer.wrap(in.readNBytes(HEADER_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < HEADER_BYTES) {
+            throw new InsufficientDataException("Malformed symbol transfer: missing header");
+        }
+        byte version = header.get();
+        if (version != VERSION) {
+            throw new InsufficientDataException("Unsupported symbol transfer version: " + version);
+        }
+        long symbolVersion = header.getLong();
+        long count = header.getLong();
+        if (symbolVersion < 0 || count < 0 || count > history.capacity()) {
+            throw new InsufficientDataException("Malformed symbol transfer: " + count + " prices of version " + symbolVersion);
+        }
+
+        byte[] bytes = new byte[COPY_PRICES * Float.BYTES];
+        float[] prices = new float[COPY_PRICES];
+        for (long read = 0; read < count; ) {
+            int length = (int) Math.min(COPY_PRICES, count - read);
+            if (in.readNBytes(bytes, 0, length * Float.BYTES) < length * Float.BYTES) {
+                throw new InsufficientDataException("Malformed symbol transfer: " + count + " prices declared but "
+                        + (read + length) + " or less sent");
+            }
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(prices, 0, length);
+            history.appendAll(prices, 0, length);
+            read += length;
+        }
+        return symbolVersion;
+    }
+}
@@ -0,0 +1,155 @@
+package com.abc.tradingstatisticsservice.config;
+
+import com.abc.tradingstatisticsservice.aggregation.AccumulatorMode;
+import com.abc.tradingstatisticsservice.aggregation.AggregationMode;
+import com.abc.tradingstatisticsservice.cluster.ClusterMode;
+import com.abc.tradingstatisticsservice.persistence.FsyncPolicy;
+import com.abc.tradingstatisticsservice.replication.ReplicationRole;
+import com.abc.tradingstatisticsservice.storage.StorageMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "tss")
+public class TradingStatsProperties {
+    // How rolling sums and squared sums are kept, see AccumulatorMode
+    private AccumulatorMode accumulatorMode = AccumulatorMode.BIG_DECIMAL;
+
+    // How aggregates are maintained, see AggregationMode
+    private AggregationMode aggregationMode = AggregationMode.EAGER;
+    // Per symbol overrides of aggregationMode
+    private Map<String, AggregationMode> symbolAggregationModes = new HashMap<>();
+    // Committed batches between two AUTO mode evaluations of a symbol
+    private int autoEvaluationBatches = 100;
+
+    // p50/p95/p99 of every k level window, see WindowQuantiles
+    private boolean quantilesEnabled = true;
+
+    // Optional cap of unique symbols on top of the memory budget, 0 means no cap
+    private int maxSymbols = 0;
+
+    private Memory memory = new Memory();
+
+    private Storage storage = new Storage();
+
+    private Persistence persistence = new Persistence();
+
+    private Stream stream = new Stream();
+
+    private Subscriptions subscriptions = new Subscriptions();
+
+    private Backfill backfill = new Backfill();
+
+    private Cluster cluster = new Cluster();
+
+    private Replication replication = new Replication();
+
+    @Data
+    public static class Persistence {
+        // Write-ahead log of committed batches and periodic checkpoints, state is recovered from them on start
+        private boolean enabled = false;
+        // Directory of WAL segments and the checkpoint, must not be shared with another running service
+        private Path directory = Path.of("data");
+        // When a batch is acknowledged relative to its WAL record reaching the disk, see FsyncPolicy
+        private FsyncPolicy fsync = FsyncPolicy.ALWAYS;
+        // Period of WAL fsync with INTERVAL policy
+        private long fsyncIntervalMs = 10;
+        // Period of checkpoints, WAL segments covered by a checkpoint are deleted
+        private long checkpointIntervalSeconds = 300;
+    }
+
+    @Data
+    public static class Memory {
+        // Heap bytes all resident symbols may hold (price storage and block summaries, MAPPED prices are off the
+        // heap), least recently used symbols are spilled to spillDirectory above it. Defaults to 3/4 of the max heap
+        private DataSize budget;
+        // Directory of spilled symbols, cleared on start and must not be shared with another running service.
+        // Defaults to spill under the persistence directory
+        private Path spillDirectory;
+    }
+
+    @Data
+    public static class Storage {
+        // Where price histories are kept, see StorageMode
+        private StorageMode mode = StorageMode.HEAP;
+        // Directory of MAPPED price files, cleared on start and must not be shared with another running service.
+        // Defaults to prices under the persistence directory
+        private Path directory;
+    }
+
+    @Data
+    public static class Stream {
+        // Prices coalesced per symbol before a micro-batch is handed to the symbol writer
+        private int microBatchSize = 10_000;
+        // Partially filled micro-batches older than this are handed over with the next frame
+        private long flushIntervalMs = 50;
+        // Micro-batches queued per symbol writer before the stream reader blocks
+        private int writerQueueBatches = 8;
+        // Symbols with a partial micro-batch per stream, the oldest one is handed over to make room for another
+        private int maxPendingSymbols = 256;
+        // Symbol writers without micro-batches for this long stop
+        private long writerIdleMs = 30_000;
+    }
+
+    @Data
+    public static class Subscriptions {
+        // Minimum time between two updates pushed to a subscriber, updates of a key in between are coalesced
+        private long intervalMs = 100;
+        // Subscriptions are closed after this long, clients are expected to reconnect
+        private long timeoutMs = 30 * 60 * 1000;
+        // (symbol, k) pairs a single subscription may ask for
+        private int maxKeys = 100;
+    }
+
+    @Data
+    public static class Backfill {
+        // Only files inside it are loaded, paths are resolved against it. Defaults to backfill under the
+        // persistence directory
+        private Path directory;
+        // Bytes of a file parsed as one chunk and appended as one batch
+        private DataSize chunkSize = DataSize.ofMegabytes(8);
+        // Threads parsing chunks, 0 means one per available processor
+        private int threads = 0;
+    }
+
+    @Data
+    public static class Cluster {
+        // Whether this service holds symbols or routes requests to the nodes holding them, see ClusterMode
+        private ClusterMode mode = ClusterMode.NODE;
+        // Base URLs of the nodes a ROUTER shards symbols over, e.g. http://localhost:8081. Only used until the
+        // router has saved its nodes to stateFile
+        private List<String> nodes = new ArrayList<>();
+        // Nodes and pending symbol moves of a ROUTER, saved on every change and loaded on start. Defaults to
+        // cluster.json under the persistence directory
+        private Path stateFile;
+        // Points per node on the hash ring, more points spread symbols more evenly
+        private int virtualNodes = 160;
+        // Timeout of a request forwarded by a ROUTER, symbol transfers while rebalancing have none
+        private long timeoutMs = 10_000;
+    }
+
+    @Data
+    public static class Replication {
+        // Whether batches are published to replicas or followed from a primary, see ReplicationRole
+        private ReplicationRole role = ReplicationRole.NONE;
+        // Newest batches a PRIMARY retains for replicas catching up, replicas further behind load a snapshot
+        private DataSize logSize = DataSize.ofMegabytes(64);
+        // Base URL of the primary a REPLICA follows, e.g. http://localhost:8080
+        private String primaryUrl;
+        // Batches a REPLICA may be behind the primary and still answer stats requests
+        private long maxLag = 10_000;
+        // Period of heartbeats a PRIMARY sends to idle replicas
+        private long heartbeatMs = 500;
+        // Stats requests are refused by a REPLICA which has not heard from the primary for this long
+        private long timeoutMs = 5_000;
+        // Delay before a REPLICA reconnects to the primary
+        private long reconnectMs = 1_000;
+    }
+}
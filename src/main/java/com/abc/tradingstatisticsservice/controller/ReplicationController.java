@@ -0,0 +1,123 @@
+package com.abc.tradingstatisticsservice.controller;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.ReplicationStatus;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.replication.ReplicaFollower;
+import com.abc.tradingstatisticsservice.replication.ReplicationFormat;
+import com.abc.tradingstatisticsservice.replication.ReplicationLog;
+import com.abc.tradingstatisticsservice.replication.ReplicationRole;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// Snapshot and batch stream a primary serves to its replicas, and the replication status of any role
+@RestController
+public class ReplicationController {
+
+    private final TradingStatsService tradingStatsService;
+    private final ReplicationRole role;
+    private final long heartbeatMs;
+    private final ObjectProvider<ReplicaFollower> replicaFollower;
+
+    public ReplicationController(TradingStatsService tradingStatsService, TradingStatsProperties properties,
+                                 ObjectProvider<ReplicaFollower> replicaFollower) {
+        this.tradingStatsService = tradingStatsService;
+        this.role = properties.getReplication().getRole();
+        this.heartbeatMs = properties.getReplication().getHeartbeatMs();
+        this.replicaFollower = replicaFollower;
+    }
+
+    @GetMapping("/replication/snapshot/")
+    public void snapshot(HttpServletResponse response) throws InsufficientDataException, IOException {
+        primaryLog();
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        tradingStatsService.writeReplicationSnapshot(response.getOutputStream());
+    }
+
+    // Batches committed from sequence from on as ReplicationFormat frames, open until the replica disconnects or
+    // the primary stops. Every write ends with a heartbeat of the newest sequence, idle replicas get one every
+    // heartbeat-ms. A replica behind the retained log or synced with an earlier start of the primary, whose
+    // sequences mean other batches, gets a 400 and loads a snapshot instead.
+    @GetMapping("/replication/stream/")
+    public void stream(@RequestParam long from, @RequestParam long epoch, HttpServletResponse response)
+            throws InsufficientDataException {
+        ReplicationLog log = primaryLog();
+        if (epoch != log.epoch()) {
+            throw new InsufficientDataException("Epoch " + epoch + " is not the primary's epoch " + log.epoch());
+        }
+        List<byte[]> frames = readNow(log, from);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        try {
+            OutputStream out = response.getOutputStream();
+            while (!log.isClosed()) {
+                for (byte[] frame : frames) {
+                    out.write(frame);
+                }
+                from += frames.size();
+                out.write(ReplicationFormat.encodeHeartbeat(log.head(), log.epoch()));
+                out.flush();
+                frames = log.read(from, heartbeatMs);
+            }
+        } catch (IOException | InsufficientDataException e) {
+            // the replica disconnected or fell behind the log, it reconnects on its own
+        } catch (InterruptedException e) {
+            // the primary is stopping
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Frames already logged from sequence from on, a replica behind the retained log is told before the stream starts
+    private static List<byte[]> readNow(ReplicationLog log, long from) throws InsufficientDataException {
+        try {
+            return log.read(from, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        }
+    }
+
+    @GetMapping("/replication/status/")
+    public ResponseEntity<ReplicationStatus> getStatus() {
+        ReplicaFollower follower = replicaFollower.getIfAvailable();
+        if (follower != null) {
+            return new ResponseEntity<>(follower.getStatus(), HttpStatus.OK);
+        }
+        ReplicationStatus status = new ReplicationStatus();
+        status.setRole(role);
+        ReplicationLog log = tradingStatsService.getReplicationLog();
+        if (log != null) {
+            status.setPrimarySequence(log.head());
+            status.setAppliedSequence(log.head());
+            status.setOldestRetained(log.oldest());
+            status.setEpoch(log.epoch());
+        }
+        return new ResponseEntity<>(status, HttpStatus.OK);
+    }
+
+    private ReplicationLog primaryLog() throws InsufficientDataException {
+        ReplicationLog log = tradingStatsService.getReplicationLog();
+        if (log == null) {
+            throw new InsufficientDataException("Not a replication primary");
+        }
+        return log;
+    }
+
+    @ExceptionHandler(InsufficientDataException.class)
+    public ResponseEntity<String> handleInsufficientData(InsufficientDataException ex) {
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body("Error: " + ex.getMessage());
+    }
+}
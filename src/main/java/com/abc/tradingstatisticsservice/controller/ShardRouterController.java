@@ -0,0 +1,119 @@
+package com.abc.tradingstatisticsservice.controller;
+
+import com.abc.tradingstatisticsservice.cluster.ShardRouter;
+import com.abc.tradingstatisticsservice.dto.BulkTradingDataBatch;
+import com.abc.tradingstatisticsservice.dto.RebalanceResult;
+import com.abc.tradingstatisticsservice.dto.SymbolBatchResult;
+import com.abc.tradingstatisticsservice.dto.SymbolStats;
+import com.abc.tradingstatisticsservice.dto.TradingDataBatch;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// Same batch and stats endpoints as TradingDataController, served by the nodes owning the symbols
+@RestController
+@ConditionalOnProperty(prefix = "tss.cluster", name = "mode", havingValue = "ROUTER")
+public class ShardRouterController {
+
+    private final ShardRouter shardRouter;
+
+    public ShardRouterController(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    @PostMapping("/add_batch/")
+    public ResponseEntity<String> addBatch(@RequestBody TradingDataBatch request) {
+        try {
+            return toResponse(shardRouter.addBatch(request));
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping("/add_batches/")
+    public ResponseEntity<?> addBatches(@RequestBody BulkTradingDataBatch request) {
+        try {
+            Map<String, SymbolBatchResult> results = shardRouter.addBatches(request.getBatches());
+            return new ResponseEntity<>(results, HttpStatus.OK);
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/stats/")
+    public ResponseEntity<String> getStats(@RequestParam String symbol, @RequestParam int k,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            return toResponse(shardRouter.getStats(symbol, k, ifNoneMatch));
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/stats/window/")
+    public ResponseEntity<String> getWindowStats(@RequestParam String symbol, @RequestParam long n) {
+        try {
+            return toResponse(shardRouter.getWindowStats(symbol, n));
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/stats/all/")
+    public ResponseEntity<?> getAllStats(@RequestParam List<String> symbols) {
+        try {
+            Map<String, SymbolStats> stats = shardRouter.getAllStats(symbols);
+            return new ResponseEntity<>(stats, HttpStatus.OK);
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/admin/cluster/nodes/")
+    public ResponseEntity<List<String>> getNodes() {
+        return new ResponseEntity<>(shardRouter.getNodes(), HttpStatus.OK);
+    }
+
+    // Adds a node, e.g. /admin/cluster/nodes/?url=http://10.0.0.4:8080, answered once its symbols are moved to it
+    @PostMapping("/admin/cluster/nodes/")
+    public ResponseEntity<?> addNode(@RequestParam String url) {
+        try {
+            RebalanceResult result = shardRouter.addNode(url);
+            boolean complete = result.getError() == null && result.getFailed().isEmpty();
+            return new ResponseEntity<>(result, complete ? HttpStatus.OK : HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // The node's body is already serialized, so it is passed on with the node's content type
+    private static ResponseEntity<String> toResponse(ShardRouter.NodeResponse response) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.status());
+        if (response.contentType() != null) {
+            builder.contentType(MediaType.parseMediaType(response.contentType()));
+        }
+        if (response.eTag() != null) {
+            builder.eTag(response.eTag());
+        }
+        return response.status() == HttpStatus.NOT_MODIFIED.value() ? builder.build() : builder.body(response.body());
+    }
+}
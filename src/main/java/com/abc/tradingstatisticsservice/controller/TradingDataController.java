@@ -1,26 +1,61 @@
 package com.abc.tradingstatisticsservice.controller;
 
 import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.abc.tradingstatisticsservice.dto.BackfillResult;
+import com.abc.tradingstatisticsservice.dto.BulkTradingDataBatch;
+import com.abc.tradingstatisticsservice.dto.StreamIngestResult;
+import com.abc.tradingstatisticsservice.dto.SymbolBatchResult;
+import com.abc.tradingstatisticsservice.dto.SymbolStats;
 import com.abc.tradingstatisticsservice.dto.TradingDataBatch;
 import com.abc.tradingstatisticsservice.dto.TradingStats;
 import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.ingest.BackfillFormat;
+import com.abc.tradingstatisticsservice.ingest.BackfillLoader;
+import com.abc.tradingstatisticsservice.ingest.BinaryBatchIngestor;
+import com.abc.tradingstatisticsservice.ingest.StreamingIngestor;
+import com.abc.tradingstatisticsservice.subscription.StatsSubscriptions;
 
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+// Requests of a ROUTER are served by ShardRouterController instead
 @RestController
+@ConditionalOnProperty(prefix = "tss.cluster", name = "mode", havingValue = "NODE", matchIfMissing = true)
 public class TradingDataController {
 
     private final TradingStatsService tradingStatsService;
+    private final BinaryBatchIngestor binaryBatchIngestor;
+    private final StreamingIngestor streamingIngestor;
+    private final StatsSubscriptions statsSubscriptions;
+    private final BackfillLoader backfillLoader;
 
-    public TradingDataController(TradingStatsService tradingStatsService) {
+    public TradingDataController(TradingStatsService tradingStatsService, BinaryBatchIngestor binaryBatchIngestor,
+                                 StreamingIngestor streamingIngestor, StatsSubscriptions statsSubscriptions,
+                                 BackfillLoader backfillLoader) {
         this.tradingStatsService = tradingStatsService;
+        this.binaryBatchIngestor = binaryBatchIngestor;
+        this.streamingIngestor = streamingIngestor;
+        this.statsSubscriptions = statsSubscriptions;
+        this.backfillLoader = backfillLoader;
     }
 
     @PostMapping("/add_batch/")
@@ -35,10 +70,122 @@ public class TradingDataController {
         }
     }
 
+    // Batches of many symbols in one request, validated as a whole and applied in parallel per symbol
+    @PostMapping("/add_batches/")
+    public ResponseEntity<?> addBatches(@RequestBody BulkTradingDataBatch request) {
+        try {
+            Map<String, SymbolBatchResult> results = tradingStatsService.addBatches(request.getBatches());
+            return new ResponseEntity<>(results, HttpStatus.OK);
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Same as /add_batch/ with a BinaryBatchFormat body, avoids JSON parsing and boxing of prices
+    @PostMapping(value = "/add_batch_binary/", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<String> addBinaryBatch(InputStream body) {
+        try {
+            binaryBatchIngestor.ingest(body);
+            return new ResponseEntity<>("Batch added successfully.", HttpStatus.OK);
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Long lived upload of newline delimited price frames, answered once the producer closes the stream
+    @PostMapping(value = "/add_stream/", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamIngestResult> addStream(InputStream body) throws IOException {
+        StreamIngestResult result = streamingIngestor.ingest(body);
+        return new ResponseEntity<>(result, result.getError() == null ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+    }
+
+    // Loads a price file of the backfill directory into a symbol, answered once the whole file is appended
+    @PostMapping("/admin/backfill/")
+    public ResponseEntity<BackfillResult> backfill(@RequestParam String symbol, @RequestParam String file,
+                                                   @RequestParam(defaultValue = "CSV") BackfillFormat format) {
+        BackfillResult result = backfillLoader.load(symbol, file, format);
+        return new ResponseEntity<>(result, result.getError() == null ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+    }
+
+    // Symbols held by this service, resident or spilled, e.g. for a router to rebalance them
+    @GetMapping("/admin/symbols/")
+    public ResponseEntity<List<String>> getSymbols() {
+        return new ResponseEntity<>(tradingStatsService.getSymbols(), HttpStatus.OK);
+    }
+
+    // Version and retained prices of a symbol in SymbolTransferFormat, to be imported by another node
+    @GetMapping("/admin/symbols/export/")
+    public void exportSymbol(@RequestParam String symbol, HttpServletResponse response)
+            throws InsufficientDataException, IOException {
+        // an unknown symbol is reported before the body starts
+        tradingStatsService.getSnapshot(symbol);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        tradingStatsService.exportSymbol(symbol, response.getOutputStream());
+    }
+
+    @PostMapping(value = "/admin/symbols/import/", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<String> importSymbol(@RequestParam String symbol, InputStream body) {
+        try {
+            tradingStatsService.importSymbol(symbol, body);
+            return new ResponseEntity<>("Symbol imported successfully.", HttpStatus.OK);
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @DeleteMapping("/admin/symbols/")
+    public ResponseEntity<String> removeSymbol(@RequestParam String symbol) {
+        try {
+            tradingStatsService.removeSymbol(symbol);
+            return new ResponseEntity<>("Symbol removed successfully.", HttpStatus.OK);
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @GetMapping("/stats/")
-    public ResponseEntity<?> getStats(@RequestParam String symbol, @RequestParam int k) {
+    public ResponseEntity<?> getStats(@RequestParam String symbol, @RequestParam int k,
+                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             TradingStats stats = tradingStatsService.calculateStats(symbol, k);
+            // Stats only change with a new snapshot version, pollers can skip unchanged bodies
+            String eTag = "\"" + stats.getVersion() + "\"";
+            if (eTag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            return ResponseEntity.ok().eTag(eTag).body(stats);
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Stats of the newest n prices for any n up to the retained history
+    @GetMapping("/stats/window/")
+    public ResponseEntity<?> getWindowStats(@RequestParam String symbol, @RequestParam long n) {
+        try {
+            return new ResponseEntity<>(tradingStatsService.calculateWindowStats(symbol, n), HttpStatus.OK);
+        } catch (InsufficientDataException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("An unexpected error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Every available k level of one or more symbols, e.g. /stats/all/?symbols=AAPL,MSFT
+    @GetMapping("/stats/all/")
+    public ResponseEntity<?> getAllStats(@RequestParam List<String> symbols) {
+        try {
+            Map<String, SymbolStats> stats = tradingStatsService.calculateAllStats(symbols);
             return new ResponseEntity<>(stats, HttpStatus.OK);
         } catch (InsufficientDataException e) {
             return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
@@ -47,6 +194,18 @@ public class TradingDataController {
         }
     }
 
+    // Server-Sent Events with stats of (symbol, k) pairs as batches commit, e.g. /stats/subscribe/?keys=AAPL:2,MSFT:3
+    @GetMapping("/stats/subscribe/")
+    public SseEmitter subscribe(@RequestParam List<String> keys) throws InsufficientDataException {
+        return statsSubscriptions.subscribe(keys);
+    }
+
+    // Only reached by handlers which cannot answer with an error body themselves, like /stats/subscribe/
+    @ExceptionHandler(InsufficientDataException.class)
+    public ResponseEntity<String> handleInsufficientData(InsufficientDataException ex) {
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body("Error: " + ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleExceptions(Exception ex) {
         return new ResponseEntity<>("An error occurred: " + ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
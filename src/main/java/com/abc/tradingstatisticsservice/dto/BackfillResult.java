@@ -0,0 +1,14 @@
+package com.abc.tradingstatisticsservice.dto;
+
+import lombok.Data;
+
+@Data
+public class BackfillResult {
+    private String symbol;
+    // Prices appended, a failed load keeps the chunks appended before the error
+    private long prices;
+    private long bytes;
+    private long durationMs;
+    private long pricesPerSecond;
+    private String error;
+}
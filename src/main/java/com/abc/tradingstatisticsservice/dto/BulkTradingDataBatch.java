@@ -0,0 +1,10 @@
+package com.abc.tradingstatisticsservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkTradingDataBatch {
+    private List<TradingDataBatch> batches;
+}
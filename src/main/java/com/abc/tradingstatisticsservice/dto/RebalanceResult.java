@@ -0,0 +1,18 @@
+package com.abc.tradingstatisticsservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class RebalanceResult {
+    // Nodes of the ring after the rebalance
+    private List<String> nodes;
+    private int movedSymbols;
+    // Symbols which could not be moved with the reason, they stay routed to the node holding them
+    private Map<String, String> failed;
+    // Why the rebalance stopped before moving any symbol, e.g. a node could not list its symbols
+    private String error;
+    private long durationMs;
+}
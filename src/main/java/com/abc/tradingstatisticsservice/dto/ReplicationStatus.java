@@ -0,0 +1,24 @@
+package com.abc.tradingstatisticsservice.dto;
+
+import com.abc.tradingstatisticsservice.replication.ReplicationRole;
+import lombok.Data;
+
+@Data
+public class ReplicationStatus {
+    private ReplicationRole role;
+    // Random number of the primary's current start, sequences of different epochs are unrelated
+    private long epoch;
+    // Newest batch sequence of the primary, as last reported to a replica
+    private long primarySequence;
+    // Newest batch sequence applied, the same as primarySequence on a primary
+    private long appliedSequence;
+    private long lag;
+    // Oldest sequence a replica can continue streaming from, on a primary
+    private long oldestRetained;
+    // Whether a replica loaded a snapshot and is connected to the primary's stream
+    private boolean synced;
+    private boolean connected;
+    private long sinceLastContactMs;
+    // Why a replica refuses stats requests, null while it answers them
+    private String staleness;
+}
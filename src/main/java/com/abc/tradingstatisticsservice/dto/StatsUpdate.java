@@ -0,0 +1,11 @@
+package com.abc.tradingstatisticsservice.dto;
+
+import lombok.Data;
+
+// Stats of one subscribed (symbol, k) pair, pushed by /stats/subscribe/
+@Data
+public class StatsUpdate {
+    private String symbol;
+    private int k;
+    private TradingStats stats;
+}
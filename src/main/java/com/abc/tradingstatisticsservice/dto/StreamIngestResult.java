@@ -0,0 +1,17 @@
+package com.abc.tradingstatisticsservice.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class StreamIngestResult {
+    private long frames;
+    private long prices;
+    private long batches;
+    // Time the stream reader was blocked on full symbol writer queues
+    private long backpressureWaitMs;
+    // Rejection message per symbol, prices of rejected micro-batches are not counted
+    private Map<String, String> rejected;
+    private String error;
+}
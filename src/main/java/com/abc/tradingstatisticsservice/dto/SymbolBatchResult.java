@@ -0,0 +1,10 @@
+package com.abc.tradingstatisticsservice.dto;
+
+import lombok.Data;
+
+@Data
+public class SymbolBatchResult {
+    private int batches;
+    private long prices;
+    private String error;
+}
@@ -0,0 +1,14 @@
+package com.abc.tradingstatisticsservice.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class SymbolStats {
+    // Snapshot version all levels were calculated for
+    private long version;
+    // Stats by kLevel, levels without enough data are left out
+    private Map<Integer, TradingStats> stats;
+    private String error;
+}
@@ -1,12 +1,21 @@
 package com.abc.tradingstatisticsservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class TradingStats {
     private double min;
     private double max;
     private double last;
     private double avg;
     private double variance;
+    // Nearest-rank percentiles, exact up to 100 prices and within 0.05% above. Only for k level windows,
+    // absent when tss.quantiles-enabled is off
+    private Double p50;
+    private Double p95;
+    private Double p99;
+    // Snapshot version of the symbol the stats were calculated for
+    private long version;
 }
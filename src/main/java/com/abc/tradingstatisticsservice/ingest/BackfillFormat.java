@@ -0,0 +1,10 @@
+package com.abc.tradingstatisticsservice.ingest;
+
+// Layout of a price file loaded by BackfillLoader
+public enum BackfillFormat {
+    // Text, one price per line. With several comma separated fields the last one is the price,
+    // a first line that is not a number is taken as a header
+    CSV,
+    // Little-endian float32 prices back to back, no header
+    BINARY
+}
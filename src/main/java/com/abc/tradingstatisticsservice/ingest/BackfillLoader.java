@@ -0,0 +1,269 @@
+package com.abc.tradingstatisticsservice.ingest;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.BackfillResult;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+// Loads a price file from the local file system straight into a symbol, bypassing HTTP, JSON and MAX_BATCH_SIZE.
+// The file is split into chunks of tss.backfill.chunk-size bytes which are memory mapped and parsed in parallel,
+// a CSV line belongs to the chunk it starts in. Parsed chunks are appended in file order, each as one batch, while
+// the next ones are parsed. At most two chunks per parser thread are in flight, so memory stays bounded.
+// Files are named relative to tss.backfill.directory, nothing outside of it is read.
+@Component
+public class BackfillLoader {
+    private static final Logger logger = LoggerFactory.getLogger(BackfillLoader.class);
+    // A CSV line is read past the end of its chunk up to this many bytes
+    private static final int MAX_LINE_BYTES = 256;
+    private static final float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+    private static final int PROGRESS_STEPS = 10;
+
+    private final TradingStatsService tradingStatsService;
+    private final Path directory;
+    private final int chunkBytes;
+    private final int threads;
+
+    public BackfillLoader(TradingStatsService tradingStatsService, TradingStatsProperties properties) {
+        this.tradingStatsService = tradingStatsService;
+        this.directory = Objects.requireNonNullElse(properties.getBackfill().getDirectory(),
+                properties.getPersistence().getDirectory().resolve("backfill")).toAbsolutePath().normalize();
+        long chunkSize = properties.getBackfill().getChunkSize().toBytes();
+        this.chunkBytes = (int) Math.max(Float.BYTES, Math.min(Integer.MAX_VALUE - MAX_LINE_BYTES, chunkSize)) & -Float.BYTES;
+        int configuredThreads = properties.getBackfill().getThreads();
+        this.threads = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public BackfillResult load(String symbol, String fileName, BackfillFormat format) {
+        BackfillResult result = new BackfillResult();
+        result.setSymbol(symbol);
+        long started = System.nanoTime();
+        Path file;
+        try {
+            file = resolve(fileName);
+        } catch (InsufficientDataException | IOException e) {
+            logger.warn("Backfill of symbol '{}' from '{}' rejected: {}", symbol, fileName, e.getMessage());
+            result.setError(e instanceof InsufficientDataException ? e.getMessage() : "Cannot read file: " + e.getMessage());
+            return result;
+        }
+        ExecutorService parsers = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().daemon().name("tss-backfill-", 0).factory());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (format == BackfillFormat.BINARY && size % Float.BYTES != 0) {
+                throw new InsufficientDataException("Binary price file size must be a multiple of " + Float.BYTES + " bytes");
+            }
+            result.setBytes(size);
+            logger.info("Backfill of symbol '{}' from {} ({} bytes, {}) started", symbol, file, size, format);
+
+            Deque<Future<ParsedChunk>> pending = new ArrayDeque<>();
+            long position = 0;
+            int reportedSteps = 0;
+            while (position < size || !pending.isEmpty()) {
+                if (position < size && pending.size() < 2 * threads) {
+                    long start = position;
+                    long end = Math.min(size, start + chunkBytes);
+                    pending.add(parsers.submit(() -> parse(channel, size, start, end, format)));
+                    position = end;
+                    continue;
+                }
+                ParsedChunk chunk = await(pending.poll());
+                if (chunk.length > 0) {
+                    tradingStatsService.addHistory(symbol, chunk.prices, chunk.length);
+                    result.setPrices(result.getPrices() + chunk.length);
+                }
+                int steps = (int) (chunk.end * PROGRESS_STEPS / size);
+                if (steps > reportedSteps && steps < PROGRESS_STEPS) {
+                    reportedSteps = steps;
+                    logger.info("Backfill of symbol '{}': {}% read, {} prices at {} prices/s", symbol,
+                            steps * 100 / PROGRESS_STEPS, result.getPrices(), pricesPerSecond(result.getPrices(), started));
+                }
+            }
+        } catch (InsufficientDataException e) {
+            result.setError(e.getMessage());
+        } catch (NoSuchFileException e) {
+            result.setError("File not found: " + fileName);
+        } catch (IOException e) {
+            logger.error("Backfill of symbol '{}' from {} failed", symbol, file, e);
+            result.setError("Cannot read file: " + e.getMessage());
+        } finally {
+            parsers.shutdownNow();
+        }
+
+        result.setDurationMs((System.nanoTime() - started) / 1_000_000);
+        result.setPricesPerSecond(pricesPerSecond(result.getPrices(), started));
+        logger.info("Backfill of symbol '{}' from {} {}: {} prices in {} ms, {} prices/s", symbol, file,
+                result.getError() == null ? "done" : "failed (" + result.getError() + ")",
+                result.getPrices(), result.getDurationMs(), result.getPricesPerSecond());
+        return result;
+    }
+
+    // The file inside the backfill directory, also once symbolic links are followed
+    private Path resolve(String fileName) throws InsufficientDataException, IOException {
+        Path file;
+        try {
+            file = directory.resolve(fileName).normalize();
+        } catch (InvalidPathException e) {
+            throw new InsufficientDataException("Invalid file name: " + fileName);
+        }
+        if (!file.startsWith(directory) || file.equals(directory)) {
+            throw new InsufficientDataException("File must be inside the backfill directory");
+        }
+        try {
+            if (!file.toRealPath().startsWith(directory.toRealPath())) {
+                throw new InsufficientDataException("File must be inside the backfill directory");
+            }
+        } catch (NoSuchFileException e) {
+            throw new InsufficientDataException("File not found: " + fileName);
+        }
+        return file;
+    }
+
+    private static long pricesPerSecond(long prices, long startedNanos) {
+        return prices * 1_000_000_000L / Math.max(1, System.nanoTime() - startedNanos);
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> chunk) throws IOException, InsufficientDataException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InsufficientDataException("Backfill interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InsufficientDataException insufficientData) {
+                throw insufficientData;
+            }
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Backfill chunk could not be parsed", e.getCause());
+        }
+    }
+
+    // Prices of the bytes [start, end) of the file
+    private static ParsedChunk parse(FileChannel channel, long size, long start, long end, BackfillFormat format)
+            throws IOException, InsufficientDataException {
+        if (format == BackfillFormat.BINARY) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            float[] prices = new float[(int) (end - start) / Float.BYTES];
+            mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(prices);
+            return new ParsedChunk(prices, prices.length, end);
+        }
+        // one byte before the chunk tells whether a line starts at its first byte, lines are parsed from a heap copy
+        long mapStart = Math.max(0, start - 1);
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, Math.min(size, end + MAX_LINE_BYTES) - mapStart);
+        byte[] bytes = new byte[mapped.limit()];
+        mapped.get(0, bytes);
+        return parseCsv(bytes, mapStart, size, (int) (start - mapStart), (int) (end - mapStart));
+    }
+
+    // Parses the lines starting in [from, to) of bytes read from file offset mapStart on
+    private static ParsedChunk parseCsv(byte[] bytes, long mapStart, long size, int from, int to)
+            throws InsufficientDataException {
+        int position = from;
+        if (from > 0 && bytes[from - 1] != '\n') {
+            while (position < to && bytes[position] != '\n') {
+                position++;
+            }
+            position++;
+        }
+
+        float[] prices = new float[Math.max(16, (to - from) / 8)];
+        int length = 0;
+        while (position < to) {
+            // the price is the last field of the line
+            int fieldStart = position;
+            int lineEnd = position;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                if (bytes[lineEnd] == ',') {
+                    fieldStart = lineEnd + 1;
+                }
+                lineEnd++;
+            }
+            if (lineEnd == bytes.length && mapStart + bytes.length < size) {
+                throw new InsufficientDataException("Line longer than " + MAX_LINE_BYTES + " bytes at byte " + (mapStart + position));
+            }
+
+            int fieldEnd = lineEnd;
+            while (fieldStart < fieldEnd && bytes[fieldStart] <= ' ') {
+                fieldStart++;
+            }
+            while (fieldEnd > fieldStart && bytes[fieldEnd - 1] <= ' ') {
+                fieldEnd--;
+            }
+            if (fieldStart < fieldEnd) {
+                try {
+                    float price = parsePrice(bytes, fieldStart, fieldEnd);
+                    if (length == prices.length) {
+                        prices = Arrays.copyOf(prices, 2 * length);
+                    }
+                    prices[length++] = price;
+                } catch (NumberFormatException e) {
+                    if (mapStart + position != 0) {
+                        throw new InsufficientDataException("Malformed price at byte " + (mapStart + fieldStart));
+                    }
+                    // header line
+                }
+            }
+            position = lineEnd + 1;
+        }
+        return new ParsedChunk(prices, length, mapStart + to);
+    }
+
+    // Same value as Float.parseFloat. Plain decimals with less than 2^24 as digits and at most 10 fraction digits,
+    // which covers prices, are one exact float division, anything else goes through Float.parseFloat.
+    private static float parsePrice(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = bytes[i] == '-';
+        if (negative || bytes[i] == '+') {
+            i++;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        int fractionDigits = -1;
+        for (; i < to && digitCount <= 18; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                digits = digits * 10 + (b - '0');
+                digitCount++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == to && digitCount > 0 && digits < 1 << 24 && fractionDigits < POWERS_OF_TEN.length) {
+            float price = digits / POWERS_OF_TEN[Math.max(0, fractionDigits)];
+            return negative ? -price : price;
+        }
+        return Float.parseFloat(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+    }
+
+    // Prices [0, length) of a chunk ending at file offset end
+    private record ParsedChunk(float[] prices, int length, long end) {
+    }
+}
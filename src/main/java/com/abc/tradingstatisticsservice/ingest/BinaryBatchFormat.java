@@ -0,0 +1,65 @@
+package com.abc.tradingstatisticsservice.ingest;
+
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static com.abc.tradingstatisticsservice.service.TradingStatsService.MAX_BATCH_SIZE;
+import static com.abc.tradingstatisticsservice.service.TradingStatsService.MAX_SYMBOL_BYTES;
+
+// Compact binary batch, all numbers little-endian:
+//   byte     format version (1)
+//   byte     symbol length in bytes (1..255)
+//   bytes    symbol, UTF-8
+//   int32    number of prices
+//   float32  prices
+public final class BinaryBatchFormat {
+    public static final byte VERSION = 1;
+    public static final int MAX_BATCH_BYTES = 2 + MAX_SYMBOL_BYTES + Integer.BYTES + (int) MAX_BATCH_SIZE * Float.BYTES;
+
+    // Symbol and a view of the prices inside the decoded buffer, prices are not copied
+    public record Batch(String symbol, FloatBuffer prices) {
+    }
+
+    private BinaryBatchFormat() {
+    }
+
+    public static byte[] encode(String symbol, float[] values) {
+        byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+        if (symbolBytes.length == 0 || symbolBytes.length > MAX_SYMBOL_BYTES) {
+            throw new IllegalArgumentException("Symbol must have 1.." + MAX_SYMBOL_BYTES + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(2 + symbolBytes.length + Integer.BYTES + values.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(VERSION).put((byte) symbolBytes.length).put(symbolBytes).putInt(values.length);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+
+    // Decodes a whole batch between position and limit of a little-endian buffer
+    public static Batch decode(ByteBuffer buffer) throws InsufficientDataException {
+        if (buffer.remaining() < 2) {
+            throw new InsufficientDataException("Malformed binary batch: missing header");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new InsufficientDataException("Unsupported binary batch version: " + version);
+        }
+        int symbolLength = buffer.get() & 0xFF;
+        if (symbolLength == 0 || buffer.remaining() < symbolLength + Integer.BYTES) {
+            throw new InsufficientDataException("Malformed binary batch: invalid symbol");
+        }
+        String symbol = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), symbolLength, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + symbolLength);
+
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * Float.BYTES != buffer.remaining()) {
+            throw new InsufficientDataException("Malformed binary batch: " + count + " prices declared but "
+                    + buffer.remaining() + " bytes left");
+        }
+        return new Batch(symbol, buffer.asFloatBuffer());
+    }
+}
@@ -0,0 +1,64 @@
+package com.abc.tradingstatisticsservice.ingest;
+
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.springframework.stereotype.Component;
+
+// Reads binary batches (see BinaryBatchFormat) from a request stream into pooled buffers
+// and hands the prices to the service as a FloatBuffer view, nothing is allocated per price.
+@Component
+public class BinaryBatchIngestor {
+    private static final int POOLED_BUFFERS = 64;
+
+    private final TradingStatsService tradingStatsService;
+    private final BlockingQueue<ByteBuffer> bufferPool = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    public BinaryBatchIngestor(TradingStatsService tradingStatsService) {
+        this.tradingStatsService = tradingStatsService;
+    }
+
+    // Returns the number of prices added
+    public int ingest(InputStream body) throws IOException, InsufficientDataException {
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            readFully(body, buffer);
+            BinaryBatchFormat.Batch batch = BinaryBatchFormat.decode(buffer);
+            int count = batch.prices().remaining();
+            tradingStatsService.addBatch(batch.symbol(), batch.prices());
+            return count;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private static void readFully(InputStream body, ByteBuffer buffer) throws IOException, InsufficientDataException {
+        byte[] array = buffer.array();
+        int length = 0;
+        int read;
+        while (length < array.length && (read = body.read(array, length, array.length - length)) != -1) {
+            length += read;
+        }
+        if (length == array.length && body.read() != -1) {
+            throw new InsufficientDataException("Singe Batch Size cannot exceed " + TradingStatsService.MAX_BATCH_SIZE);
+        }
+        buffer.limit(length);
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(BinaryBatchFormat.MAX_BATCH_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        bufferPool.offer(buffer);
+    }
+}
@@ -0,0 +1,343 @@
+package com.abc.tradingstatisticsservice.ingest;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.StreamIngestResult;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+// Long lived ingestion of newline delimited JSON frames, each frame is one of
+//   {"symbol":"AAPL","value":101.5}
+//   {"symbol":"AAPL","values":[101.5,101.6]}
+// Frames are parsed with the streaming parser straight into per symbol micro-batches, full micro-batches are
+// queued to a single writer per symbol. Writer queues are bounded: when a symbol writer falls behind the stream
+// reader blocks, stops reading the request body and TCP flow control pushes back on the producer.
+// A stream holds at most maxPendingSymbols partial micro-batches, the oldest one is handed over to make room for
+// another symbol. Writers idle for writerIdleMs stop, the next batch of their symbol starts a new one.
+@Component
+public class StreamingIngestor {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingIngestor.class);
+    private static final int POOLED_MICRO_BATCHES = 256;
+    private static final int MAX_FRAME_PRICES = (int) TradingStatsService.MAX_BATCH_SIZE;
+
+    private final TradingStatsService tradingStatsService;
+    private final JsonFactory jsonFactory;
+    private final int microBatchSize;
+    private final long flushIntervalNanos;
+    private final int writerQueueBatches;
+    private final int maxPendingSymbols;
+    private final long writerIdleNanos;
+
+    private final Map<String, SymbolWriter> writers = new ConcurrentHashMap<>();
+    private final BlockingQueue<MicroBatch> microBatchPool = new ArrayBlockingQueue<>(POOLED_MICRO_BATCHES);
+
+    public StreamingIngestor(TradingStatsService tradingStatsService, ObjectMapper objectMapper,
+                             TradingStatsProperties properties) {
+        this.tradingStatsService = tradingStatsService;
+        this.jsonFactory = objectMapper.getFactory();
+        this.microBatchSize = Math.min(properties.getStream().getMicroBatchSize(), MAX_FRAME_PRICES);
+        this.flushIntervalNanos = properties.getStream().getFlushIntervalMs() * 1_000_000L;
+        this.writerQueueBatches = properties.getStream().getWriterQueueBatches();
+        this.maxPendingSymbols = Math.max(1, properties.getStream().getMaxPendingSymbols());
+        this.writerIdleNanos = properties.getStream().getWriterIdleMs() * 1_000_000L;
+    }
+
+    public StreamIngestResult ingest(InputStream body) throws IOException {
+        StreamSession session = new StreamSession();
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new InsufficientDataException("Malformed frame " + (session.frames + 1) + ": object expected");
+                }
+                readFrame(parser, session);
+                session.frames++;
+                flushStale(session);
+            }
+        } catch (JsonProcessingException e) {
+            session.error = "Malformed frame " + (session.frames + 1) + ": " + e.getOriginalMessage();
+        } catch (InsufficientDataException e) {
+            session.error = e.getMessage();
+        } finally {
+            for (Map.Entry<String, MicroBatch> pending : session.pending.entrySet()) {
+                submit(session, pending.getKey(), pending.getValue());
+            }
+            session.pending.clear();
+            session.phaser.arriveAndAwaitAdvance();
+        }
+        return session.toResult();
+    }
+
+    private void readFrame(JsonParser parser, StreamSession session) throws IOException, InsufficientDataException {
+        String symbol = null;
+        int count = 0;
+        float[] frameValues = session.frameValues;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("symbol".equals(field) && token == JsonToken.VALUE_STRING) {
+                symbol = session.symbol(parser);
+            } else if ("value".equals(field) && token.isNumeric()) {
+                count = addFrameValue(frameValues, count, parser.getFloatValue());
+            } else if ("values".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    count = addFrameValue(frameValues, count, parser.getFloatValue());
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (symbol == null) {
+            throw new InsufficientDataException("Malformed frame " + (session.frames + 1) + ": symbol missing");
+        }
+
+        for (int i = 0; i < count; i++) {
+            MicroBatch batch = session.pending.get(symbol);
+            if (batch == null) {
+                if (session.pending.size() >= maxPendingSymbols) {
+                    submitOldest(session);
+                }
+                batch = acquireMicroBatch(session);
+                session.pending.put(symbol, batch);
+            }
+            batch.prices[batch.length++] = frameValues[i];
+            if (batch.length == microBatchSize) {
+                session.pending.remove(symbol);
+                submit(session, symbol, batch);
+            }
+        }
+    }
+
+    private static int addFrameValue(float[] frameValues, int count, float value) throws InsufficientDataException {
+        if (count == frameValues.length) {
+            throw new InsufficientDataException("Frame cannot carry more than " + MAX_FRAME_PRICES + " prices");
+        }
+        frameValues[count] = value;
+        return count + 1;
+    }
+
+    // Hands over micro-batches which have waited for more prices longer than the flush interval
+    private void flushStale(StreamSession session) {
+        long now = System.nanoTime();
+        if (now < session.nextFlushCheck) {
+            return;
+        }
+        session.nextFlushCheck = now + flushIntervalNanos;
+        Iterator<Map.Entry<String, MicroBatch>> iterator = session.pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, MicroBatch> pending = iterator.next();
+            if (now - pending.getValue().created >= flushIntervalNanos) {
+                iterator.remove();
+                submit(session, pending.getKey(), pending.getValue());
+            }
+        }
+    }
+
+    // Pending micro-batches are in creation order, the first one has waited longest
+    private void submitOldest(StreamSession session) {
+        Iterator<Map.Entry<String, MicroBatch>> iterator = session.pending.entrySet().iterator();
+        Map.Entry<String, MicroBatch> oldest = iterator.next();
+        iterator.remove();
+        submit(session, oldest.getKey(), oldest.getValue());
+    }
+
+    private void submit(StreamSession session, String symbol, MicroBatch batch) {
+        // counted in before the writer can check whether it is idle, so it cannot stop with this batch unapplied
+        SymbolWriter writer = writers.computeIfPresent(symbol, (key, current) -> {
+            current.inFlight.incrementAndGet();
+            return current;
+        });
+        if (writer == null) {
+            // first batch of a symbol is applied in place, a writer is started only once the service accepted the symbol
+            if (apply(symbol, batch)) {
+                writers.computeIfAbsent(symbol, SymbolWriter::new);
+            }
+            return;
+        }
+
+        session.phaser.register();
+        if (!writer.queue.offer(batch)) {
+            long blockedSince = System.nanoTime();
+            try {
+                writer.queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writer.inFlight.decrementAndGet();
+                session.phaser.arriveAndDeregister();
+                batch.session.rejected.putIfAbsent(symbol, "Stream interrupted");
+                releaseMicroBatch(batch);
+                return;
+            }
+            session.backpressureNanos += System.nanoTime() - blockedSince;
+        }
+    }
+
+    // Applies a micro-batch and returns it to the pool, returns false if the service rejected it
+    private boolean apply(String symbol, MicroBatch batch) {
+        StreamSession session = batch.session;
+        try {
+            tradingStatsService.addBatch(symbol, FloatBuffer.wrap(batch.prices, 0, batch.length));
+            session.prices.add(batch.length);
+            session.batches.increment();
+            return true;
+        } catch (InsufficientDataException e) {
+            session.rejected.putIfAbsent(symbol, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Streamed batch failed for symbol: {}", symbol, e);
+            session.rejected.putIfAbsent(symbol, "An unexpected error occurred.");
+        } finally {
+            releaseMicroBatch(batch);
+        }
+        return false;
+    }
+
+    private MicroBatch acquireMicroBatch(StreamSession session) {
+        MicroBatch batch = microBatchPool.poll();
+        if (batch == null) {
+            batch = new MicroBatch(microBatchSize);
+        }
+        batch.session = session;
+        batch.created = System.nanoTime();
+        return batch;
+    }
+
+    private void releaseMicroBatch(MicroBatch batch) {
+        batch.session = null;
+        batch.length = 0;
+        microBatchPool.offer(batch);
+    }
+
+    // Symbols with a running writer
+    public int getActiveWriters() {
+        return writers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.values().forEach(writer -> writer.thread.interrupt());
+    }
+
+    private static final class MicroBatch {
+        final float[] prices;
+        int length;
+        long created;
+        StreamSession session;
+
+        MicroBatch(int capacity) {
+            this.prices = new float[capacity];
+        }
+    }
+
+    // Single consumer of a symbol's micro-batches, applies them in submission order
+    private final class SymbolWriter implements Runnable {
+        final String symbol;
+        final BlockingQueue<MicroBatch> queue = new ArrayBlockingQueue<>(writerQueueBatches);
+        // Micro-batches handed to this writer and not applied yet, including ones a reader is about to queue
+        final AtomicInteger inFlight = new AtomicInteger();
+        final Thread thread;
+
+        SymbolWriter(String symbol) {
+            this.symbol = symbol;
+            this.thread = Thread.ofVirtual().name("tss-stream-writer-" + symbol).start(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    MicroBatch batch = queue.poll(writerIdleNanos, TimeUnit.NANOSECONDS);
+                    if (batch == null) {
+                        if (retire()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    Phaser phaser = batch.session.phaser;
+                    apply(symbol, batch);
+                    inFlight.decrementAndGet();
+                    phaser.arriveAndDeregister();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Leaves the writers map unless a reader handed over a micro-batch meanwhile, e.g. of a removed symbol
+        private boolean retire() {
+            writers.computeIfPresent(symbol, (key, current) -> current == this && inFlight.get() == 0 ? null : current);
+            return writers.get(symbol) != this;
+        }
+    }
+
+    // State of one stream, fields without synchronization are only touched by the stream reader
+    private final class StreamSession {
+        // reader is a party until the stream ends, every queued micro-batch adds one
+        final Phaser phaser = new Phaser(1);
+        // in insertion order, a micro-batch is put when it is acquired
+        final Map<String, MicroBatch> pending = new LinkedHashMap<>();
+        final float[] frameValues = new float[MAX_FRAME_PRICES];
+        final LongAdder prices = new LongAdder();
+        final LongAdder batches = new LongAdder();
+        final Map<String, String> rejected = new ConcurrentHashMap<>();
+        long frames;
+        long backpressureNanos;
+        long nextFlushCheck = System.nanoTime() + flushIntervalNanos;
+        String error;
+        String lastSymbol;
+
+        // Frames usually repeat symbols, reuse the last String instead of allocating one per frame
+        String symbol(JsonParser parser) throws IOException {
+            char[] text = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            if (lastSymbol == null || lastSymbol.length() != length || !sameChars(lastSymbol, text, offset)) {
+                lastSymbol = new String(text, offset, length);
+            }
+            return lastSymbol;
+        }
+
+        private boolean sameChars(String symbol, char[] text, int offset) {
+            for (int i = 0; i < symbol.length(); i++) {
+                if (symbol.charAt(i) != text[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        StreamIngestResult toResult() {
+            StreamIngestResult result = new StreamIngestResult();
+            result.setFrames(frames);
+            result.setPrices(prices.sum());
+            result.setBatches(batches.sum());
+            result.setBackpressureWaitMs(backpressureNanos / 1_000_000);
+            result.setRejected(Map.copyOf(rejected));
+            result.setError(error);
+            return result;
+        }
+    }
+}
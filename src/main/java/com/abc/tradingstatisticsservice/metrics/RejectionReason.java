@@ -0,0 +1,15 @@
+package com.abc.tradingstatisticsservice.metrics;
+
+// Why a batch was rejected, the tag of tss.ingest.rejections
+public enum RejectionReason {
+    // more than MAX_BATCH_SIZE prices
+    BATCH_SIZE,
+    // tss.max-symbols reached by a new symbol
+    SYMBOL_LIMIT,
+    // the batch cannot fit tss.memory.budget
+    MEMORY_BUDGET;
+
+    String tag() {
+        return name().toLowerCase();
+    }
+}
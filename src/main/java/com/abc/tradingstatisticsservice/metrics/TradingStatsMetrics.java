@@ -0,0 +1,111 @@
+package com.abc.tradingstatisticsservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+// Meters of the ingest and stats hot paths, exposed by the actuator on /actuator/prometheus.
+// Meters are looked up once, up front or per symbol, and kept by the caller, so recording is a plain increment
+// of counters and histogram buckets without tag lookups or allocation. Histogram buckets of the timers are set by
+// the management.metrics.distribution properties. Gauges are read from the service when scraped. Meters of a
+// symbol are removed once the symbol leaves the node, so removed and moved symbols are no longer exported.
+public class TradingStatsMetrics {
+    public static final String INGEST_LATENCY = "tss.ingest.latency";
+    public static final String INGEST_PRICES = "tss.ingest.prices";
+    public static final String INGEST_REJECTIONS = "tss.ingest.rejections";
+    public static final String STATS_LATENCY = "tss.stats.latency";
+    public static final String SYMBOL_PRICES = "tss.symbol.prices";
+    public static final String SYMBOL_BYTES = "tss.symbol.bytes";
+
+    private final MeterRegistry registry;
+    private final Counter[] rejections;
+    // Timer of kLevel at index kLevel - 1
+    private final Timer[] statsLatency;
+
+    public TradingStatsMetrics(MeterRegistry registry, int kLevels) {
+        this.registry = registry;
+        RejectionReason[] reasons = RejectionReason.values();
+        this.rejections = new Counter[reasons.length];
+        for (RejectionReason reason : reasons) {
+            rejections[reason.ordinal()] = Counter.builder(INGEST_REJECTIONS)
+                    .description("Rejected batches")
+                    .tag("reason", reason.tag())
+                    .register(registry);
+        }
+        this.statsLatency = new Timer[kLevels];
+        for (int kLevel = 1; kLevel <= kLevels; kLevel++) {
+            statsLatency[kLevel - 1] = Timer.builder(STATS_LATENCY)
+                    .description("Stats calculation of a k level")
+                    .tag("k", String.valueOf(kLevel))
+                    .register(registry);
+        }
+    }
+
+    // Meters of the symbol including its gauges, a symbol registered again after a reload gets the same meters back
+    public SymbolMeters symbolMeters(String symbol, Meter.Id... gauges) {
+        return new SymbolMeters(
+                Timer.builder(INGEST_LATENCY)
+                        .description("Batch commit including the write-ahead log")
+                        .tag("symbol", symbol)
+                        .register(registry),
+                Counter.builder(INGEST_PRICES)
+                        .description("Committed prices")
+                        .tag("symbol", symbol)
+                        .baseUnit("prices")
+                        .register(registry),
+                List.of(gauges));
+    }
+
+    // Gauge of the symbol in a tier, re-registering an existing one is a no-op
+    public <T> Meter.Id symbolGauge(String name, String symbol, String tier, T source, ToDoubleFunction<T> value) {
+        return Gauge.builder(name, source, value)
+                .tag("symbol", symbol)
+                .tag("tier", tier)
+                .register(registry)
+                .getId();
+    }
+
+    // Unregisters the meters of a symbol which left the node, registering the symbol again starts new ones
+    public void remove(SymbolMeters meters) {
+        registry.remove(meters.ingestLatency.getId());
+        registry.remove(meters.ingestedPrices.getId());
+        meters.gauges.forEach(registry::remove);
+    }
+
+    public <T> void gauge(String name, String description, T source, ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value)
+                .description(description)
+                .register(registry);
+    }
+
+    public void rejected(RejectionReason reason) {
+        rejections[reason.ordinal()].increment();
+    }
+
+    public void statsCalculated(int kLevel, long nanos) {
+        statsLatency[kLevel - 1].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static final class SymbolMeters {
+        private final Timer ingestLatency;
+        private final Counter ingestedPrices;
+        private final List<Meter.Id> gauges;
+
+        private SymbolMeters(Timer ingestLatency, Counter ingestedPrices, List<Meter.Id> gauges) {
+            this.ingestLatency = ingestLatency;
+            this.ingestedPrices = ingestedPrices;
+            this.gauges = gauges;
+        }
+
+        public void batchCommitted(int prices, long nanos) {
+            ingestLatency.record(nanos, TimeUnit.NANOSECONDS);
+            ingestedPrices.increment(prices);
+        }
+    }
+}
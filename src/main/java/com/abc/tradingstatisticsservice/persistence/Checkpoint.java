@@ -0,0 +1,189 @@
+package com.abc.tradingstatisticsservice.persistence;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.abc.tradingstatisticsservice.service.TradingStatsService.MAX_SYMBOL_BYTES;
+
+// Compact binary image of the retained prices of all symbols, all numbers little-endian:
+//   int32    magic "TSSC"
+//   byte     format version (1)
+//   int64    first write-ahead log segment not covered by the checkpoint
+//   per symbol:
+//     byte     symbol length in bytes (0 ends the checkpoint), UTF-8 symbol
+//     int64    symbol version (committed batches)
+//     int64    number of prices, float32 prices oldest first
+// Written to a temporary file and renamed once complete, so a crash never leaves a partial checkpoint.
+// Loaded prices are memory mapped views of the file, aggregates are rebuilt from them.
+// The same format holds a single symbol spilled out of memory, see readFile and writeFile.
+public final class Checkpoint {
+    private static final int MAGIC = 0x43535354;
+    private static final byte VERSION = 1;
+    private static final String FILE_NAME = "checkpoint.bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int COPY_PRICES = 64 * 1024;
+
+    public record SymbolImage(String symbol, long version, FloatBuffer prices) {
+    }
+
+    private final long walSegment;
+    private final List<SymbolImage> symbols;
+
+    private Checkpoint(long walSegment, List<SymbolImage> symbols) {
+        this.walSegment = walSegment;
+        this.symbols = symbols;
+    }
+
+    // Write-ahead log segments from this one on have to be replayed on top of the checkpoint
+    public long getWalSegment() {
+        return walSegment;
+    }
+
+    public List<SymbolImage> getSymbols() {
+        return symbols;
+    }
+
+    // Latest complete checkpoint in the directory, null when there is none
+    public static Checkpoint load(Path directory) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        return Files.exists(file) ? readFile(file) : null;
+    }
+
+    public static Checkpoint readFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0, Integer.BYTES + 1 + Long.BYTES);
+            if (header.getInt() != MAGIC || header.get() != VERSION) {
+                throw new IOException("Not a checkpoint of a supported version: " + file);
+            }
+            long walSegment = header.getLong();
+
+            List<SymbolImage> symbols = new ArrayList<>();
+            long position = header.limit();
+            for (int symbolLength; (symbolLength = read(channel, position, 1).get() & 0xFF) != 0; ) {
+                ByteBuffer symbolHeader = read(channel, position + 1, symbolLength + 2 * Long.BYTES);
+                byte[] symbolBytes = new byte[symbolLength];
+                symbolHeader.get(symbolBytes);
+                long version = symbolHeader.getLong();
+                long count = symbolHeader.getLong();
+                position += 1 + symbolHeader.limit();
+
+                FloatBuffer prices = channel.map(FileChannel.MapMode.READ_ONLY, position, count * Float.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asFloatBuffer();
+                symbols.add(new SymbolImage(new String(symbolBytes, StandardCharsets.UTF_8), version, prices));
+                position += count * Float.BYTES;
+            }
+            return new Checkpoint(walSegment, symbols);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Checkpoint truncated at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    // Starts a checkpoint covering the write-ahead log before walSegment
+    public static Writer write(Path directory, long walSegment) throws IOException {
+        return writeFile(directory.resolve(FILE_NAME), walSegment);
+    }
+
+    public static Writer writeFile(Path file, long walSegment) throws IOException {
+        return new Writer(file, walSegment);
+    }
+
+    public static final class Writer implements Closeable {
+        private final Path file;
+        private final Path temporaryFile;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_PRICES * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final float[] prices = new float[COPY_PRICES];
+        private boolean committed;
+
+        private Writer(Path file, long walSegment) throws IOException {
+            this.file = file;
+            this.temporaryFile = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.clear().putInt(MAGIC).put(VERSION).putLong(walSegment);
+            flush();
+        }
+
+        // Writes all retained prices of the symbol, the caller keeps the history from changing meanwhile
+        public void add(String symbol, long version, PriceHistory history) throws IOException {
+            writeSymbolHeader(symbol, version, history.size());
+            for (long sequence = history.oldestSequence(); sequence < history.written(); ) {
+                int length = (int) Math.min(COPY_PRICES, history.written() - sequence);
+                history.copyTo(sequence, prices, 0, length);
+                buffer.clear().asFloatBuffer().put(prices, 0, length);
+                buffer.position(length * Float.BYTES);
+                flush();
+                sequence += length;
+            }
+        }
+
+        // Writes prices from position to limit of the buffer, e.g. a symbol image of another checkpoint
+        public void add(String symbol, long version, FloatBuffer prices) throws IOException {
+            writeSymbolHeader(symbol, version, prices.remaining());
+            for (FloatBuffer source = prices.duplicate(); source.hasRemaining(); ) {
+                int length = Math.min(COPY_PRICES, source.remaining());
+                source.get(this.prices, 0, length);
+                buffer.clear().asFloatBuffer().put(this.prices, 0, length);
+                buffer.position(length * Float.BYTES);
+                flush();
+            }
+        }
+
+        private void writeSymbolHeader(String symbol, long version, long count) throws IOException {
+            byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+            if (symbolBytes.length == 0 || symbolBytes.length > MAX_SYMBOL_BYTES) {
+                throw new IllegalArgumentException("Symbol must have 1.." + MAX_SYMBOL_BYTES + " bytes");
+            }
+            buffer.clear().put((byte) symbolBytes.length).put(symbolBytes).putLong(version).putLong(count);
+            flush();
+        }
+
+        // Makes the checkpoint durable and replaces the previous one
+        public void commit() throws IOException {
+            buffer.clear().put((byte) 0);
+            flush();
+            channel.force(true);
+            channel.close();
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.abc.tradingstatisticsservice.persistence;
+
+public enum FsyncPolicy {
+    // a batch is acknowledged once its WAL record is on disk, concurrent batches share one fsync (group commit)
+    ALWAYS,
+    // WAL is forced to disk every fsync interval, a crash may lose the batches of the last interval
+    INTERVAL,
+    // WAL is left to the OS page cache, survives a process crash but not a power loss
+    NONE
+}
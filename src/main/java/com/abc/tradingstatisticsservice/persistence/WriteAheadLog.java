@@ -0,0 +1,398 @@
+package com.abc.tradingstatisticsservice.persistence;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.abc.tradingstatisticsservice.service.TradingStatsService.MAX_SYMBOL_BYTES;
+
+// Append-only log of committed batches, imported and removed symbols split into numbered segment files
+// wal-<segment>.log. A record, all numbers little-endian:
+//   int32    payload length
+//   int32    CRC32C of the payload
+//   int64    symbol version the batch was committed as, or the symbol was imported at
+//   byte     symbol length in bytes, UTF-8 symbol
+//   int32    number of prices, float32 prices of a batch
+//            or REMOVED for a removed symbol
+//            or IMPORTED, int32 number of prices, float32 prices replacing the symbol
+// Appends of all symbols are serialized and go to the page cache, durability is granted by awaitDurable
+// according to the FsyncPolicy. Replay stops at the first torn or corrupt record.
+public class WriteAheadLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    static final long MAX_SEGMENT_BYTES = 256L << 20;
+    private static final int REMOVED = -1;
+    private static final int IMPORTED = -2;
+    private static final int COPY_PRICES = 16 * 1024;
+
+    // Receives replayed records in log order
+    public interface RecordConsumer {
+        void batch(String symbol, long version, FloatBuffer prices);
+
+        void removed(String symbol);
+
+        void imported(String symbol, long version, FloatBuffer prices);
+    }
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final Lock appendLock = new ReentrantLock();
+    private final Lock syncLock = new ReentrantLock();
+    private final CRC32C crc = new CRC32C();
+    private final ScheduledExecutorService syncScheduler;
+
+    private FileChannel channel;
+    private long segment;
+    private long segmentBytes;
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    // Bytes appended to / forced to disk since the log was opened, positions are comparable across segments
+    private long appendedPosition;
+    private final AtomicLong durablePosition = new AtomicLong();
+
+    // Opens a new segment after the existing ones, existing segments are only read by replay
+    public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        try {
+            Files.createDirectories(directory);
+            List<Long> segments = segments(directory);
+            openSegment(segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log in " + directory, e);
+        }
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            this.syncScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("tss-wal-sync").factory());
+            syncScheduler.scheduleWithFixedDelay(this::syncQuietly, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncScheduler = null;
+        }
+    }
+
+    // Appends the batch and returns the position to pass to awaitDurable
+    public long append(String symbol, long version, float[] prices, int length) throws IOException {
+        return appendRecord(symbol, version, length, prices, length);
+    }
+
+    // Appends the removal of the symbol, records of it before are dropped on replay
+    public long appendRemoval(String symbol) throws IOException {
+        return appendRecord(symbol, 0, REMOVED, null, 0);
+    }
+
+    // Appends the retained prices of the history as the symbol at the version, e.g. one moved here from another
+    // node. Replay replaces the symbol by them, so only the imported symbol is written instead of a checkpoint.
+    // The caller keeps the history from changing meanwhile.
+    public long appendImport(String symbol, long version, PriceHistory history) throws IOException {
+        byte[] symbolBytes = symbolBytes(symbol);
+        long count = history.size();
+        int payloadLength = Math.toIntExact(Long.BYTES + 1 + symbolBytes.length + 2 * Integer.BYTES + count * Float.BYTES);
+        float[] prices = new float[COPY_PRICES];
+
+        appendLock.lock();
+        try {
+            if (segmentBytes >= MAX_SEGMENT_BYTES) {
+                rollLocked();
+            }
+            // the payload is streamed after the header, which is written last with the checksum of the payload
+            long recordStart = channel.position();
+            try {
+                channel.position(recordStart + HEADER_BYTES);
+                crc.reset();
+                ByteBuffer chunk = recordBuffer.clear();
+                chunk.putLong(version).put((byte) symbolBytes.length).put(symbolBytes).putInt(IMPORTED).putInt((int) count);
+                writePayload(chunk);
+                for (long sequence = history.oldestSequence(); sequence < history.written(); ) {
+                    int length = (int) Math.min(COPY_PRICES, history.written() - sequence);
+                    history.copyTo(sequence, prices, 0, length);
+                    chunk = recordBuffer.clear();
+                    chunk.asFloatBuffer().put(prices, 0, length);
+                    chunk.position(length * Float.BYTES);
+                    writePayload(chunk);
+                    sequence += length;
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(payloadLength).putInt((int) crc.getValue()).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, recordStart + HEADER_BYTES - header.remaining());
+                }
+            } catch (IOException | RuntimeException e) {
+                // a partial record would end the replay before the records appended after it
+                channel.truncate(recordStart);
+                channel.position(recordStart);
+                throw e;
+            }
+            segmentBytes += HEADER_BYTES + payloadLength;
+            appendedPosition += HEADER_BYTES + payloadLength;
+            return appendedPosition;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Caller holds appendLock, the chunk is written from 0 to its position
+    private void writePayload(ByteBuffer chunk) throws IOException {
+        chunk.flip();
+        crc.update(chunk.array(), 0, chunk.limit());
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+    }
+
+    private static byte[] symbolBytes(String symbol) {
+        byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+        if (symbolBytes.length > MAX_SYMBOL_BYTES) {
+            throw new IllegalArgumentException("Symbol must have at most " + MAX_SYMBOL_BYTES + " bytes");
+        }
+        return symbolBytes;
+    }
+
+    // count is the number of prices of a batch or the REMOVED marker
+    private long appendRecord(String symbol, long version, int count, float[] prices, int length) throws IOException {
+        byte[] symbolBytes = symbolBytes(symbol);
+        int payloadLength = Long.BYTES + 1 + symbolBytes.length + Integer.BYTES + length * Float.BYTES;
+
+        appendLock.lock();
+        try {
+            if (recordBuffer.capacity() < HEADER_BYTES + payloadLength) {
+                recordBuffer = ByteBuffer.allocate(HEADER_BYTES + payloadLength).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            ByteBuffer record = recordBuffer.clear();
+            record.position(HEADER_BYTES);
+            record.putLong(version).put((byte) symbolBytes.length).put(symbolBytes).putInt(count);
+            if (length > 0) {
+                record.asFloatBuffer().put(prices, 0, length);
+            }
+            record.position(HEADER_BYTES + payloadLength);
+
+            crc.reset();
+            crc.update(record.array(), HEADER_BYTES, payloadLength);
+            record.putInt(0, payloadLength).putInt(Integer.BYTES, (int) crc.getValue());
+            record.flip();
+
+            if (segmentBytes >= MAX_SEGMENT_BYTES) {
+                rollLocked();
+            }
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            segmentBytes += HEADER_BYTES + payloadLength;
+            appendedPosition += HEADER_BYTES + payloadLength;
+            return appendedPosition;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Blocks until the record ending at position is durable as required by the fsync policy. With ALWAYS the first
+    // waiter forces everything appended so far, waiters queued behind it usually find their records forced already.
+    public void awaitDurable(long position) throws IOException {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            awaitForced(position);
+        }
+    }
+
+    // Blocks until the record ending at position is on disk whatever the fsync policy, for records which cannot be
+    // sent again like an import whose old node drops the symbol next
+    public void awaitForced(long position) throws IOException {
+        if (durablePosition.get() >= position) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durablePosition.get() < position) {
+                sync();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void sync() throws IOException {
+        FileChannel syncedChannel;
+        long syncedPosition;
+        appendLock.lock();
+        try {
+            syncedChannel = channel;
+            syncedPosition = appendedPosition;
+        } finally {
+            appendLock.unlock();
+        }
+        // appends continue while forcing, a roll forces and closes the previous segment itself
+        try {
+            syncedChannel.force(false);
+        } catch (ClosedChannelException e) {
+            if (durablePosition.get() < syncedPosition) {
+                throw e;
+            }
+            return;
+        }
+        durablePosition.accumulateAndGet(syncedPosition, Math::max);
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            logger.error("Periodic write-ahead log fsync failed", e);
+        }
+    }
+
+    // Starts a new segment and returns its number, all records appended before are in lower segments
+    public long roll() throws IOException {
+        appendLock.lock();
+        try {
+            rollLocked();
+            return segment;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void rollLocked() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NONE) {
+            channel.force(false);
+            durablePosition.accumulateAndGet(appendedPosition, Math::max);
+        }
+        channel.close();
+        openSegment(segment + 1);
+    }
+
+    private void openSegment(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment = number;
+        segmentBytes = 0;
+    }
+
+    // Removes segments covered by a checkpoint
+    public void deleteSegmentsBefore(long number) throws IOException {
+        for (long old : segments(directory)) {
+            if (old < number) {
+                Files.deleteIfExists(segmentPath(directory, old));
+            }
+        }
+    }
+
+    // Replays records of segments from the given number on, a torn or corrupt tail is cut off
+    public static void replay(Path directory, long fromSegment, RecordConsumer consumer) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        for (long number : segments(directory)) {
+            if (number < fromSegment) {
+                continue;
+            }
+            Path path = segmentPath(directory, number);
+            long validBytes = replaySegment(path, consumer);
+            if (validBytes < Files.size(path)) {
+                logger.warn("Write-ahead log {} has a torn or corrupt record at {}, later records are dropped", path, validBytes);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                }
+                for (long later : segments(directory)) {
+                    if (later > number) {
+                        Files.delete(segmentPath(directory, later));
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private static long replaySegment(Path path, RecordConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            CRC32C crc = new CRC32C();
+            while (segment.remaining() >= HEADER_BYTES) {
+                int recordStart = segment.position();
+                int payloadLength = segment.getInt();
+                int checksum = segment.getInt();
+                if (payloadLength < Long.BYTES + 1 + Integer.BYTES || payloadLength > segment.remaining()) {
+                    return recordStart;
+                }
+                ByteBuffer payload = segment.slice(segment.position(), payloadLength).order(ByteOrder.LITTLE_ENDIAN);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    return recordStart;
+                }
+
+                long version = payload.getLong();
+                byte[] symbolBytes = new byte[payload.get() & 0xFF];
+                payload.get(symbolBytes);
+                String symbol = new String(symbolBytes, StandardCharsets.UTF_8);
+                int count = payload.getInt();
+                boolean imported = count == IMPORTED && payload.remaining() >= Integer.BYTES;
+                if (imported) {
+                    count = payload.getInt();
+                }
+                if (!imported && count == REMOVED && !payload.hasRemaining()) {
+                    consumer.removed(symbol);
+                } else if (count >= 0 && (long) count * Float.BYTES == payload.remaining()) {
+                    if (imported) {
+                        consumer.imported(symbol, version, payload.asFloatBuffer());
+                    } else {
+                        consumer.batch(symbol, version, payload.asFloatBuffer());
+                    }
+                } else {
+                    return recordStart;
+                }
+                segment.position(recordStart + HEADER_BYTES + payloadLength);
+            }
+            return segment.position();
+        }
+    }
+
+    private static List<Long> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name, SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length(), 10))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncScheduler != null) {
+            syncScheduler.shutdownNow();
+        }
+        appendLock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+}
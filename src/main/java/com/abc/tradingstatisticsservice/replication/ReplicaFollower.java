@@ -0,0 +1,256 @@
+package com.abc.tradingstatisticsservice.replication;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.ReplicationStatus;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Keeps a REPLICA in sync with its primary on a single thread. The replica starts from a snapshot of the primary,
+// then applies the primary's replication stream from the snapshot's sequence on. A symbol reset by the primary or
+// missing a batch is fetched again on its own, a replica too far behind for the primary's log loads a new snapshot.
+// So does a replica whose primary restarted: its sequences start over under a new epoch, which the stream request
+// and every heartbeat are checked against. Staleness is counted in sequence numbers, the newest one the primary
+// reported minus the newest one applied.
+@Component
+@ConditionalOnProperty(prefix = "tss.replication", name = "role", havingValue = "REPLICA")
+public class ReplicaFollower {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaFollower.class);
+
+    private final TradingStatsService tradingStatsService;
+    private final HttpClient client;
+    private final String primaryUrl;
+    private final long maxLag;
+    private final long timeoutMs;
+    private final long reconnectMs;
+    private final Thread follower;
+    private volatile boolean running = true;
+    // Response being read, closed to stop the follower
+    private volatile InputStream response;
+
+    private volatile boolean synced;
+    private volatile boolean connected;
+    // Epoch of the primary the snapshot was loaded from
+    private volatile long epoch;
+    private volatile long appliedSequence;
+    private volatile long primarySequence;
+    private volatile long lastContactNanos = System.nanoTime();
+
+    public ReplicaFollower(TradingStatsService tradingStatsService, TradingStatsProperties properties, MeterRegistry meterRegistry) {
+        TradingStatsProperties.Replication replication = properties.getReplication();
+        if (replication.getPrimaryUrl() == null) {
+            throw new IllegalStateException("tss.replication.primary-url is required for a REPLICA");
+        }
+        this.tradingStatsService = tradingStatsService;
+        this.primaryUrl = replication.getPrimaryUrl();
+        this.maxLag = replication.getMaxLag();
+        this.timeoutMs = replication.getTimeoutMs();
+        this.reconnectMs = replication.getReconnectMs();
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+        Gauge.builder("tss.replication.lag", this, ReplicaFollower::getLag)
+                .description("Batches the replica is behind its primary")
+                .register(meterRegistry);
+        this.follower = Thread.ofPlatform().daemon().name("tss-replica").start(this::follow);
+    }
+
+    private void follow() {
+        boolean reported = false;
+        while (running) {
+            try {
+                if (!synced) {
+                    loadSnapshot();
+                }
+                applyStream();
+                reported = false;
+            } catch (IOException | InsufficientDataException | RuntimeException e) {
+                // reported once until the primary answers again
+                if (running && (connected || !reported)) {
+                    logger.warn("Replication from {} interrupted: {}", primaryUrl, e.toString());
+                    reported = true;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            connected = false;
+            try {
+                Thread.sleep(reconnectMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Replaces all symbols by the primary's, symbols the primary does not hold are dropped
+    private void loadSnapshot() throws IOException, InsufficientDataException, InterruptedException {
+        HttpResponse<InputStream> snapshot = client.send(request("/replication/snapshot/"), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream in = open(snapshot)) {
+            ReplicationFormat.Reader reader = new ReplicationFormat.Reader(in);
+            ReplicationFormat.SnapshotHeader header = reader.readSnapshotHeader();
+            long sequence = header.sequence();
+            Set<String> dropped = new HashSet<>(tradingStatsService.getSymbols());
+            int symbols = 0;
+            for (String symbol = reader.readSnapshotSymbol(); symbol != null; symbol = reader.readSnapshotSymbol()) {
+                tradingStatsService.replaceReplicatedSymbol(symbol, reader.input());
+                dropped.remove(symbol);
+                symbols++;
+            }
+            for (String symbol : dropped) {
+                tradingStatsService.removeReplicatedSymbol(symbol);
+            }
+            epoch = header.epoch();
+            appliedSequence = sequence;
+            // sequences of an earlier epoch are not comparable
+            primarySequence = sequence;
+            synced = true;
+            lastContactNanos = System.nanoTime();
+            logger.info("Loaded snapshot of {} symbols at sequence {} from {}", symbols, sequence, primaryUrl);
+        } finally {
+            response = null;
+        }
+    }
+
+    // Applies frames after the applied sequence until the stream ends
+    private void applyStream() throws IOException, InsufficientDataException, InterruptedException {
+        HttpResponse<InputStream> stream = client.send(request("/replication/stream/?from=" + (appliedSequence + 1)
+                + "&epoch=" + epoch), HttpResponse.BodyHandlers.ofInputStream());
+        if (stream.statusCode() == 400) {
+            // too far behind, the primary's log no longer has the next batch, or the primary restarted
+            synced = false;
+        }
+        try (InputStream in = open(stream)) {
+            connected = true;
+            ReplicationFormat.Reader reader = new ReplicationFormat.Reader(in);
+            for (ReplicationFormat.Frame frame = reader.next(); frame != null; frame = reader.next()) {
+                lastContactNanos = System.nanoTime();
+                if (frame.type() == ReplicationFormat.HEARTBEAT
+                        && (frame.epoch() != epoch || frame.sequence() < appliedSequence)) {
+                    logger.warn("Primary {} restarted at sequence {}, loading a new snapshot", primaryUrl, frame.sequence());
+                    synced = false;
+                    return;
+                }
+                if (frame.type() == ReplicationFormat.BATCH) {
+                    applyBatch(frame);
+                } else if (frame.type() == ReplicationFormat.RESET) {
+                    fetchSymbol(frame.symbol());
+                }
+                if (frame.type() != ReplicationFormat.HEARTBEAT) {
+                    appliedSequence = frame.sequence();
+                }
+                primarySequence = Math.max(primarySequence, frame.sequence());
+            }
+        } finally {
+            response = null;
+        }
+    }
+
+    private void applyBatch(ReplicationFormat.Frame frame) throws IOException, InsufficientDataException, InterruptedException {
+        try {
+            tradingStatsService.applyReplicatedBatch(frame.symbol(), frame.version(), frame.prices(), frame.length());
+        } catch (InsufficientDataException e) {
+            logger.warn("{}, fetching the symbol from {}", e.getMessage(), primaryUrl);
+            fetchSymbol(frame.symbol());
+            tradingStatsService.applyReplicatedBatch(frame.symbol(), frame.version(), frame.prices(), frame.length());
+        }
+    }
+
+    // Replaces the symbol by the primary's, later batches it already contains are skipped by their version
+    private void fetchSymbol(String symbol) throws IOException, InsufficientDataException, InterruptedException {
+        HttpResponse<InputStream> export = client.send(request("/admin/symbols/export/?symbol="
+                + URLEncoder.encode(symbol, StandardCharsets.UTF_8)), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream in = export.body()) {
+            if (export.statusCode() == 200) {
+                tradingStatsService.replaceReplicatedSymbol(symbol, new BufferedInputStream(in));
+            } else if (export.statusCode() == 400) {
+                // removed on the primary
+                in.readAllBytes();
+                tradingStatsService.removeReplicatedSymbol(symbol);
+            } else {
+                throw new IOException("Symbol '" + symbol + "' could not be fetched, primary answered " + export.statusCode());
+            }
+        }
+    }
+
+    private InputStream open(HttpResponse<InputStream> answer) throws IOException {
+        InputStream in = answer.body();
+        if (answer.statusCode() != 200) {
+            try (in) {
+                throw new IOException("Primary answered " + answer.statusCode() + ": "
+                        + new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        response = in;
+        return new BufferedInputStream(in);
+    }
+
+    private HttpRequest request(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(primaryUrl + pathAndQuery)).GET().build();
+    }
+
+    public long getLag() {
+        return Math.max(0, primarySequence - appliedSequence);
+    }
+
+    // Why stats requests are refused, null while the replica is within maxLag of a primary it heard from recently
+    public String staleness() {
+        if (!synced) {
+            return "Replica has not loaded a snapshot of the primary yet";
+        }
+        long silentMs = (System.nanoTime() - lastContactNanos) / 1_000_000;
+        if (silentMs > timeoutMs) {
+            return "Replica has not heard from the primary for " + silentMs + " ms";
+        }
+        long lag = getLag();
+        if (lag > maxLag) {
+            return "Replica is " + lag + " batches behind the primary";
+        }
+        return null;
+    }
+
+    public ReplicationStatus getStatus() {
+        ReplicationStatus status = new ReplicationStatus();
+        status.setRole(ReplicationRole.REPLICA);
+        status.setEpoch(epoch);
+        status.setPrimarySequence(primarySequence);
+        status.setAppliedSequence(appliedSequence);
+        status.setLag(getLag());
+        status.setSynced(synced);
+        status.setConnected(connected);
+        status.setSinceLastContactMs((System.nanoTime() - lastContactNanos) / 1_000_000);
+        status.setStaleness(staleness());
+        return status;
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        running = false;
+        follower.interrupt();
+        InputStream in = response;
+        if (in != null) {
+            in.close();
+        }
+        follower.join(timeoutMs);
+    }
+}
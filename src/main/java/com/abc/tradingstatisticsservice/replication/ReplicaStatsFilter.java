@@ -0,0 +1,47 @@
+package com.abc.tradingstatisticsservice.replication;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// Stats answered by a REPLICA carry its lag behind the primary in batches, they are refused with 503 while the
+// replica is staler than allowed, see ReplicaFollower.staleness
+@Component
+@ConditionalOnProperty(prefix = "tss.replication", name = "role", havingValue = "REPLICA")
+public class ReplicaStatsFilter extends OncePerRequestFilter {
+    public static final String LAG_HEADER = "X-Replication-Lag";
+
+    private final ReplicaFollower replicaFollower;
+
+    public ReplicaStatsFilter(ReplicaFollower replicaFollower) {
+        this.replicaFollower = replicaFollower;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/stats/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        response.setHeader(LAG_HEADER, Long.toString(replicaFollower.getLag()));
+        String staleness = replicaFollower.staleness();
+        if (staleness != null) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Error: " + staleness);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,181 @@
+package com.abc.tradingstatisticsservice.replication;
+
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+// Replication stream of a primary, frames of all numbers little-endian:
+//   BATCH      byte 1, int64 sequence, int64 symbol version, symbol, int32 number of prices, float32 prices
+//   RESET      byte 2, int64 sequence, symbol - the symbol was imported or removed, replicas fetch it again
+//   HEARTBEAT  byte 3, int64 sequence of the newest batch committed on the primary, int64 epoch of the primary
+// A symbol is an uint16 length followed by UTF-8 bytes. The snapshot a replica starts from is
+//   byte format version (2), int64 epoch of the primary, int64 sequence it is consistent with, then per symbol
+//   byte 1, symbol and a SymbolTransferFormat, ended by byte 0.
+// Sequences start over when the primary restarts, the epoch tells replicas that they have to load a new snapshot.
+public final class ReplicationFormat {
+    public static final byte VERSION = 2;
+    public static final byte BATCH = 1;
+    public static final byte RESET = 2;
+    public static final byte HEARTBEAT = 3;
+    public static final int MAX_SYMBOL_BYTES = 0xFFFF;
+    private static final int SEQUENCE_OFFSET = 1;
+
+    // Decoded frame, prices [0, length) of a BATCH are only valid until the next frame is read. The epoch is only
+    // set for a HEARTBEAT.
+    public record Frame(byte type, long sequence, String symbol, long version, float[] prices, int length, long epoch) {
+    }
+
+    // Start of a snapshot
+    public record SnapshotHeader(long epoch, long sequence) {
+    }
+
+    private ReplicationFormat() {
+    }
+
+    // Encodes a BATCH frame of sequence 0, the sequence is set once the frame gets its place in the log
+    public static byte[] encodeBatch(String symbol, long version, float[] prices, int length) {
+        byte[] symbolBytes = symbolBytes(symbol);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 2 * Long.BYTES + 2 + symbolBytes.length + Integer.BYTES + length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(BATCH).putLong(0).putLong(version).putShort((short) symbolBytes.length).put(symbolBytes).putInt(length);
+        buffer.asFloatBuffer().put(prices, 0, length);
+        return buffer.array();
+    }
+
+    public static byte[] encodeReset(String symbol) {
+        byte[] symbolBytes = symbolBytes(symbol);
+        return ByteBuffer.allocate(1 + Long.BYTES + 2 + symbolBytes.length).order(ByteOrder.LITTLE_ENDIAN)
+                .put(RESET).putLong(0).putShort((short) symbolBytes.length).put(symbolBytes).array();
+    }
+
+    public static byte[] encodeHeartbeat(long sequence, long epoch) {
+        return ByteBuffer.allocate(1 + 2 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .put(HEARTBEAT).putLong(sequence).putLong(epoch).array();
+    }
+
+    static void setSequence(byte[] frame, long sequence) {
+        ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN).putLong(SEQUENCE_OFFSET, sequence);
+    }
+
+    public static void writeSnapshotHeader(OutputStream out, long epoch, long sequence) throws IOException {
+        out.write(ByteBuffer.allocate(1 + 2 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .put(VERSION).putLong(epoch).putLong(sequence).array());
+    }
+
+    // Followed by the SymbolTransferFormat of the symbol
+    public static void writeSnapshotSymbol(OutputStream out, String symbol) throws IOException {
+        byte[] symbolBytes = symbolBytes(symbol);
+        out.write(ByteBuffer.allocate(1 + 2 + symbolBytes.length).order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) 1).putShort((short) symbolBytes.length).put(symbolBytes).array());
+    }
+
+    public static void writeSnapshotEnd(OutputStream out) throws IOException {
+        out.write(0);
+        out.flush();
+    }
+
+    private static byte[] symbolBytes(String symbol) {
+        byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+        if (symbolBytes.length > MAX_SYMBOL_BYTES) {
+            throw new IllegalArgumentException("Symbol must have at most " + MAX_SYMBOL_BYTES + " bytes");
+        }
+        return symbolBytes;
+    }
+
+    // Reads frames and snapshots from a stream, buffers are reused between frames
+    public static final class Reader {
+        private final InputStream in;
+        private byte[] bytes = new byte[64 * 1024];
+        private float[] prices = new float[16 * 1024];
+
+        public Reader(InputStream in) {
+            this.in = in;
+        }
+
+        // Next frame, null once the stream ends between frames
+        public Frame next() throws IOException, InsufficientDataException {
+            int type = in.read();
+            if (type < 0) {
+                return null;
+            }
+            long sequence = readLong();
+            switch (type) {
+                case BATCH -> {
+                    long version = readLong();
+                    String symbol = readSymbol();
+                    int length = readInt();
+                    if (length < 0) {
+                        throw new InsufficientDataException("Malformed replication frame: " + length + " prices");
+                    }
+                    if (prices.length < length) {
+                        prices = new float[length];
+                    }
+                    ByteBuffer.wrap(readFully(length * Float.BYTES)).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(prices, 0, length);
+                    return new Frame(BATCH, sequence, symbol, version, prices, length, 0);
+                }
+                case RESET -> {
+                    return new Frame(RESET, sequence, readSymbol(), 0, null, 0, 0);
+                }
+                case HEARTBEAT -> {
+                    return new Frame(HEARTBEAT, sequence, null, 0, null, 0, readLong());
+                }
+                default -> throw new InsufficientDataException("Unknown replication frame type: " + type);
+            }
+        }
+
+        // Epoch of the primary and the sequence the snapshot is consistent with
+        public SnapshotHeader readSnapshotHeader() throws IOException, InsufficientDataException {
+            int version = in.read();
+            if (version != VERSION) {
+                throw new InsufficientDataException("Unsupported replication snapshot version: " + version);
+            }
+            long epoch = readLong();
+            return new SnapshotHeader(epoch, readLong());
+        }
+
+        // Symbol of the next SymbolTransferFormat in the snapshot, null at its end
+        public String readSnapshotSymbol() throws IOException, InsufficientDataException {
+            int marker = in.read();
+            if (marker == 0) {
+                return null;
+            }
+            if (marker != 1) {
+                throw new InsufficientDataException("Malformed replication snapshot");
+            }
+            return readSymbol();
+        }
+
+        public InputStream input() {
+            return in;
+        }
+
+        private String readSymbol() throws IOException, InsufficientDataException {
+            int length = Short.toUnsignedInt(ByteBuffer.wrap(readFully(2)).order(ByteOrder.LITTLE_ENDIAN).getShort());
+            return new String(readFully(length), 0, length, StandardCharsets.UTF_8);
+        }
+
+        private long readLong() throws IOException, InsufficientDataException {
+            return ByteBuffer.wrap(readFully(Long.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getLong();
+        }
+
+        private int readInt() throws IOException, InsufficientDataException {
+            return ByteBuffer.wrap(readFully(Integer.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        }
+
+        // Fills the start of the reused buffer
+        private byte[] readFully(int length) throws IOException, InsufficientDataException {
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            if (in.readNBytes(bytes, 0, length) < length) {
+                throw new InsufficientDataException("Replication stream ended within a frame");
+            }
+            return bytes;
+        }
+    }
+}
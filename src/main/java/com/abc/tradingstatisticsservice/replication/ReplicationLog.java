@@ -0,0 +1,128 @@
+package com.abc.tradingstatisticsservice.replication;
+
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Batches committed on a PRIMARY in commit order, numbered by one sequence across all symbols, for replicas to tail.
+// A batch is encoded once as a ReplicationFormat frame when it is appended and the same bytes are sent to every
+// replica. The newest frames up to capacityBytes are retained, a replica further behind loads a snapshot instead.
+// Readers copy frames without the lock, it is only taken to number frames and to wait for new ones. The log is not
+// persisted, so sequences start over with every start of the primary, which gets a new random epoch.
+public class ReplicationLog {
+    // Frames sent to a replica in one write at most
+    private static final int MAX_READ_FRAMES = 1024;
+
+    private final long capacityBytes;
+    // Tells replicas whether sequences are still counted by the primary they synced with, never 0
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final ConcurrentSkipListMap<Long, byte[]> frames = new ConcurrentSkipListMap<>();
+    private final Lock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    // Guarded by lock
+    private long retainedBytes;
+    // Sequence of the newest frame, 0 before the first one
+    private volatile long head;
+    private volatile boolean closed;
+
+    public ReplicationLog(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    // Caller holds the write lock of the symbol, so the batches of a symbol are numbered in version order
+    public long appendBatch(String symbol, long version, float[] prices, int length) {
+        return append(ReplicationFormat.encodeBatch(symbol, version, prices, length));
+    }
+
+    // The symbol was imported or removed, caller keeps batches of the symbol from being committed meanwhile
+    public long appendReset(String symbol) {
+        return append(ReplicationFormat.encodeReset(symbol));
+    }
+
+    private long append(byte[] frame) {
+        lock.lock();
+        try {
+            long sequence = head + 1;
+            ReplicationFormat.setSequence(frame, sequence);
+            frames.put(sequence, frame);
+            retainedBytes += frame.length;
+            // the newest frame is kept even when it is larger than the capacity on its own
+            while (retainedBytes > capacityBytes && frames.size() > 1) {
+                retainedBytes -= frames.pollFirstEntry().getValue().length;
+            }
+            head = sequence;
+            appended.signalAll();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long head() {
+        return head;
+    }
+
+    public long epoch() {
+        return epoch;
+    }
+
+    // Oldest sequence a replica can continue from
+    public long oldest() {
+        Map.Entry<Long, byte[]> first = frames.firstEntry();
+        return first != null ? first.getKey() : head + 1;
+    }
+
+    // Frames from sequence from on, waits up to timeoutMs for the first one. Empty when none arrived in time or
+    // the log is closed, throws when frames from on are no longer retained.
+    public List<byte[]> read(long from, long timeoutMs) throws InsufficientDataException, InterruptedException {
+        if (head < from && !closed) {
+            lock.lock();
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+                while (head < from && !closed && nanos > 0) {
+                    nanos = appended.awaitNanos(nanos);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<byte[]> read = new ArrayList<>();
+        long expected = from;
+        for (Map.Entry<Long, byte[]> frame : frames.tailMap(from).entrySet()) {
+            // frames evicted since the first one was read leave a gap
+            if (frame.getKey() != expected || read.size() == MAX_READ_FRAMES) {
+                break;
+            }
+            read.add(frame.getValue());
+            expected++;
+        }
+        if (from <= head && read.isEmpty()) {
+            throw new InsufficientDataException("Sequence " + from + " is no longer retained, oldest is " + oldest());
+        }
+        return read;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Wakes up readers waiting for frames, they get no more
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
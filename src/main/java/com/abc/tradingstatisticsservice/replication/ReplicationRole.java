@@ -0,0 +1,10 @@
+package com.abc.tradingstatisticsservice.replication;
+
+public enum ReplicationRole {
+    // batches are neither published nor followed
+    NONE,
+    // committed batches are kept in a ReplicationLog and streamed to replicas
+    PRIMARY,
+    // read only copy of a primary's symbols, batches arrive only from its stream, see ReplicaFollower
+    REPLICA
+}
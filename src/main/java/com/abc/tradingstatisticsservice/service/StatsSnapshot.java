@@ -0,0 +1,40 @@
+package com.abc.tradingstatisticsservice.service;
+
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Stats of all k levels of one symbol as of a committed batch, published as a whole so readers
+// never need the symbol lock. With eager aggregation every available level is filled in on commit,
+// otherwise levels are filled in on first request. Instances and the TradingStats they hold are shared
+// between readers and must not be modified.
+public class StatsSnapshot {
+    private final long version;
+    private final long itemCount;
+    private final AtomicReferenceArray<TradingStats> statsForKLevels;
+
+    StatsSnapshot(long version, long itemCount, int kLevels) {
+        this.version = version;
+        this.itemCount = itemCount;
+        this.statsForKLevels = new AtomicReferenceArray<>(kLevels);
+    }
+
+    // Number of batches committed for the symbol, changes whenever any stats may have changed
+    public long getVersion() {
+        return version;
+    }
+
+    // Prices retained for the symbol at this version
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    // Stats for kLevel 1..8, null when there was not enough data or the level was not calculated yet
+    public TradingStats getStats(int kLevel) {
+        return statsForKLevels.get(kLevel - 1);
+    }
+
+    void setStats(int kLevel, TradingStats stats) {
+        statsForKLevels.set(kLevel - 1, stats);
+    }
+}
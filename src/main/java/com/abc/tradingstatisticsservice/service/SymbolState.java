@@ -0,0 +1,70 @@
+package com.abc.tradingstatisticsservice.service;
+
+import com.abc.tradingstatisticsservice.aggregation.AccumulatorMode;
+import com.abc.tradingstatisticsservice.aggregation.AggregationMode;
+import com.abc.tradingstatisticsservice.aggregation.AggregationStrategy;
+import com.abc.tradingstatisticsservice.aggregation.WindowQuantiles;
+import com.abc.tradingstatisticsservice.metrics.TradingStatsMetrics;
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Everything kept for a single symbol. Guarded by its own lock: batches of one symbol are applied
+// by one writer at a time, different symbols never contend with each other.
+// Stats readers dereference the published snapshot and take the read lock only to fill in lazy stats.
+class SymbolState {
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Single primitive ring buffer with all retained prices, shared by whichever aggregation is active
+    final PriceHistory history;
+
+    // Mode requested for the symbol, AUTO lets activeMode follow the observed reads per batch
+    final AggregationMode configuredMode;
+    AggregationMode activeMode;
+    AggregationStrategy aggregation;
+    // Percentiles of the k level windows, null when disabled. Independent of the aggregation mode
+    final WindowQuantiles quantiles;
+    // Ingest meters of the symbol, recorded after each committed batch
+    final TradingStatsMetrics.SymbolMeters meters;
+
+    // Prices of the batch being committed, only used under the write lock
+    final float[] batchPrices = new float[(int) TradingStatsService.MAX_BATCH_SIZE];
+
+    // Committed batches, only modified under the write lock
+    long version;
+    // Stats as of the last committed batch, read without any locking
+    volatile StatsSnapshot snapshot;
+
+    // Stats requests and committed batches since the last AUTO evaluation
+    final LongAdder reads = new LongAdder();
+    int batchesSinceEvaluation;
+
+    // System.nanoTime() of the last batch or stats request, orders symbols for spilling
+    volatile long lastAccess = System.nanoTime();
+    // Bytes counted against the memory budget, only modified under the write lock
+    volatile long accountedBytes;
+    // Set under the write lock once the state is spilled or removed, holders of a stale reference look the symbol up again
+    volatile boolean spilled;
+
+    SymbolState(PriceHistory history, AggregationMode configuredMode, AccumulatorMode accumulatorMode, WindowQuantiles quantiles,
+                TradingStatsMetrics.SymbolMeters meters) {
+        this.history = history;
+        this.configuredMode = configuredMode;
+        this.quantiles = quantiles;
+        this.meters = meters;
+        switchAggregation(configuredMode == AggregationMode.AUTO ? AggregationMode.EAGER : configuredMode, accumulatorMode);
+    }
+
+    // Heap bytes accounted against the memory budget. Caller must hold a lock
+    long residentBytes() {
+        return (history.isOnHeap() ? history.residentBytes() : 0) + aggregation.residentBytes() + (long) batchPrices.length * Float.BYTES
+                + (quantiles != null ? quantiles.residentBytes() : 0);
+    }
+
+    // Caller must hold the write lock, aggregates are rebuilt from the retained history
+    void switchAggregation(AggregationMode mode, AccumulatorMode accumulatorMode) {
+        this.aggregation = mode.newStrategy(history, accumulatorMode);
+        this.activeMode = mode;
+    }
+}
@@ -1,202 +1,1246 @@
 package com.abc.tradingstatisticsservice.service;
 
+import com.abc.tradingstatisticsservice.aggregation.AccumulatorMode;
+import com.abc.tradingstatisticsservice.aggregation.AggregationMode;
+import com.abc.tradingstatisticsservice.aggregation.AggregationStrategy;
+import com.abc.tradingstatisticsservice.aggregation.PriceAccumulator;
+import com.abc.tradingstatisticsservice.aggregation.WindowQuantiles;
+import com.abc.tradingstatisticsservice.cluster.SymbolTransferFormat;
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.SymbolBatchResult;
+import com.abc.tradingstatisticsservice.dto.SymbolStats;
+import com.abc.tradingstatisticsservice.dto.TradingDataBatch;
 import com.abc.tradingstatisticsservice.dto.TradingStats;
 import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.metrics.RejectionReason;
+import com.abc.tradingstatisticsservice.metrics.TradingStatsMetrics;
+import com.abc.tradingstatisticsservice.persistence.Checkpoint;
+import com.abc.tradingstatisticsservice.persistence.WriteAheadLog;
+import com.abc.tradingstatisticsservice.replication.ReplicationFormat;
+import com.abc.tradingstatisticsservice.replication.ReplicationLog;
+import com.abc.tradingstatisticsservice.replication.ReplicationRole;
+import com.abc.tradingstatisticsservice.storage.MappedPriceStore;
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+import com.abc.tradingstatisticsservice.storage.StorageMode;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.util.Arrays;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.net.URLEncoder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
 @Service
 public class TradingStatsService {
-    private static final int[] K_SIZES = {10, 100, 1000, 10_000, 100_000, 1000_000, 10_000_000, 100_000_000};
-    private static final int[] K_SIZES_REAL = {10, 90, 900, 9000, 90_000, 900_000, 90_00000, 90_000_000};
-    private static final float MAX_BATCH_SIZE= 10_000;
-    private static final int MAX_SYMBOLS = 10;
+    static final int[] K_SIZES = {10, 100, 1000, 10_000, 100_000, 1000_000, 10_000_000, 100_000_000};
+    public static final int K_LEVELS = K_SIZES.length;
+    public static final float MAX_BATCH_SIZE= 10_000;
+    // UTF-8 bytes of a symbol, it is stored with a length byte
+    public static final int MAX_SYMBOL_BYTES = 255;
     public static final int BIG_D_SCALE = 5;
+    // AUTO thresholds: at least one read per batch pays off precomputing, rare reads prefer plain appends
+    private static final double AUTO_EAGER_READS_PER_BATCH = 1.0;
+    private static final double AUTO_LAZY_READS_PER_BATCH = 0.05;
+
+    private static final int CHECKPOINT_COPY_PRICES = 64 * 1024;
+    private static final String SPILL_SUFFIX = ".spill";
 
     private static final Logger logger = LoggerFactory.getLogger(TradingStatsService.class);
 
-    // Maps to store the rolling sums, squared sums, and counts for each symbol and each k
-    private final Map<String, BigDecimal[]> sumForKPrices = new ConcurrentHashMap<>();
-    private final Map<String, BigDecimal[]> squaredSumForKPrices = new ConcurrentHashMap<>();
-    private final Map<String, Integer[]> countForKPrices = new ConcurrentHashMap<>();
-    private final Map<String, Deque<Float>[]> pricesDequeues = new ConcurrentHashMap<>();
+    private final AccumulatorMode accumulatorMode;
+    private final AggregationMode aggregationMode;
+    private final Map<String, AggregationMode> symbolAggregationModes;
+    private final int autoEvaluationBatches;
+    private final boolean quantilesEnabled;
+    private final int maxSymbols;
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private final StorageMode storageMode;
+    private final Path storageDirectory;
+
+    private final Path persistenceDirectory;
+    // Null when persistence is disabled
+    private final WriteAheadLog writeAheadLog;
+    private final ScheduledExecutorService checkpointScheduler;
+    private final Lock checkpointLock = new ReentrantLock();
+    // First failed write-ahead log sync, batches and checkpoints are refused from then on
+    private volatile IOException walFailure;
+    // Set while the checkpoint and the write-ahead log are loaded, logged batches were admitted already
+    private boolean recovering;
+
+    // Null unless this service is a replication PRIMARY
+    private final ReplicationLog replicationLog;
+    // A REPLICA only commits batches streamed from its primary
+    private final boolean readOnly;
+
+    private final Map<String, SymbolState> symbolStates = new ConcurrentHashMap<>();
+    // Symbols spilled to disk with the bytes they held. A symbol is always in symbolStates or here, while it moves
+    // between them it is briefly in both
+    private final Map<String, SpilledSymbol> spilledSymbols = new ConcurrentHashMap<>();
+    // Sum of accountedBytes of the symbols in symbolStates
+    private final AtomicLong residentBytes = new AtomicLong();
+    // Serializes registration, spilling and reloading of symbols, so neither the memory budget nor maxSymbols
+    // can be overshot by concurrent batches. Batches and stats of resident symbols never take it.
+    private final Lock symbolRegistrationLock = new ReentrantLock();
+    // Called with the symbol after each committed batch, outside of the symbol lock
+    private final List<Consumer<String>> batchListeners = new CopyOnWriteArrayList<>();
+    private final TradingStatsMetrics metrics;
+
+    public TradingStatsService() {
+        this(new TradingStatsProperties());
+    }
+
+    // Without a registry meters record nothing
+    public TradingStatsService(TradingStatsProperties properties) {
+        this(properties, new CompositeMeterRegistry());
+    }
+
+    @Autowired
+    public TradingStatsService(TradingStatsProperties properties, MeterRegistry meterRegistry) {
+        this.metrics = new TradingStatsMetrics(meterRegistry, K_LEVELS);
+        metrics.gauge("tss.resident.bytes", "Bytes held by all resident symbols", residentBytes, AtomicLong::get);
+        this.accumulatorMode = properties.getAccumulatorMode();
+        this.aggregationMode = properties.getAggregationMode();
+        this.symbolAggregationModes = Map.copyOf(properties.getSymbolAggregationModes());
+        this.autoEvaluationBatches = properties.getAutoEvaluationBatches();
+        this.quantilesEnabled = properties.isQuantilesEnabled();
+        this.maxSymbols = properties.getMaxSymbols();
+        DataSize budget = properties.getMemory().getBudget();
+        this.memoryBudget = budget != null ? budget.toBytes() : Runtime.getRuntime().maxMemory() / 4 * 3;
+        this.persistenceDirectory = properties.getPersistence().getDirectory();
+        this.spillDirectory = Objects.requireNonNullElse(properties.getMemory().getSpillDirectory(),
+                persistenceDirectory.resolve("spill"));
+        deleteSpillFiles();
+        this.storageMode = properties.getStorage().getMode();
+        this.storageDirectory = Objects.requireNonNullElse(properties.getStorage().getDirectory(),
+                persistenceDirectory.resolve("prices"));
+        if (storageMode == StorageMode.MAPPED) {
+            MappedPriceStore.deleteStoreFiles(storageDirectory);
+        }
+        metrics.gauge("tss.memory.budget.bytes", "Memory budget of all resident symbols", this, service -> service.memoryBudget);
+
+        TradingStatsProperties.Replication replication = properties.getReplication();
+        this.replicationLog = replication.getRole() == ReplicationRole.PRIMARY
+                ? new ReplicationLog(replication.getLogSize().toBytes()) : null;
+        this.readOnly = replication.getRole() == ReplicationRole.REPLICA;
+
+        TradingStatsProperties.Persistence persistence = properties.getPersistence();
+        if (persistence.isEnabled()) {
+            recover();
+            this.writeAheadLog = new WriteAheadLog(persistenceDirectory, persistence.getFsync(), persistence.getFsyncIntervalMs());
+            this.checkpointScheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().daemon().name("tss-checkpoint").factory());
+            long interval = persistence.getCheckpointIntervalSeconds();
+            checkpointScheduler.scheduleWithFixedDelay(this::checkpointQuietly, interval, interval, TimeUnit.SECONDS);
+        } else {
+            this.writeAheadLog = null;
+            this.checkpointScheduler = null;
+        }
+    }
 
-    // TreeMap to store prices just for max and min (separated for holding only subsets)
-    private final Map<String, NavigableMap<Float, Integer>[]> priceMaxMinTreeMaps = new ConcurrentHashMap<>();
-    
     public void addBatch(String symbol, Float[] values) throws InsufficientDataException {
-        if (!pricesDequeues.containsKey(symbol) && pricesDequeues.size() >= MAX_SYMBOLS) {
-            logger.warn("Batch rejected: Unique symbols size exceeded. Symbol: {}", symbol);
-            throw new InsufficientDataException("Unique symbols size exceeded. Batch rejected");
+        applyBatch(symbol, values.length, i -> values[i]);
+    }
+
+    // Primitive variant, prices are read from position to limit of the buffer without boxing
+    public void addBatch(String symbol, FloatBuffer values) throws InsufficientDataException {
+        int position = values.position();
+        applyBatch(symbol, values.remaining(), i -> values.get(position + i));
+    }
+
+    // Appends prices[0, length) of any length in order as one batch, used to load history in bulk without
+    // MAX_BATCH_SIZE round trips. Stats are published once for the whole batch.
+    public void addHistory(String symbol, float[] prices, int length) throws InsufficientDataException {
+        checkWritable();
+        validateSymbol(symbol);
+        commitBatch(symbol, getOrRegisterSymbol(symbol), length, arrayPrices(prices));
+    }
+
+    // Read access to the prices of a batch regardless of how they were delivered
+    @FunctionalInterface
+    private interface BatchPrices {
+        float get(int index);
+
+        // Prices [0, length) as an array, unboxed into buffer unless it is too small
+        default float[] toArray(float[] buffer, int length) {
+            float[] prices = length <= buffer.length ? buffer : new float[length];
+            for (int i = 0; i < length; i++) {
+                prices[i] = get(i);
+            }
+            return prices;
+        }
+    }
+
+    // Prices of a batch already unboxed, the array is used as it is
+    private static BatchPrices arrayPrices(float[] prices) {
+        return new BatchPrices() {
+            @Override
+            public float get(int index) {
+                return prices[index];
+            }
+
+            @Override
+            public float[] toArray(float[] buffer, int length) {
+                return prices;
+            }
+        };
+    }
+
+    private void checkWritable() throws InsufficientDataException {
+        if (readOnly) {
+            throw new InsufficientDataException("Replica is read only, batches are accepted by the primary");
+        }
+        checkLogHealthy();
+    }
+
+    private void checkLogHealthy() {
+        if (walFailure != null) {
+            throw new UncheckedIOException("Write-ahead log sync failed, batches are no longer accepted", walFailure);
+        }
+    }
+
+    private void applyBatch(String symbol, int length, BatchPrices values) throws InsufficientDataException {
+        checkWritable();
+        validateSymbol(symbol);
+        validateBatchSize(symbol, length);
+        commitBatch(symbol, getOrRegisterSymbol(symbol), length, values);
+    }
+
+    // Applies batches of many symbols. The whole request is validated and its new symbols are registered up front,
+    // then symbols are applied in parallel, batches of one symbol in request order by a single writer
+    public Map<String, SymbolBatchResult> addBatches(List<TradingDataBatch> batches) throws InsufficientDataException {
+        checkWritable();
+        if (batches == null) {
+            throw new InsufficientDataException("Batches are required");
         }
+        Map<String, List<Float[]>> batchesBySymbol = new LinkedHashMap<>();
+        for (TradingDataBatch batch : batches) {
+            if (batch.getSymbol() == null || batch.getValues() == null) {
+                throw new InsufficientDataException("Symbol and values are required for every batch");
+            }
+            validateSymbol(batch.getSymbol());
+            validateBatchSize(batch.getSymbol(), batch.getValues().length);
+            batchesBySymbol.computeIfAbsent(batch.getSymbol(), symbol -> new ArrayList<>()).add(batch.getValues());
+        }
+        Map<String, SymbolState> states = registerSymbols(batchesBySymbol.keySet());
+
+        Map<String, SymbolBatchResult> results = new ConcurrentHashMap<>();
+        batchesBySymbol.entrySet().parallelStream().forEach(symbolBatches -> {
+            String symbol = symbolBatches.getKey();
+            results.put(symbol, commitBatches(symbol, states.get(symbol), symbolBatches.getValue()));
+        });
+
+        Map<String, SymbolBatchResult> orderedResults = new LinkedHashMap<>();
+        batchesBySymbol.keySet().forEach(symbol -> orderedResults.put(symbol, results.get(symbol)));
+        return orderedResults;
+    }
 
-        if (values.length > MAX_BATCH_SIZE) {
-            logger.warn("Batch rejected: Batch size {} exceeds MAX_BATCH_SIZE. Symbol: {}", values.length, symbol);
+    private SymbolBatchResult commitBatches(String symbol, SymbolState state, List<Float[]> batches) {
+        SymbolBatchResult result = new SymbolBatchResult();
+        try {
+            for (Float[] values : batches) {
+                commitBatch(symbol, state, values.length, i -> values[i]);
+                result.setBatches(result.getBatches() + 1);
+                result.setPrices(result.getPrices() + values.length);
+            }
+        } catch (InsufficientDataException e) {
+            result.setError(e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Bulk batch failed for symbol: {}", symbol, e);
+            result.setError("An unexpected error occurred.");
+        }
+        return result;
+    }
+
+    // Symbols are written with a length byte to the write-ahead log, checkpoints and binary batches
+    private void validateSymbol(String symbol) throws InsufficientDataException {
+        if (symbol == null || symbol.isEmpty()
+                || symbol.getBytes(StandardCharsets.UTF_8).length > MAX_SYMBOL_BYTES) {
+            logger.warn("Batch rejected: Symbol must have 1..{} bytes", MAX_SYMBOL_BYTES);
+            throw new InsufficientDataException("Symbol must have 1.." + MAX_SYMBOL_BYTES + " bytes");
+        }
+    }
+
+    private void validateBatchSize(String symbol, int length) throws InsufficientDataException {
+        if (length > MAX_BATCH_SIZE) {
+            metrics.rejected(RejectionReason.BATCH_SIZE);
+            logger.warn("Batch rejected: Batch size {} exceeds MAX_BATCH_SIZE. Symbol: {}", length, symbol);
             throw new InsufficientDataException("Singe Batch Size cannot exceed " + MAX_BATCH_SIZE);
         }
+    }
 
-        initializeCollections(symbol);
+    private void commitBatch(String symbol, SymbolState state, int length, BatchPrices values) throws InsufficientDataException {
+        long started = System.nanoTime();
+        long walPosition = 0;
+        state = lockForWrite(symbol, state);
+        try {
+            // a batch of the symbol may be applied unpublished behind a failed sync
+            checkLogHealthy();
+            PriceHistory history = state.history;
+            long growth = history.isOnHeap() ? Math.min(length, history.capacity() - history.size()) * Float.BYTES : 0;
+            if (state.accountedBytes + growth > memoryBudget && !recovering) {
+                metrics.rejected(RejectionReason.MEMORY_BUDGET);
+                logger.warn("Batch rejected: Memory budget of {} bytes exceeded by symbol: {}", memoryBudget, symbol);
+                throw new InsufficientDataException("Memory budget exceeded. Batch rejected");
+            }
 
-        Deque<Float>[] priceDequeues = pricesDequeues.get(symbol);
-        BigDecimal[] sumForKPrices = this.sumForKPrices.get(symbol);
-        BigDecimal[] squaredSumForKPrices = this.squaredSumForKPrices.get(symbol);
-        Integer[] countForKPrices = this.countForKPrices.get(symbol);
-        NavigableMap<Float, Integer>[] priceMaxMinTreeMap = priceMaxMinTreeMaps.get(symbol);
+            // unboxed into the buffer of the symbol, the aggregation pre-aggregates the batch as a whole
+            float[] prices = values.toArray(state.batchPrices, length);
+            // logged before it is applied, records of a symbol are in version order
+            if (writeAheadLog != null) {
+                walPosition = writeAheadLog.append(symbol, state.version + 1, prices, length);
+            }
+            state.aggregation.appendAll(prices, 0, length);
+            if (state.quantiles != null) {
+                state.quantiles.append(prices, 0, length);
+            }
+            evaluateAutoAggregation(symbol, state);
+            StatsSnapshot snapshot = buildSnapshot(symbol, state, ++state.version);
+            account(state);
+            // published and replicated only once durable, readers and replicas never see a batch a crash could
+            // lose. Waited for under the lock of this symbol only, so batches of all symbols still share one fsync.
+            // Should the sync fail the batch stays applied unpublished and the service stops accepting batches and
+            // writing checkpoints, so a retried batch is never counted twice. Whether its record survived is
+            // up to the disk, a restart replays the log as far as it is intact.
+            if (writeAheadLog != null) {
+                awaitDurable(symbol, walPosition);
+            }
+            state.snapshot = snapshot;
+            if (replicationLog != null) {
+                replicationLog.appendBatch(symbol, state.version, prices, length);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Batch could not be logged for symbol " + symbol, e);
+        } finally {
+            state.lock.writeLock().unlock();
+        }
 
-        for (Float value : values) {
-            accumulateInNextDeque(0, value, priceDequeues, sumForKPrices, squaredSumForKPrices, priceMaxMinTreeMap, countForKPrices);
+        state.meters.batchCommitted(length, System.nanoTime() - started);
+        logger.debug("Batch added successfully for symbol: {} with {} values", symbol, length);
+        for (Consumer<String> listener : batchListeners) {
+            listener.accept(symbol);
         }
+        spillIdleSymbols(Set.of(symbol));
+    }
 
-        logger.info("Batch added successfully for symbol: {} with {} values", symbol, values.length);
+    private void awaitDurable(String symbol, long walPosition) throws IOException {
+        try {
+            writeAheadLog.awaitDurable(walPosition);
+        } catch (IOException e) {
+            walFailed(symbol, e);
+            throw e;
+        }
     }
-    
-    private void accumulateInNextDeque(int dequeKIndex, Float currentValue, Deque<Float>[] dequeues,
-                                       BigDecimal[] sumForKPrices, BigDecimal[] squaredSumForKPrices,
-                                       NavigableMap<Float, Integer>[] pricesMinMaxMap, Integer[] countForKPrices) {
 
-        Deque<Float> deque = dequeues[dequeKIndex];
-        BigDecimal bgValue = BigDecimal.valueOf(currentValue);
+    // Imports and removals are forced whatever the fsync policy, the node they came from does not keep them
+    private void awaitForced(String symbol, long walPosition) throws IOException {
+        try {
+            writeAheadLog.awaitForced(walPosition);
+        } catch (IOException e) {
+            walFailed(symbol, e);
+            throw e;
+        }
+    }
 
-        deque.addLast(currentValue.floatValue());
-        countForKPrices[dequeKIndex]++;
+    private void walFailed(String symbol, IOException e) {
+        if (walFailure == null) {
+            walFailure = e;
+            logger.error("Write-ahead log sync failed for symbol '{}', batches are no longer accepted", symbol, e);
+        }
+    }
 
-        sumForKPrices[dequeKIndex] = sumForKPrices[dequeKIndex].add(bgValue);
-        squaredSumForKPrices[dequeKIndex] = squaredSumForKPrices[dequeKIndex].add(bgValue.pow(2));
-        pricesMinMaxMap[dequeKIndex].merge(currentValue.floatValue(), 1, Integer::sum);
+    // Listeners must return quickly, they run on the thread of every committed batch
+    public void addBatchListener(Consumer<String> listener) {
+        batchListeners.add(listener);
+    }
 
-        // Handle overflow if deque size exceeds the range size for this k
-        if (deque.size() > K_SIZES_REAL[dequeKIndex]) {
-            Float oldestValue = deque.removeFirst();
-            BigDecimal bgOldestValue = BigDecimal.valueOf(oldestValue);
+    // Write locks the state of the symbol, a state spilled before the lock was taken is reloaded
+    private SymbolState lockForWrite(String symbol, SymbolState state) throws InsufficientDataException {
+        state.lock.writeLock().lock();
+        while (state.spilled) {
+            state.lock.writeLock().unlock();
+            state = getOrRegisterSymbol(symbol);
+            state.lock.writeLock().lock();
+        }
+        return state;
+    }
 
-            countForKPrices[dequeKIndex]--;
-            sumForKPrices[dequeKIndex] = sumForKPrices[dequeKIndex].subtract(bgOldestValue);
-            squaredSumForKPrices[dequeKIndex] = squaredSumForKPrices[dequeKIndex].subtract(bgOldestValue.pow(2));
+    // Read locks the state of the symbol, a state spilled before the lock was taken is reloaded
+    private SymbolState lockForRead(String symbol, SymbolState state) throws InsufficientDataException {
+        state.lock.readLock().lock();
+        while (state.spilled) {
+            state.lock.readLock().unlock();
+            state = getState(symbol);
+            state.lock.readLock().lock();
+        }
+        return state;
+    }
 
-            pricesMinMaxMap[dequeKIndex].compute(oldestValue.floatValue(), (key, count) -> (count == 1) ? null : count - 1);
+    // Caller must hold the write lock of the state
+    private void account(SymbolState state) {
+        long bytes = state.residentBytes();
+        residentBytes.addAndGet(bytes - state.accountedBytes);
+        state.accountedBytes = bytes;
+    }
 
-            // Accumulate for higher dequeue (roll and recalculate)
-            if (dequeKIndex + 1 < K_SIZES_REAL.length) {
-                accumulateInNextDeque(dequeKIndex + 1, oldestValue, dequeues, sumForKPrices, squaredSumForKPrices, pricesMinMaxMap, countForKPrices);
+    private SymbolState getOrRegisterSymbol(String symbol) throws InsufficientDataException {
+        SymbolState state = symbolStates.get(symbol);
+        if (state == null) {
+            return registerSymbols(Set.of(symbol)).get(symbol);
+        }
+        state.lastAccess = System.nanoTime();
+        return state;
+    }
+
+    // Registers all missing symbols, spilled ones are reloaded. Least recently used symbols outside of the request
+    // are spilled to make room, the request is rejected as a whole when it cannot fit the budget on its own.
+    // While recovering nothing is rejected, symbols are only spilled to fit.
+    private Map<String, SymbolState> registerSymbols(Set<String> symbols) throws InsufficientDataException {
+        symbolRegistrationLock.lock();
+        try {
+            long newSymbols = symbols.stream()
+                    .filter(symbol -> !symbolStates.containsKey(symbol) && !spilledSymbols.containsKey(symbol))
+                    .count();
+            if (newSymbols > 0 && maxSymbols > 0 && symbolStates.size() + spilledSymbols.size() + newSymbols > maxSymbols
+                    && !recovering) {
+                metrics.rejected(RejectionReason.SYMBOL_LIMIT);
+                logger.warn("Batch rejected: Unique symbols size exceeded. Symbols: {}", symbols);
+                throw new InsufficientDataException("Unique symbols size exceeded. Batch rejected");
             }
+
+            Map<String, SymbolState> created = new HashMap<>();
+            long requestBytes = 0;
+            long missingBytes = 0;
+            for (String symbol : symbols) {
+                SymbolState state = symbolStates.get(symbol);
+                if (state != null) {
+                    requestBytes += state.accountedBytes;
+                } else if (spilledSymbols.containsKey(symbol)) {
+                    missingBytes += spilledSymbols.get(symbol).bytes();
+                } else {
+                    state = newSymbolState(symbol);
+                    state.accountedBytes = state.residentBytes();
+                    missingBytes += state.accountedBytes;
+                    created.put(symbol, state);
+                }
+            }
+            if (requestBytes + missingBytes > memoryBudget && !recovering) {
+                metrics.rejected(RejectionReason.MEMORY_BUDGET);
+                logger.warn("Batch rejected: Memory budget of {} bytes exceeded. Symbols: {}", memoryBudget, symbols);
+                throw new InsufficientDataException("Memory budget exceeded. Batch rejected");
+            }
+            if (missingBytes > 0) {
+                spillUntil(memoryBudget - missingBytes, symbols);
+            }
+
+            Map<String, SymbolState> states = new HashMap<>();
+            for (String symbol : symbols) {
+                SymbolState state = symbolStates.get(symbol);
+                if (state == null) {
+                    state = created.containsKey(symbol) ? created.get(symbol) : reloadSymbolState(symbol);
+                    residentBytes.addAndGet(state.accountedBytes);
+                    symbolStates.put(symbol, state);
+                    spilledSymbols.remove(symbol);
+                }
+                state.lastAccess = System.nanoTime();
+                states.put(symbol, state);
+            }
+            return states;
+        } finally {
+            symbolRegistrationLock.unlock();
         }
     }
 
-    public TradingStats calculateStats(String symbol, int kLevel) throws InsufficientDataException{
-        if (!pricesDequeues.containsKey(symbol)) {
-            logger.warn("Stats calculation failed: Symbol '{}' not found", symbol);
-            throw new InsufficientDataException("Symbol not found");
+    // Spills least recently used symbols when over the budget, skipped while another thread registers or spills
+    private void spillIdleSymbols(Set<String> activeSymbols) {
+        if (residentBytes.get() > memoryBudget && symbolRegistrationLock.tryLock()) {
+            try {
+                spillUntil(memoryBudget, activeSymbols);
+            } finally {
+                symbolRegistrationLock.unlock();
+            }
+        }
+    }
+
+    // Caller must hold symbolRegistrationLock
+    private void spillUntil(long targetBytes, Set<String> activeSymbols) {
+        List<Map.Entry<String, SymbolState>> candidates = symbolStates.entrySet().stream()
+                .filter(entry -> !activeSymbols.contains(entry.getKey()))
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                .toList();
+        for (Map.Entry<String, SymbolState> candidate : candidates) {
+            if (residentBytes.get() <= targetBytes) {
+                return;
+            }
+            // the batch which triggered the spill is committed already, a symbol which cannot be spilled stays resident
+            try {
+                spill(candidate.getKey(), candidate.getValue());
+            } catch (IOException | RuntimeException e) {
+                logger.error("Spilling symbol '{}' failed, it stays resident", candidate.getKey(), e);
+            }
         }
+    }
+
+    // Writes the symbol to its spill file and drops it from memory. Caller must hold symbolRegistrationLock.
+    private void spill(String symbol, SymbolState state) throws IOException {
+        state.lock.writeLock().lock();
+        try {
+            try (Checkpoint.Writer writer = Checkpoint.writeFile(spillFile(symbol), 0)) {
+                writer.add(symbol, state.version, state.history);
+                writer.commit();
+            }
+            spilledSymbols.put(symbol, new SpilledSymbol(state.accountedBytes, state.history.size(), state.meters));
+            symbolStates.remove(symbol);
+            residentBytes.addAndGet(-state.accountedBytes);
+            state.spilled = true;
+            state.history.release();
+            logger.info("Spilled symbol '{}' holding {} bytes, idle for {} ms", symbol, state.accountedBytes,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - state.lastAccess));
+        } finally {
+            state.lock.writeLock().unlock();
+        }
+    }
+
+    // Caller must hold symbolRegistrationLock
+    private SymbolState reloadSymbolState(String symbol) {
+        Path file = spillFile(symbol);
+        try {
+            SymbolState state = restoreSymbolState(Checkpoint.readFile(file).getSymbols().get(0));
+            Files.delete(file);
+            logger.info("Reloaded spilled symbol '{}'", symbol);
+            return state;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot reload spilled symbol " + symbol, e);
+        }
+    }
+
+    // Spill files of a previous run, their symbols are recovered from the checkpoint if at all
+    private void deleteSpillFiles() {
+        if (!Files.isDirectory(spillDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory, "*" + SPILL_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot clear spill directory " + spillDirectory, e);
+        }
+    }
+
+    // Symbols are encoded so any symbol maps to a plain file name
+    private Path spillFile(String symbol) {
+        return spillDirectory.resolve(URLEncoder.encode(symbol, StandardCharsets.UTF_8) + SPILL_SUFFIX);
+    }
+
+    private SymbolState newSymbolState(String symbol) {
+        PriceHistory history = newHistory(symbol);
+        return new SymbolState(history, symbolAggregationModes.getOrDefault(symbol, aggregationMode), accumulatorMode,
+                newQuantiles(history), symbolMeters(symbol));
+    }
+
+    // Meters of the symbol. Its prices and bytes are reported under the storage mode while resident and under
+    // "spilled" while spilled, the other tier reports 0.
+    private TradingStatsMetrics.SymbolMeters symbolMeters(String symbol) {
+        String residentTier = storageMode.name().toLowerCase();
+        return metrics.symbolMeters(symbol,
+                metrics.symbolGauge(TradingStatsMetrics.SYMBOL_PRICES, symbol, residentTier, this, service -> service.residentPrices(symbol)),
+                metrics.symbolGauge(TradingStatsMetrics.SYMBOL_BYTES, symbol, residentTier, this, service -> service.residentBytes(symbol)),
+                metrics.symbolGauge(TradingStatsMetrics.SYMBOL_PRICES, symbol, "spilled", this, service -> service.spilled(symbol).prices()),
+                metrics.symbolGauge(TradingStatsMetrics.SYMBOL_BYTES, symbol, "spilled", this, service -> service.spilled(symbol).bytes()));
+    }
+
+    // Prices of the last published snapshot, 0 unless resident
+    private long residentPrices(String symbol) {
+        SymbolState state = symbolStates.get(symbol);
+        StatsSnapshot snapshot = state != null ? state.snapshot : null;
+        return snapshot != null ? snapshot.getItemCount() : 0;
+    }
+
+    private long residentBytes(String symbol) {
+        SymbolState state = symbolStates.get(symbol);
+        return state != null ? state.accountedBytes : 0;
+    }
+
+    private SpilledSymbol spilled(String symbol) {
+        return spilledSymbols.getOrDefault(symbol, SpilledSymbol.NONE);
+    }
+
+    private WindowQuantiles newQuantiles(PriceHistory history) {
+        return quantilesEnabled ? new WindowQuantiles(history, K_SIZES) : null;
+    }
+
+    // Loads the latest checkpoint and replays the write-ahead log after it, symbols are restored in parallel.
+    // Logged batches were accepted before, so they are replayed even if tss.memory.budget or tss.max-symbols
+    // shrank meanwhile, least recently used symbols are spilled to fit.
+    private void recover() {
+        recovering = true;
+        try {
+            long started = System.currentTimeMillis();
+            Checkpoint checkpoint = Checkpoint.load(persistenceDirectory);
+            long walSegment = 0;
+            if (checkpoint != null) {
+                walSegment = checkpoint.getWalSegment();
+                checkpoint.getSymbols().parallelStream().forEach(image -> {
+                    SymbolState state = restoreSymbolState(image);
+                    residentBytes.addAndGet(state.accountedBytes);
+                    symbolStates.put(image.symbol(), state);
+                });
+            }
+            WriteAheadLog.replay(persistenceDirectory, walSegment, new WriteAheadLog.RecordConsumer() {
+                @Override
+                public void batch(String symbol, long version, FloatBuffer prices) {
+                    replayBatch(symbol, version, prices);
+                }
+
+                @Override
+                public void removed(String symbol) {
+                    replayRemoval(symbol);
+                }
+
+                @Override
+                public void imported(String symbol, long version, FloatBuffer prices) {
+                    replayImport(symbol, version, prices);
+                }
+            });
+            spillIdleSymbols(Set.of());
+            logger.info("Recovered {} symbols from {} in {} ms", symbolStates.size(), persistenceDirectory,
+                    System.currentTimeMillis() - started);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover state from " + persistenceDirectory, e);
+        } finally {
+            recovering = false;
+        }
+    }
+
+    private SymbolState restoreSymbolState(Checkpoint.SymbolImage image) {
+        return restoreSymbolState(image.symbol(), image.version(), restoreHistory(image.symbol(), image.prices()));
+    }
+
+    // History of the symbol holding the prices of a checkpoint or a logged import
+    private PriceHistory restoreHistory(String symbol, FloatBuffer mapped) {
+        PriceHistory history = newHistory(symbol);
+        float[] prices = new float[CHECKPOINT_COPY_PRICES];
+        while (mapped.hasRemaining()) {
+            int length = Math.min(prices.length, mapped.remaining());
+            mapped.get(prices, 0, length);
+            history.appendAll(prices, 0, length);
+        }
+        return history;
+    }
+
+    private PriceHistory newHistory(String symbol) {
+        long capacity = K_SIZES[K_SIZES.length - 1];
+        return new PriceHistory(capacity, storageMode.newStore(symbol, capacity, storageDirectory));
+    }
+
+    // State of a symbol whose history and version were restored, aggregates are rebuilt over the history
+    private SymbolState restoreSymbolState(String symbol, long version, PriceHistory history) {
+        SymbolState state = new SymbolState(history, symbolAggregationModes.getOrDefault(symbol, aggregationMode),
+                accumulatorMode, newQuantiles(history), symbolMeters(symbol));
+        state.lock.writeLock().lock();
+        try {
+            state.version = version;
+            state.snapshot = history.isEmpty() ? null : buildSnapshot(symbol, state, state.version);
+            state.accountedBytes = state.residentBytes();
+        } finally {
+            state.lock.writeLock().unlock();
+        }
+        return state;
+    }
+
+    // Symbols held by this service, resident or spilled
+    public List<String> getSymbols() {
+        Set<String> symbols = new TreeSet<>(symbolStates.keySet());
+        symbols.addAll(spilledSymbols.keySet());
+        return List.copyOf(symbols);
+    }
+
+    // Streams the version and retained prices of the symbol in SymbolTransferFormat, e.g. to move it to another
+    // node. Writers of the symbol wait for the export, other symbols keep ingesting.
+    public void exportSymbol(String symbol, OutputStream out) throws InsufficientDataException, IOException {
+        SymbolState state = lockForRead(symbol, getState(symbol));
+        try {
+            SymbolTransferFormat.write(out, state.version, state.history);
+        } finally {
+            state.lock.readLock().unlock();
+        }
+        logger.info("Exported symbol '{}' with {} prices", symbol, state.history.size());
+    }
+
+    // Adds a symbol exported by exportSymbol with its version, so stats and ETags continue where they were.
+    // The symbol must be new here and fit the memory budget like a batch of a new symbol. With persistence its
+    // prices are written to the write-ahead log and forced to disk before it is added.
+    public void importSymbol(String symbol, InputStream in) throws InsufficientDataException, IOException {
+        checkWritable();
+        validateSymbol(symbol);
+        PriceHistory history = newHistory(symbol);
+        long version;
+        try {
+            version = SymbolTransferFormat.read(in, history);
+        } catch (IOException | RuntimeException e) {
+            history.release();
+            throw e;
+        }
+        addSymbol(symbol, restoreSymbolState(symbol, version, history), false);
+    }
+
+    // Replaces the symbol by the next SymbolTransferFormat of the stream, e.g. a symbol of a replication snapshot
+    // or one fetched from the primary again. Used by a REPLICA, its symbols are only replaced by the primary's.
+    public void replaceReplicatedSymbol(String symbol, InputStream in) throws InsufficientDataException, IOException {
+        PriceHistory history = newHistory(symbol);
+        long version;
+        try {
+            version = SymbolTransferFormat.readNext(in, history);
+        } catch (IOException | RuntimeException e) {
+            history.release();
+            throw e;
+        }
+        addSymbol(symbol, restoreSymbolState(symbol, version, history), true);
+    }
+
+    // The history of a rejected state is released. Logged under the registration lock, so a checkpoint either
+    // contains the symbol or its record is replayed after it. Nothing is rejected while recovering.
+    private void addSymbol(String symbol, SymbolState state, boolean replace) throws InsufficientDataException, IOException {
+        long version = state.version;
+        boolean added = false;
+        symbolRegistrationLock.lock();
+        try {
+            boolean exists = symbolStates.containsKey(symbol) || spilledSymbols.containsKey(symbol);
+            if (exists && !replace) {
+                throw new InsufficientDataException("Symbol already exists");
+            }
+            if (!exists && maxSymbols > 0 && symbolStates.size() + spilledSymbols.size() + 1 > maxSymbols && !recovering) {
+                metrics.rejected(RejectionReason.SYMBOL_LIMIT);
+                throw new InsufficientDataException("Unique symbols size exceeded. Symbol rejected");
+            }
+            if (state.accountedBytes > memoryBudget && !recovering) {
+                metrics.rejected(RejectionReason.MEMORY_BUDGET);
+                throw new InsufficientDataException("Memory budget exceeded. Symbol rejected");
+            }
+            if (writeAheadLog != null) {
+                checkLogHealthy();
+                awaitForced(symbol, writeAheadLog.appendImport(symbol, version, state.history));
+            }
+            if (exists) {
+                detachSymbol(symbol);
+            }
+            spillUntil(memoryBudget - state.accountedBytes, Set.of(symbol));
+            residentBytes.addAndGet(state.accountedBytes);
+            symbolStates.put(symbol, state);
+            added = true;
+            // batches of the symbol wait for the registration lock, so replicas fetch it before they get any
+            if (replicationLog != null) {
+                replicationLog.appendReset(symbol);
+            }
+        } finally {
+            symbolRegistrationLock.unlock();
+            if (!added) {
+                state.history.release();
+            }
+        }
+        logger.info("Imported symbol '{}' with {} prices at version {}", symbol, state.history.size(), version);
+        for (Consumer<String> listener : batchListeners) {
+            listener.accept(symbol);
+        }
+    }
+
+    // Drops the symbol and its prices, e.g. once it moved to another node. A batch arriving afterwards starts it
+    // over. With persistence the removal is logged, so replaying the write-ahead log cannot bring the symbol back.
+    public void removeSymbol(String symbol) throws InsufficientDataException, IOException {
+        checkWritable();
+        symbolRegistrationLock.lock();
+        try {
+            if (!symbolStates.containsKey(symbol) && !spilledSymbols.containsKey(symbol)) {
+                throw new InsufficientDataException("Symbol not found");
+            }
+            logRemoval(symbol);
+            metrics.remove(detachSymbol(symbol));
+            if (replicationLog != null) {
+                replicationLog.appendReset(symbol);
+            }
+        } finally {
+            symbolRegistrationLock.unlock();
+        }
+        logger.info("Removed symbol '{}'", symbol);
+    }
+
+    // Drops the symbol on a REPLICA once the primary no longer holds it, unknown symbols are ignored
+    public void removeReplicatedSymbol(String symbol) throws IOException {
+        symbolRegistrationLock.lock();
+        try {
+            if (!symbolStates.containsKey(symbol) && !spilledSymbols.containsKey(symbol)) {
+                return;
+            }
+            logRemoval(symbol);
+            metrics.remove(detachSymbol(symbol));
+        } finally {
+            symbolRegistrationLock.unlock();
+        }
+        logger.info("Removed symbol '{}'", symbol);
+    }
+
+    // Caller holds the registration lock, like for imports a checkpoint either lacks the symbol or is followed by
+    // the removal
+    private void logRemoval(String symbol) throws IOException {
+        if (writeAheadLog != null) {
+            checkLogHealthy();
+            awaitForced(symbol, writeAheadLog.appendRemoval(symbol));
+        }
+    }
+
+    // Caller holds the registration lock. Writers and readers waiting for the symbol's lock look it up again.
+    // Returns the meters of the symbol, which stay registered for a replacing state, null if it is unknown.
+    private TradingStatsMetrics.SymbolMeters detachSymbol(String symbol) throws IOException {
+        SymbolState state = symbolStates.get(symbol);
+        if (state != null) {
+            state.lock.writeLock().lock();
+            try {
+                symbolStates.remove(symbol);
+                residentBytes.addAndGet(-state.accountedBytes);
+                state.spilled = true;
+                state.history.release();
+            } finally {
+                state.lock.writeLock().unlock();
+            }
+            return state.meters;
+        }
+        SpilledSymbol spilled = spilledSymbols.remove(symbol);
+        if (spilled != null) {
+            Files.deleteIfExists(spillFile(symbol));
+            return spilled.meters();
+        }
+        return null;
+    }
+
+    // Commits a batch streamed from the primary at the version it got there. Batches the symbol already holds
+    // are skipped, e.g. the ones a snapshot contained, a missing batch is reported. Used by a REPLICA only.
+    public boolean applyReplicatedBatch(String symbol, long version, float[] prices, int length) throws InsufficientDataException {
+        SymbolState state = getOrRegisterSymbol(symbol);
+        if (version <= state.version) {
+            return false;
+        }
+        if (version != state.version + 1) {
+            throw new InsufficientDataException("Batch " + version + " of symbol '" + symbol + "' does not follow version " + state.version);
+        }
+        commitBatch(symbol, state, length, arrayPrices(prices));
+        return true;
+    }
+
+    // Null unless this service is a replication PRIMARY
+    public ReplicationLog getReplicationLog() {
+        return replicationLog;
+    }
+
+    // Writes a ReplicationFormat snapshot of all symbols for a replica to start from. Each symbol is copied under
+    // its read lock after the sequence was taken, so a batch is either in the copy or streamed after the sequence,
+    // the replica skips batches it got with the copy by their version. Spilled symbols are reloaded to be copied.
+    public void writeReplicationSnapshot(OutputStream out) throws InsufficientDataException, IOException {
+        if (replicationLog == null) {
+            throw new InsufficientDataException("Not a replication primary");
+        }
+        ReplicationFormat.writeSnapshotHeader(out, replicationLog.epoch(), replicationLog.head());
+        int symbols = 0;
+        for (String symbol : getSymbols()) {
+            SymbolState state;
+            try {
+                state = lockForRead(symbol, getState(symbol));
+            } catch (InsufficientDataException e) {
+                // removed meanwhile, replicas get its reset frame
+                continue;
+            }
+            try {
+                ReplicationFormat.writeSnapshotSymbol(out, symbol);
+                SymbolTransferFormat.write(out, state.version, state.history);
+            } finally {
+                state.lock.readLock().unlock();
+            }
+            symbols++;
+        }
+        ReplicationFormat.writeSnapshotEnd(out);
+        logger.info("Replication snapshot of {} symbols written", symbols);
+    }
+
+    // Records after the checkpoint were logged after it was copied, so the removal and the import apply as they are
+    private void replayRemoval(String symbol) {
+        symbolRegistrationLock.lock();
+        try {
+            TradingStatsMetrics.SymbolMeters meters = detachSymbol(symbol);
+            if (meters != null) {
+                metrics.remove(meters);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay removal of symbol " + symbol, e);
+        } finally {
+            symbolRegistrationLock.unlock();
+        }
+    }
+
+    private void replayImport(String symbol, long version, FloatBuffer prices) {
+        try {
+            addSymbol(symbol, restoreSymbolState(symbol, version, restoreHistory(symbol, prices)), true);
+        } catch (InsufficientDataException | IOException e) {
+            throw new IllegalStateException("Cannot replay import of symbol " + symbol, e);
+        }
+    }
+
+    // Applies a logged batch unless the checkpoint already contains it, admission is bypassed while recovering
+    private void replayBatch(String symbol, long version, FloatBuffer prices) {
+        try {
+            SymbolState state = getOrRegisterSymbol(symbol);
+            if (version > state.version) {
+                commitBatch(symbol, state, prices.remaining(), prices::get);
+            }
+        } catch (InsufficientDataException e) {
+            throw new IllegalStateException("Cannot replay batch " + version + " of symbol " + symbol, e);
+        }
+    }
+
+    // Writes a checkpoint of all symbols and drops the write-ahead log it covers. Each symbol is copied under its
+    // read lock, so its writers wait for the copy while other symbols keep ingesting. Spilled symbols are copied
+    // from their spill files, symbols are neither spilled nor reloaded meanwhile.
+    public void checkpoint() throws IOException {
+        if (writeAheadLog == null) {
+            throw new IllegalStateException("Persistence is not enabled");
+        }
+        // a checkpoint would make batches durable whose clients were told they failed
+        checkLogHealthy();
+        checkpointLock.lock();
+        symbolRegistrationLock.lock();
+        try {
+            long started = System.currentTimeMillis();
+            long walSegment = writeAheadLog.roll();
+            try (Checkpoint.Writer writer = Checkpoint.write(persistenceDirectory, walSegment)) {
+                for (Map.Entry<String, SymbolState> entry : symbolStates.entrySet()) {
+                    SymbolState state = entry.getValue();
+                    state.lock.readLock().lock();
+                    try {
+                        writer.add(entry.getKey(), state.version, state.history);
+                    } finally {
+                        state.lock.readLock().unlock();
+                    }
+                }
+                for (String symbol : spilledSymbols.keySet()) {
+                    Checkpoint.SymbolImage image = Checkpoint.readFile(spillFile(symbol)).getSymbols().get(0);
+                    writer.add(symbol, image.version(), image.prices());
+                }
+                writer.commit();
+            }
+            writeAheadLog.deleteSegmentsBefore(walSegment);
+            logger.info("Checkpoint of {} symbols written in {} ms", symbolStates.size() + spilledSymbols.size(),
+                    System.currentTimeMillis() - started);
+        } finally {
+            symbolRegistrationLock.unlock();
+            checkpointLock.unlock();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Checkpoint failed", e);
+        }
+    }
+
+    // Ends replication streams, writes a final checkpoint so the next start has no log to replay and deletes
+    // MAPPED price files. After a failed sync the next start replays the log instead.
+    @PreDestroy
+    public void close() throws IOException {
+        if (replicationLog != null) {
+            replicationLog.close();
+        }
+        if (writeAheadLog != null) {
+            checkpointScheduler.shutdownNow();
+            if (walFailure == null) {
+                checkpoint();
+            }
+            writeAheadLog.close();
+        }
+        symbolRegistrationLock.lock();
+        try {
+            for (SymbolState state : symbolStates.values()) {
+                state.history.release();
+            }
+        } finally {
+            symbolRegistrationLock.unlock();
+        }
+    }
+
+    // Caller must hold the write lock of the state
+    private void evaluateAutoAggregation(String symbol, SymbolState state) {
+        if (state.configuredMode != AggregationMode.AUTO || ++state.batchesSinceEvaluation < autoEvaluationBatches) {
+            return;
+        }
+        double readsPerBatch = (double) state.reads.sumThenReset() / state.batchesSinceEvaluation;
+        state.batchesSinceEvaluation = 0;
+
+        AggregationMode preferredMode = readsPerBatch >= AUTO_EAGER_READS_PER_BATCH ? AggregationMode.EAGER
+                : readsPerBatch <= AUTO_LAZY_READS_PER_BATCH ? AggregationMode.LAZY
+                : AggregationMode.HYBRID;
+        if (preferredMode != state.activeMode) {
+            logger.info("Switching aggregation of symbol '{}' from {} to {} at {} reads per batch",
+                    symbol, state.activeMode, preferredMode, readsPerBatch);
+            state.switchAggregation(preferredMode, accumulatorMode);
+        }
+    }
+
+    public TradingStats calculateStats(String symbol, int kLevel) throws InsufficientDataException{
+        long started = System.nanoTime();
+        SymbolState state = getState(symbol);
 
         int kIndex = kLevel - 1;
         if (kIndex < 0 || kIndex >= K_SIZES.length) {
             logger.warn("Stats calculation failed: Invalid kLevel '{}'", kLevel);
             throw new InsufficientDataException("Invalid kLevel: " + kLevel);
         }
-        
-        Deque<Float>[] dequeues = pricesDequeues.get(symbol);
-        int itemCount = Arrays.stream(dequeues).mapToInt(Deque::size).sum();
 
-        if (itemCount == 0 || itemCount < K_SIZES[kIndex]) {
-            logger.warn("Stats calculation failed: Insufficient data for k={} with symbol '{}'", kLevel, symbol);
-            throw new InsufficientDataException("Insufficient data for k=" + kLevel + "; at least "+K_SIZES[kLevel]+" data needed");
-        }
+        try {
+            state.reads.increment();
+            StatsSnapshot snapshot = state.snapshot;
+            if (snapshot == null || snapshot.getItemCount() < K_SIZES[kIndex]) {
+                logger.warn("Stats calculation failed: Insufficient data for k={} with symbol '{}'", kLevel, symbol);
+                throw new InsufficientDataException("Insufficient data for k=" + kLevel + "; at least "+K_SIZES[kIndex]+" data needed");
+            }
 
-        BigDecimal[] sumOfKPrices = sumForKPrices.get(symbol);
-        BigDecimal[] squaredSumOfKPrices = squaredSumForKPrices.get(symbol);
-        NavigableMap<Float, Integer>[] priceKMaxMinMap = priceMaxMinTreeMaps.get(symbol);
+            TradingStats stats = snapshot.getStats(kLevel);
+            return stats != null ? stats : calculateOnDemand(symbol, state, kLevel).getStats(kLevel);
+        } finally {
+            metrics.statsCalculated(kLevel, System.nanoTime() - started);
+        }
+    }
 
+    // Stats of the newest n prices for any n up to the retained history, not limited to the k levels.
+    // Calculated on every call, eager and hybrid symbols answer from block indexes independent of n.
+    public TradingStats calculateWindowStats(String symbol, long n) throws InsufficientDataException {
+        SymbolState state = getState(symbol);
+        if (n < 1) {
+            logger.warn("Stats calculation failed: Invalid window '{}'", n);
+            throw new InsufficientDataException("Invalid window: " + n);
+        }
 
-        Double min = mergeMin(priceKMaxMinMap);
+        state.reads.increment();
+        state = lockForRead(symbol, state);
+        try {
+            StatsSnapshot snapshot = state.snapshot;
+            if (snapshot == null || snapshot.getItemCount() < n) {
+                logger.warn("Stats calculation failed: Insufficient data for window {} with symbol '{}'", n, symbol);
+                throw new InsufficientDataException("Insufficient data for window of " + n + " prices");
+            }
+            PriceAccumulator windowPrices = accumulatorMode.newAccumulator();
+            state.aggregation.accumulateNewest(n, windowPrices);
+            TradingStats stats = calculateWindowStats(state, n, windowPrices, snapshot.getVersion());
+            logger.debug("Stats calculated for symbol '{}' over {} prices: {}", symbol, n, stats);
+            return stats;
+        } finally {
+            state.lock.readLock().unlock();
+        }
+    }
 
-        Double max = mergedMax(priceKMaxMinMap);
+    // Latest published stats of the symbol, null if no batch was committed yet
+    public StatsSnapshot getSnapshot(String symbol) throws InsufficientDataException {
+        return getState(symbol).snapshot;
+    }
 
-        BigDecimal totalKSum = getSumOfAllAvailable(sumOfKPrices, kIndex);
-        BigDecimal totalKSquaredSum = getSumOfAllAvailable(squaredSumOfKPrices, kIndex);
-        BigDecimal kSizeBD = BigDecimal.valueOf(K_SIZES[kIndex]);
+    // Aggregation currently used for the symbol, AUTO symbols report the concrete mode chosen
+    public AggregationMode getActiveAggregationMode(String symbol) throws InsufficientDataException {
+        return getState(symbol).activeMode;
+    }
 
-        BigDecimal avg = totalKSum.divide(kSizeBD, BIG_D_SCALE, BigDecimal.ROUND_HALF_UP);
-        BigDecimal variance = totalKSquaredSum.subtract(totalKSum.multiply(totalKSum).divide(kSizeBD, BIG_D_SCALE, BigDecimal.ROUND_HALF_UP))
-                .divide(kSizeBD, BIG_D_SCALE, BigDecimal.ROUND_HALF_UP);
+    // State of a known symbol, a spilled symbol is reloaded first
+    private SymbolState getState(String symbol) throws InsufficientDataException {
+        SymbolState state = symbolStates.get(symbol);
+        if (state == null) {
+            if (!spilledSymbols.containsKey(symbol)) {
+                logger.warn("Stats calculation failed: Symbol '{}' not found", symbol);
+                throw new InsufficientDataException("Symbol not found");
+            }
+            return registerSymbols(Set.of(symbol)).get(symbol);
+        }
+        state.lastAccess = System.nanoTime();
+        return state;
+    }
 
-        Double last = fetchMostRecentPrice(dequeues);
+    // Bytes held by all symbols in memory, see tss.memory.budget
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
 
-        TradingStats stats = new TradingStats();
-        stats.setMin(min);
-        stats.setMax(max);
-        stats.setAvg(avg.doubleValue());
-        stats.setVariance(variance.doubleValue());
-        stats.setLast(last);
+    // Stats of every k level available for each symbol. Symbols are calculated in parallel, a symbol that is
+    // unknown or has no data yet reports an error without failing the others.
+    public Map<String, SymbolStats> calculateAllStats(List<String> symbols) throws InsufficientDataException {
+        if (symbols == null || symbols.isEmpty()) {
+            throw new InsufficientDataException("At least one symbol is required");
+        }
+        List<String> distinctSymbols = symbols.stream().distinct().toList();
 
-        logger.info("Stats calculated for symbol '{}' at kLevel {}: Min={}, Max={}, Avg={}, Variance={}, Last={}",
-                symbol, kLevel, min, max, avg, variance, last);
+        Map<String, SymbolStats> results = new ConcurrentHashMap<>();
+        distinctSymbols.parallelStream().forEach(symbol -> results.put(symbol, calculateAllLevels(symbol)));
 
-        return stats;
+        Map<String, SymbolStats> orderedResults = new LinkedHashMap<>();
+        distinctSymbols.forEach(symbol -> orderedResults.put(symbol, results.get(symbol)));
+        return orderedResults;
     }
 
-    private static Double fetchMostRecentPrice(Deque<Float>[] dequeues) {
-        return format(dequeues[0].peekLast());
-    }
+    private SymbolStats calculateAllLevels(String symbol) {
+        SymbolStats result = new SymbolStats();
+        SymbolState state;
+        try {
+            state = getState(symbol);
+        } catch (InsufficientDataException e) {
+            result.setError(e.getMessage());
+            return result;
+        }
 
-    private static double mergeMin(NavigableMap<Float, Integer>[] treeMaps) {
-        return Arrays.stream(treeMaps)
-                .filter(map -> !map.isEmpty())
-                .mapToDouble(p -> format(p.firstKey()))
-                .min()
-                .orElse(Double.MAX_VALUE);
-    }
+        state.reads.increment();
+        StatsSnapshot snapshot = state.snapshot;
+        if (snapshot == null || snapshot.getItemCount() < K_SIZES[0]) {
+            logger.warn("Stats calculation failed: Insufficient data for symbol '{}'", symbol);
+            result.setError("Insufficient data; at least " + K_SIZES[0] + " data needed");
+            return result;
+        }
 
-    private static double mergedMax(NavigableMap<Float, Integer>[] treeMaps) {
-        return Arrays.stream(treeMaps)
-                .filter(map -> !map.isEmpty())
-                .mapToDouble(p -> format(p.lastKey()))
-                .max()
-                .orElse(Double.MIN_VALUE);
+        int availableLevels = availableKLevels(snapshot.getItemCount());
+        if (snapshot.getStats(availableLevels) == null) {
+            try {
+                snapshot = calculateOnDemand(symbol, state, availableLevels);
+            } catch (InsufficientDataException e) {
+                result.setError(e.getMessage());
+                return result;
+            }
+        }
+        Map<Integer, TradingStats> stats = new LinkedHashMap<>();
+        for (int kLevel = 1; kLevel <= availableLevels; kLevel++) {
+            stats.put(kLevel, snapshot.getStats(kLevel));
+        }
+        result.setVersion(snapshot.getVersion());
+        result.setStats(stats);
+        return result;
     }
 
-    private static Double format(Float f){
-        return Double.parseDouble(String.valueOf(f));
+    // Number of k levels with enough prices, levels 1..n are available
+    public static int availableKLevels(long itemCount) {
+        int kLevels = 0;
+        while (kLevels < K_SIZES.length && K_SIZES[kLevels] <= itemCount) {
+            kLevels++;
+        }
+        return kLevels;
     }
 
-    private void initializeCollections(String symbol) {
-        // Initialize data structures if symbol is seen for the first time
-        pricesDequeues.computeIfAbsent(symbol, k -> initializeDataStructures(symbol));
-        sumForKPrices.computeIfAbsent(symbol, k -> initializeSumArrays());
-        squaredSumForKPrices.computeIfAbsent(symbol, k -> initializeSumArrays());
-        countForKPrices.computeIfAbsent(symbol, k -> initializeCountArrays());
-        priceMaxMinTreeMaps.computeIfAbsent(symbol, k -> initializeTreeMapArrays());
+    // Fills in levels up to kLevel of a non eager snapshot and returns it, concurrent readers may compute
+    // the same level twice
+    private StatsSnapshot calculateOnDemand(String symbol, SymbolState state, int kLevel) throws InsufficientDataException {
+        state = lockForRead(symbol, state);
+        try {
+            // under the read lock the current snapshot matches the aggregates
+            StatsSnapshot snapshot = state.snapshot;
+            fillSnapshot(symbol, state, snapshot, kLevel);
+            return snapshot;
+        } finally {
+            state.lock.readLock().unlock();
+        }
     }
 
-    private BigDecimal[] initializeSumArrays() {
-        return Arrays.stream(K_SIZES).mapToObj(i -> BigDecimal.ZERO).toArray(BigDecimal[]::new);
+    // Caller must hold the write lock of the state
+    private StatsSnapshot buildSnapshot(String symbol, SymbolState state, long version) {
+        StatsSnapshot snapshot = new StatsSnapshot(version, state.history.size(), K_SIZES.length);
+        if (state.aggregation.isEager()) {
+            fillSnapshot(symbol, state, snapshot, availableKLevels(snapshot.getItemCount()));
+        }
+        return snapshot;
     }
 
-    private Integer[] initializeCountArrays() {
-        return Arrays.stream(K_SIZES).mapToObj(i -> 0).toArray(Integer[]::new);
+    // Calculates the missing levels up to kLevel. Windows of the k levels are nested, so the sums of a level
+    // are extended to the next one and prices shared by the windows are accumulated only once.
+    // Caller must hold a lock of the state.
+    private void fillSnapshot(String symbol, SymbolState state, StatsSnapshot snapshot, int kLevel) {
+        PriceAccumulator kPrices = accumulatorMode.newAccumulator();
+        long previousKSize = 0;
+        for (int kIndex = 0; kIndex < kLevel; kIndex++) {
+            state.aggregation.accumulateBetween(previousKSize, K_SIZES[kIndex], kPrices);
+            previousKSize = K_SIZES[kIndex];
+            if (snapshot.getStats(kIndex + 1) == null) {
+                TradingStats stats = calculateWindowStats(state, K_SIZES[kIndex], kPrices, snapshot.getVersion());
+                snapshot.setStats(kIndex + 1, stats);
+                logger.debug("Stats calculated for symbol '{}' at kLevel {}: {}", symbol, kIndex + 1, stats);
+            }
+        }
     }
 
-    private TreeMap<Float, Integer>[] initializeTreeMapArrays() {
-        return Arrays.stream(K_SIZES).mapToObj(i -> new TreeMap<Float, Integer>()).toArray(TreeMap[]::new);
+    // Stats of the newest n prices, kPrices holds their sums
+    private TradingStats calculateWindowStats(SymbolState state, long n, PriceAccumulator kPrices, long version) {
+        AggregationStrategy aggregation = state.aggregation;
+
+        float minPrice = aggregation.minOfNewest(n);
+        float maxPrice = aggregation.maxOfNewest(n);
+        Double min = format(minPrice);
+        Double max = format(maxPrice);
+
+        BigDecimal totalKSum = kPrices.sum();
+        BigDecimal totalKSquaredSum = kPrices.squaredSum();
+        BigDecimal kSizeBD = BigDecimal.valueOf(n);
+
+        BigDecimal avg = totalKSum.divide(kSizeBD, BIG_D_SCALE, BigDecimal.ROUND_HALF_UP);
+        BigDecimal variance = totalKSquaredSum.subtract(totalKSum.multiply(totalKSum).divide(kSizeBD, BIG_D_SCALE, BigDecimal.ROUND_HALF_UP))
+                .divide(kSizeBD, BIG_D_SCALE, BigDecimal.ROUND_HALF_UP);
+
+        Double last = format(state.history.last());
+
+        TradingStats stats = new TradingStats();
+        stats.setMin(min);
+        stats.setMax(max);
+        stats.setAvg(avg.doubleValue());
+        stats.setVariance(variance.doubleValue());
+        stats.setLast(last);
+        stats.setVersion(version);
+        float[] quantiles = state.quantiles != null ? state.quantiles.quantiles(n, minPrice, maxPrice) : null;
+        if (quantiles != null) {
+            stats.setP50(format(quantiles[0]));
+            stats.setP95(format(quantiles[1]));
+            stats.setP99(format(quantiles[2]));
+        }
+        return stats;
     }
 
-    private Deque<Float>[] initializeDataStructures(String symbol) {
-        return Arrays.stream(K_SIZES).mapToObj(i -> new LinkedList<Float>()).toArray(Deque[]::new);
+    // Bytes a spilled symbol held and will hold again once reloaded, its retained prices and meters
+    private record SpilledSymbol(long bytes, long prices, TradingStatsMetrics.SymbolMeters meters) {
+        static final SpilledSymbol NONE = new SpilledSymbol(0, 0, null);
     }
 
-    private BigDecimal getSumOfAllAvailable(BigDecimal[] arrayToSum, int kIndex) {
-        return Arrays.stream(arrayToSum, 0, kIndex + 1)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    private static Double format(Float f){
+        return Double.parseDouble(String.valueOf(f));
     }
 }
@@ -0,0 +1,133 @@
+package com.abc.tradingstatisticsservice.storage;
+
+// Prices on the heap in blocks of BLOCK_SIZE slots, a block is encoded with PriceCodec as soon as its last slot
+// is written and stays encoded until the ring wraps around to it again. Only the block being written is kept as
+// raw floats, so retained prices cost what they compress to (~0.5-1.5 bytes for tick sized price moves) instead of 4.
+// Reads of sealed blocks decode the whole block sequentially; the last decoded block is cached for scans.
+public class CompressedPriceStore implements PriceStore {
+    static final int BLOCK_BITS = 10;
+    static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final long capacity;
+    private final long[][] sealed;
+    private final float[][] open;
+    // raw array of the last sealed block, reused for the next one opened
+    private float[] spare;
+    private long encodedBytes;
+    private int openBlocks;
+    // readers run in parallel under a symbol's read lock, so the cache is an immutable snapshot
+    private volatile DecodedBlock decoded;
+
+    public CompressedPriceStore(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        int blocks = (int) ((capacity + BLOCK_SIZE - 1) >>> BLOCK_BITS);
+        this.sealed = new long[blocks][];
+        this.open = new float[blocks][];
+    }
+
+    @Override
+    public float get(long slot) {
+        int block = (int) (slot >>> BLOCK_BITS);
+        float[] raw = open[block];
+        if (raw != null) {
+            return raw[(int) (slot & BLOCK_MASK)];
+        }
+        return sealed[block] == null ? 0 : decoded(block)[(int) (slot & BLOCK_MASK)];
+    }
+
+    @Override
+    public void set(long slot, float value) {
+        int block = (int) (slot >>> BLOCK_BITS);
+        int offset = (int) (slot & BLOCK_MASK);
+        opened(block)[offset] = value;
+        sealIfFull(block, offset + 1);
+    }
+
+    @Override
+    public void setAll(long slot, float[] values, int from, int length) {
+        while (length > 0) {
+            int block = (int) (slot >>> BLOCK_BITS);
+            int offset = (int) (slot & BLOCK_MASK);
+            int run = Math.min(length, BLOCK_SIZE - offset);
+            System.arraycopy(values, from, opened(block), offset, run);
+            sealIfFull(block, offset + run);
+            slot += run;
+            from += run;
+            length -= run;
+        }
+    }
+
+    @Override
+    public void getAll(long slot, float[] values, int from, int length) {
+        while (length > 0) {
+            int block = (int) (slot >>> BLOCK_BITS);
+            int offset = (int) (slot & BLOCK_MASK);
+            int run = Math.min(length, BLOCK_SIZE - offset);
+            float[] raw = open[block];
+            if (raw != null) {
+                System.arraycopy(raw, offset, values, from, run);
+            } else if (offset == 0) {
+                PriceCodec.decode(sealed[block], values, from, run);
+            } else {
+                System.arraycopy(decoded(block), offset, values, from, run);
+            }
+            slot += run;
+            from += run;
+            length -= run;
+        }
+    }
+
+    @Override
+    public long residentBytes() {
+        return 2L * sealed.length * Long.BYTES + encodedBytes + (long) (openBlocks + 1) * BLOCK_SIZE * Float.BYTES;
+    }
+
+    // Raw block for writing, a sealed block is decoded first as its prices are evicted one by one
+    private float[] opened(int block) {
+        float[] raw = open[block];
+        if (raw == null) {
+            raw = spare != null ? spare : new float[BLOCK_SIZE];
+            spare = null;
+            if (sealed[block] != null) {
+                PriceCodec.decode(sealed[block], raw, 0, blockLength(block));
+                encodedBytes -= (long) sealed[block].length * Long.BYTES;
+                sealed[block] = null;
+            }
+            open[block] = raw;
+            openBlocks++;
+        }
+        return raw;
+    }
+
+    private void sealIfFull(int block, int end) {
+        if (end == blockLength(block)) {
+            sealed[block] = PriceCodec.encode(open[block], 0, end);
+            encodedBytes += (long) sealed[block].length * Long.BYTES;
+            spare = open[block];
+            open[block] = null;
+            openBlocks--;
+        }
+    }
+
+    private int blockLength(int block) {
+        return (int) Math.min(BLOCK_SIZE, capacity - ((long) block << BLOCK_BITS));
+    }
+
+    private float[] decoded(int block) {
+        long[] words = sealed[block];
+        DecodedBlock cached = decoded;
+        if (cached == null || cached.words != words) {
+            float[] values = new float[BLOCK_SIZE];
+            PriceCodec.decode(words, values, 0, blockLength(block));
+            decoded = cached = new DecodedBlock(words, values);
+        }
+        return cached.values;
+    }
+
+    private record DecodedBlock(long[] words, float[] values) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.abc.tradingstatisticsservice.storage;
+
+// Prices on the heap in fixed size chunks allocated lazily while the buffer fills up,
+// afterwards the same chunks are reused, so footprint stays at ~4 bytes per retained price.
+public class HeapPriceStore implements PriceStore {
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final float[][] chunks;
+    private int allocatedChunks;
+
+    public HeapPriceStore(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.chunks = new float[(int) ((capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS)][];
+    }
+
+    @Override
+    public float get(long slot) {
+        return chunks[(int) (slot >>> CHUNK_BITS)][(int) (slot & CHUNK_MASK)];
+    }
+
+    @Override
+    public void set(long slot, float value) {
+        chunk(slot)[(int) (slot & CHUNK_MASK)] = value;
+    }
+
+    @Override
+    public void setAll(long slot, float[] values, int from, int length) {
+        while (length > 0) {
+            int offset = (int) (slot & CHUNK_MASK);
+            int run = Math.min(length, CHUNK_SIZE - offset);
+            System.arraycopy(values, from, chunk(slot), offset, run);
+            slot += run;
+            from += run;
+            length -= run;
+        }
+    }
+
+    @Override
+    public void getAll(long slot, float[] values, int from, int length) {
+        while (length > 0) {
+            int offset = (int) (slot & CHUNK_MASK);
+            int run = Math.min(length, CHUNK_SIZE - offset);
+            System.arraycopy(chunks[(int) (slot >>> CHUNK_BITS)], offset, values, from, run);
+            slot += run;
+            from += run;
+            length -= run;
+        }
+    }
+
+    @Override
+    public long residentBytes() {
+        return (long) chunks.length * Long.BYTES + (long) allocatedChunks * CHUNK_SIZE * Float.BYTES;
+    }
+
+    private float[] chunk(long slot) {
+        int chunkIndex = (int) (slot >>> CHUNK_BITS);
+        float[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            chunk = chunks[chunkIndex] = new float[CHUNK_SIZE];
+            allocatedChunks++;
+        }
+        return chunk;
+    }
+}
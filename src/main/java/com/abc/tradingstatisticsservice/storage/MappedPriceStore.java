@@ -0,0 +1,114 @@
+package com.abc.tradingstatisticsservice.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Prices in a memory mapped file, outside of the heap and invisible to GC. The file is created sparse, pages are
+// faulted in by the OS while the ring fills up and may be evicted to the file under memory pressure.
+// Every store has a file of its own, so a new store of a symbol never touches the file of the one still in use.
+// The directory must not be shared with another running service.
+public class MappedPriceStore implements PriceStore {
+    static final String SUFFIX = ".prices";
+
+    private final Path file;
+    private final FloatBuffer prices;
+    // Slots below are written at least once, so their pages are backed by memory or the file
+    private long touchedSlots;
+
+    // Maps a new file in the directory, named by the prefix and a unique suffix
+    public static MappedPriceStore create(Path directory, String prefix, long capacity) {
+        try {
+            Files.createDirectories(directory);
+            return new MappedPriceStore(Files.createTempFile(directory, prefix, SUFFIX), capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create price store in " + directory, e);
+        }
+    }
+
+    // Deletes store files left in the directory, e.g. by a service which was killed
+    public static void deleteStoreFiles(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete price stores in " + directory, e);
+        }
+    }
+
+    public MappedPriceStore(Path file, long capacity) {
+        if (capacity > Integer.MAX_VALUE / Float.BYTES) {
+            throw new IllegalArgumentException("Mapped capacity exceeds a single mapping: " + capacity);
+        }
+        this.file = file;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // the mapping stays valid after the channel is closed and is released with the buffer
+                this.prices = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity * Float.BYTES)
+                        .order(ByteOrder.nativeOrder())
+                        .asFloatBuffer();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map price store " + file, e);
+        }
+    }
+
+    @Override
+    public float get(long slot) {
+        return prices.get((int) slot);
+    }
+
+    @Override
+    public void set(long slot, float value) {
+        prices.put((int) slot, value);
+        touchedSlots = Math.max(touchedSlots, slot + 1);
+    }
+
+    @Override
+    public void setAll(long slot, float[] values, int from, int length) {
+        prices.put((int) slot, values, from, length);
+        touchedSlots = Math.max(touchedSlots, slot + length);
+    }
+
+    @Override
+    public void getAll(long slot, float[] values, int from, int length) {
+        prices.get((int) slot, values, from, length);
+    }
+
+    @Override
+    public long residentBytes() {
+        return touchedSlots * Float.BYTES;
+    }
+
+    @Override
+    public boolean isOnHeap() {
+        return false;
+    }
+
+    // Deletes the file, its pages are freed once the mapping is released with the buffer. Unmapping it right away
+    // could crash the JVM if a reader still held the buffer.
+    @Override
+    public void release() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete price store " + file, e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
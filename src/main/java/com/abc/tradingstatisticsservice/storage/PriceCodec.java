@@ -0,0 +1,208 @@
+package com.abc.tradingstatisticsservice.storage;
+
+import java.util.Arrays;
+
+// Lossless bit packed encoding of a run of prices, used for sealed blocks of a CompressedPriceStore.
+// Prices that are exact decimals (up to MAX_DECIMALS digits) are stored as zigzag deltas of their
+// scaled integers in 1, 9, 15, 24 or 37 bits, any other run falls back to Gorilla style XOR of
+// consecutive float bits. Decoding is strictly sequential from the start of the run.
+public final class PriceCodec {
+    static final int MAX_DECIMALS = 6;
+    private static final int XOR_MODE = 7;
+    private static final double[] POW10 = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    private PriceCodec() {
+    }
+
+    public static long[] encode(float[] values, int from, int length) {
+        BitWriter out = new BitWriter(length);
+        int decimals = decimals(values, from, length);
+        if (decimals < 0) {
+            out.write(XOR_MODE, 3);
+            encodeXor(values, from, length, out);
+        } else {
+            out.write(decimals, 3);
+            encodeDelta(values, from, length, POW10[decimals], out);
+        }
+        return out.toWords();
+    }
+
+    // Decodes the first length prices of an encoded run into values[from, from + length)
+    public static void decode(long[] words, float[] values, int from, int length) {
+        BitReader in = new BitReader(words);
+        int mode = (int) in.read(3);
+        if (mode == XOR_MODE) {
+            decodeXor(in, values, from, length);
+        } else {
+            decodeDelta(in, values, from, length, POW10[mode]);
+        }
+    }
+
+    // Fewest decimals every price of the run round trips with bit for bit, -1 when there are none
+    private static int decimals(float[] values, int from, int length) {
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            double scale = POW10[decimals];
+            int i = from;
+            while (i < from + length && isExact(values[i], scale)) {
+                i++;
+            }
+            if (i == from + length) {
+                return decimals;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isExact(float value, double scale) {
+        long scaled = Math.round(value * scale);
+        return scaled >= Integer.MIN_VALUE && scaled <= Integer.MAX_VALUE
+                && Float.floatToRawIntBits((float) (scaled / scale)) == Float.floatToRawIntBits(value);
+    }
+
+    private static void encodeDelta(float[] values, int from, int length, double scale, BitWriter out) {
+        long previous = Math.round(values[from] * scale);
+        out.write(previous, 32);
+        for (int i = from + 1; i < from + length; i++) {
+            long scaled = Math.round(values[i] * scale);
+            long delta = scaled - previous;
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            if (zigzag == 0) {
+                out.write(0b0, 1);
+            } else if (zigzag < 1 << 7) {
+                out.write(0b10L << 7 | zigzag, 9);
+            } else if (zigzag < 1 << 12) {
+                out.write(0b110L << 12 | zigzag, 15);
+            } else if (zigzag < 1 << 20) {
+                out.write(0b1110L << 20 | zigzag, 24);
+            } else {
+                out.write(0b1111, 4);
+                out.write(zigzag, 33);
+            }
+            previous = scaled;
+        }
+    }
+
+    private static void decodeDelta(BitReader in, float[] values, int from, int length, double scale) {
+        long scaled = (int) in.read(32);
+        values[from] = (float) (scaled / scale);
+        for (int i = from + 1; i < from + length; i++) {
+            if (in.read(1) != 0) {
+                long zigzag;
+                if (in.read(1) == 0) {
+                    zigzag = in.read(7);
+                } else if (in.read(1) == 0) {
+                    zigzag = in.read(12);
+                } else if (in.read(1) == 0) {
+                    zigzag = in.read(20);
+                } else {
+                    zigzag = in.read(33);
+                }
+                scaled += (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+            values[i] = (float) (scaled / scale);
+        }
+    }
+
+    private static void encodeXor(float[] values, int from, int length, BitWriter out) {
+        int previous = Float.floatToRawIntBits(values[from]);
+        out.write(previous, 32);
+        int leading = Integer.MAX_VALUE;
+        int trailing = 0;
+        for (int i = from + 1; i < from + length; i++) {
+            int bits = Float.floatToRawIntBits(values[i]);
+            int xor = bits ^ previous;
+            if (xor == 0) {
+                out.write(0b0, 1);
+            } else {
+                int xorLeading = Integer.numberOfLeadingZeros(xor);
+                int xorTrailing = Integer.numberOfTrailingZeros(xor);
+                if (xorLeading >= leading && xorTrailing >= trailing) {
+                    // fits in the previous meaningful window
+                    out.write(0b10, 2);
+                    out.write(xor >>> trailing, 32 - leading - trailing);
+                } else {
+                    leading = xorLeading;
+                    trailing = xorTrailing;
+                    int meaningful = 32 - leading - trailing;
+                    out.write(0b11, 2);
+                    out.write(leading, 5);
+                    out.write(meaningful - 1, 5);
+                    out.write(xor >>> trailing, meaningful);
+                }
+            }
+            previous = bits;
+        }
+    }
+
+    private static void decodeXor(BitReader in, float[] values, int from, int length) {
+        int previous = (int) in.read(32);
+        values[from] = Float.intBitsToFloat(previous);
+        int leading = 0;
+        int trailing = 0;
+        for (int i = from + 1; i < from + length; i++) {
+            if (in.read(1) != 0) {
+                if (in.read(1) != 0) {
+                    leading = (int) in.read(5);
+                    trailing = 32 - leading - ((int) in.read(5) + 1);
+                }
+                previous ^= (int) in.read(32 - leading - trailing) << trailing;
+            }
+            values[i] = Float.intBitsToFloat(previous);
+        }
+    }
+
+    // Appends bit fields most significant bit first
+    private static final class BitWriter {
+        private long[] words;
+        private long position;
+
+        BitWriter(int values) {
+            this.words = new long[Math.max(2, values / 8)];
+        }
+
+        // Writes the low bits (1..64) of value
+        void write(long value, int bits) {
+            if (bits < 64) {
+                value &= (1L << bits) - 1;
+            }
+            int word = (int) (position >>> 6);
+            int free = 64 - (int) (position & 63);
+            if (word + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (bits <= free) {
+                words[word] |= value << (free - bits);
+            } else {
+                words[word] |= value >>> (bits - free);
+                words[word + 1] |= value << (64 - (bits - free));
+            }
+            position += bits;
+        }
+
+        long[] toWords() {
+            return Arrays.copyOf(words, (int) ((position + 63) >>> 6));
+        }
+    }
+
+    private static final class BitReader {
+        private final long[] words;
+        private long position;
+
+        BitReader(long[] words) {
+            this.words = words;
+        }
+
+        // Reads the next bits (1..64) as an unsigned value
+        long read(int bits) {
+            int word = (int) (position >>> 6);
+            int offset = (int) (position & 63);
+            int available = 64 - offset;
+            position += bits;
+            if (bits <= available) {
+                return (words[word] << offset) >>> (64 - bits);
+            }
+            int rest = bits - available;
+            return ((words[word] << offset) >>> offset << rest) | (words[word + 1] >>> (64 - rest));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.abc.tradingstatisticsservice.storage;
+
+// Circular buffer holding the newest prices of a single symbol as primitive floats.
+// Slots live in a PriceStore, on the heap by default or off heap (see StorageMode).
+// Prices are addressed by their absolute sequence number (0 = first price ever appended).
+public class PriceHistory {
+    private final long capacity;
+    private final PriceStore store;
+
+    private long written;
+    private long writeSlot;
+
+    public PriceHistory(long capacity) {
+        this(capacity, new HeapPriceStore(capacity));
+    }
+
+    public PriceHistory(long capacity, PriceStore store) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.store = store;
+    }
+
+    public void append(float value) {
+        store.set(writeSlot, value);
+
+        written++;
+        if (++writeSlot == capacity) {
+            writeSlot = 0;
+        }
+    }
+
+    // Appends values[from, to) in order, copying whole runs into the store
+    public void appendAll(float[] values, int from, int to) {
+        while (from < to) {
+            int length = (int) Math.min(to - from, capacity - writeSlot);
+            store.setAll(writeSlot, values, from, length);
+
+            from += length;
+            written += length;
+            writeSlot += length;
+            if (writeSlot == capacity) {
+                writeSlot = 0;
+            }
+        }
+    }
+
+    // Copies prices from the given sequence on to values[from, from + length), all of them must be retained
+    public void copyTo(long sequence, float[] values, int from, int length) {
+        while (length > 0) {
+            long slot = sequence % capacity;
+            int run = (int) Math.min(length, capacity - slot);
+            store.getAll(slot, values, from, run);
+            sequence += run;
+            from += run;
+            length -= run;
+        }
+    }
+
+    // Price with given absolute sequence, must be still retained (oldestSequence() <= sequence < written())
+    public float get(long sequence) {
+        return store.get(sequence % capacity);
+    }
+
+    public float last() {
+        return get(written - 1);
+    }
+
+    public long size() {
+        return Math.min(written, capacity);
+    }
+
+    public boolean isEmpty() {
+        return written == 0;
+    }
+
+    // Total number of prices appended since creation, also the sequence of the next price
+    public long written() {
+        return written;
+    }
+
+    public long oldestSequence() {
+        return written - size();
+    }
+
+    // Bytes held by the store, see PriceStore.residentBytes
+    public long residentBytes() {
+        return store.residentBytes();
+    }
+
+    // See PriceStore.isOnHeap
+    public boolean isOnHeap() {
+        return store.isOnHeap();
+    }
+
+    // The history is dropped, see PriceStore.release
+    public void release() {
+        store.release();
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,27 @@
+package com.abc.tradingstatisticsservice.storage;
+
+// Fixed size array of prices backing a PriceHistory, addressed by ring slot (0 <= slot < capacity)
+public interface PriceStore {
+
+    float get(long slot);
+
+    void set(long slot, float value);
+
+    // Copies values[from, from + length) to slots starting at slot, the run never wraps around the ring
+    void setAll(long slot, float[] values, int from, int length);
+
+    // Copies slots starting at slot to values[from, from + length), the run never wraps around the ring
+    void getAll(long slot, float[] values, int from, int length);
+
+    // Bytes of memory held for the slots written so far
+    long residentBytes();
+
+    // Whether residentBytes are held on the heap, only those count against the memory budget
+    default boolean isOnHeap() {
+        return true;
+    }
+
+    // Frees resources held outside of the heap once the store is no longer used, e.g. files
+    default void release() {
+    }
+}
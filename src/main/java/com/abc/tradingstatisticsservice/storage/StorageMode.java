@@ -0,0 +1,31 @@
+package com.abc.tradingstatisticsservice.storage;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+public enum StorageMode {
+    // float chunks on the heap
+    HEAP,
+    // blocks encoded with PriceCodec on the heap once sealed, for slowly moving prices
+    COMPRESSED,
+    // one memory mapped file per symbol under the storage directory, only aggregates stay on the heap
+    MAPPED;
+
+    // Longest symbol prefix of a MAPPED file name, encoded symbols of up to 255 bytes could exceed a file name
+    private static final int MAX_FILE_PREFIX = 100;
+
+    public PriceStore newStore(String symbol, long capacity, Path directory) {
+        return switch (this) {
+            case HEAP -> new HeapPriceStore(capacity);
+            case COMPRESSED -> new CompressedPriceStore(capacity);
+            case MAPPED -> MappedPriceStore.create(directory, filePrefix(symbol), capacity);
+        };
+    }
+
+    // Symbols are encoded so any symbol maps to a plain file name
+    private static String filePrefix(String symbol) {
+        String encoded = URLEncoder.encode(symbol, StandardCharsets.UTF_8);
+        return (encoded.length() > MAX_FILE_PREFIX ? encoded.substring(0, MAX_FILE_PREFIX) : encoded) + "-";
+    }
+}
@@ -0,0 +1,287 @@
+package com.abc.tradingstatisticsservice.subscription;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.StatsUpdate;
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.StatsSnapshot;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Pushes stats of subscribed (symbol, k) pairs as Server-Sent Events instead of clients polling /stats/.
+// A committed batch only marks the topics of its symbol as changed. A single dispatcher thread wakes up every
+// interval, reads the stats of each changed topic once from the published snapshot and hands every subscriber
+// the updates of its topics. Each subscriber sends its pending updates as one "stats" event on its own virtual
+// thread, so a slow client only delays itself. Updates are coalesced per topic while a send is in flight, keeping
+// at most one pending update per subscribed key, and batches committed in between are coalesced into the newest
+// stats, so a subscriber receives at most one event per interval whatever the ingest rate.
+@Component
+public class StatsSubscriptions {
+    private static final Logger logger = LoggerFactory.getLogger(StatsSubscriptions.class);
+    private static final String EVENT_NAME = "stats";
+
+    private final TradingStatsService tradingStatsService;
+    private final long timeoutMs;
+    private final int maxKeys;
+
+    // Topics by symbol and kLevel, a topic exists while it has subscribers
+    private final Map<String, Map<Integer, Topic>> topics = new ConcurrentHashMap<>();
+    // Topics changed since the last dispatch, each queued once
+    private final Queue<Topic> changedTopics = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService dispatcher;
+    // One virtual thread per subscriber with updates to send, it exits once nothing is pending
+    private final ExecutorService senders;
+
+    public StatsSubscriptions(TradingStatsService tradingStatsService, TradingStatsProperties properties) {
+        this.tradingStatsService = tradingStatsService;
+        this.timeoutMs = properties.getSubscriptions().getTimeoutMs();
+        this.maxKeys = properties.getSubscriptions().getMaxKeys();
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("tss-subscriptions").factory());
+        this.senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tss-subscriber-", 0).factory());
+        long interval = properties.getSubscriptions().getIntervalMs();
+        dispatcher.scheduleWithFixedDelay(this::dispatchQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        tradingStatsService.addBatchListener(this::batchCommitted);
+    }
+
+    // Subscribes to keys like "AAPL:2", the current stats of available keys are sent with the first dispatch.
+    // Symbols without batches yet may be subscribed to, their stats are sent once enough prices arrived.
+    public SseEmitter subscribe(List<String> keys) throws InsufficientDataException {
+        if (keys == null || keys.isEmpty() || keys.size() > maxKeys) {
+            throw new InsufficientDataException("Between 1 and " + maxKeys + " symbol:k keys are required");
+        }
+        Set<TopicKey> topicKeys = new LinkedHashSet<>();
+        for (String key : keys) {
+            topicKeys.add(parseKey(key));
+        }
+
+        SseEmitter emitter = createEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, List.copyOf(topicKeys));
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        for (TopicKey key : subscriber.keys) {
+            Topic[] subscribed = new Topic[1];
+            topics.compute(key.symbol(), (symbol, symbolTopics) -> {
+                Map<Integer, Topic> byKLevel = symbolTopics != null ? symbolTopics : new ConcurrentHashMap<>();
+                subscribed[0] = byKLevel.computeIfAbsent(key.kLevel(), kLevel -> new Topic(symbol, kLevel));
+                subscribed[0].subscribers.add(subscriber);
+                return byKLevel;
+            });
+            // subscribers already up to date skip it, the new one gets the current stats
+            markChanged(subscribed[0]);
+        }
+        logger.info("Stats subscription opened for {} keys", subscriber.keys.size());
+        return emitter;
+    }
+
+    // Overridden by tests to stand in for slow clients
+    protected SseEmitter createEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private static TopicKey parseKey(String key) throws InsufficientDataException {
+        int separator = key.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new InsufficientDataException("Invalid key '" + key + "', symbol:k expected");
+        }
+        int kLevel;
+        try {
+            kLevel = Integer.parseInt(key.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new InsufficientDataException("Invalid key '" + key + "', symbol:k expected");
+        }
+        if (kLevel < 1 || kLevel > TradingStatsService.K_LEVELS) {
+            throw new InsufficientDataException("Invalid kLevel: " + kLevel);
+        }
+        return new TopicKey(key.substring(0, separator), kLevel);
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        for (TopicKey key : subscriber.keys) {
+            topics.computeIfPresent(key.symbol(), (symbol, byKLevel) -> {
+                byKLevel.computeIfPresent(key.kLevel(), (kLevel, topic) -> {
+                    topic.subscribers.remove(subscriber);
+                    return topic.subscribers.isEmpty() ? null : topic;
+                });
+                return byKLevel.isEmpty() ? null : byKLevel;
+            });
+        }
+        synchronized (subscriber) {
+            subscriber.pending.clear();
+        }
+        logger.info("Stats subscription closed");
+    }
+
+    // Runs on the committing thread, only flags topics of the symbol
+    private void batchCommitted(String symbol) {
+        Map<Integer, Topic> byKLevel = topics.get(symbol);
+        if (byKLevel != null) {
+            byKLevel.values().forEach(this::markChanged);
+        }
+    }
+
+    private void markChanged(Topic topic) {
+        if (topic.changed.compareAndSet(false, true)) {
+            changedTopics.add(topic);
+        }
+    }
+
+    private void dispatchQuietly() {
+        try {
+            dispatch();
+        } catch (RuntimeException e) {
+            logger.error("Stats subscriptions dispatch failed", e);
+        }
+    }
+
+    // Stats of each changed topic are read once and fanned out to its subscribers which have not seen them
+    private void dispatch() {
+        Set<Subscriber> updated = new LinkedHashSet<>();
+        Topic topic;
+        while ((topic = changedTopics.poll()) != null) {
+            topic.changed.set(false);
+            TradingStats stats = currentStats(topic);
+            if (stats == null) {
+                continue;
+            }
+            StatsUpdate update = new StatsUpdate();
+            update.setSymbol(topic.symbol);
+            update.setK(topic.kLevel);
+            update.setStats(stats);
+            for (Subscriber subscriber : topic.subscribers) {
+                Long sentVersion = subscriber.sentVersions.get(topic);
+                if (sentVersion == null || sentVersion < stats.getVersion()) {
+                    subscriber.sentVersions.put(topic, stats.getVersion());
+                    synchronized (subscriber) {
+                        // replaces an update of the topic the subscriber has not sent yet
+                        subscriber.pending.put(topic, update);
+                    }
+                    updated.add(subscriber);
+                }
+            }
+        }
+        updated.forEach(this::scheduleSend);
+    }
+
+    // Starts a sender for the subscriber unless one is running, which picks up the new updates itself
+    private void scheduleSend(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.sending || subscriber.pending.isEmpty() || subscriber.closed.get()) {
+                return;
+            }
+            subscriber.sending = true;
+        }
+        try {
+            senders.execute(() -> sendPending(subscriber));
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            synchronized (subscriber) {
+                subscriber.sending = false;
+            }
+        }
+    }
+
+    // Sends the pending updates of the subscriber until none are left, on its own virtual thread
+    private void sendPending(Subscriber subscriber) {
+        while (true) {
+            List<StatsUpdate> updates;
+            synchronized (subscriber) {
+                if (subscriber.pending.isEmpty() || subscriber.closed.get()) {
+                    subscriber.sending = false;
+                    return;
+                }
+                updates = new ArrayList<>(subscriber.pending.values());
+                subscriber.pending.clear();
+            }
+            send(subscriber, updates);
+        }
+    }
+
+    // Null while the symbol has not enough prices for the level
+    private TradingStats currentStats(Topic topic) {
+        try {
+            StatsSnapshot snapshot = tradingStatsService.getSnapshot(topic.symbol);
+            if (snapshot == null || TradingStatsService.availableKLevels(snapshot.getItemCount()) < topic.kLevel) {
+                return null;
+            }
+            return tradingStatsService.calculateStats(topic.symbol, topic.kLevel);
+        } catch (InsufficientDataException e) {
+            return null;
+        }
+    }
+
+    private void send(Subscriber subscriber, List<StatsUpdate> updates) {
+        try {
+            subscriber.emitter.send(SseEmitter.event().name(EVENT_NAME).data(updates, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // the container reports the broken connection to the emitter as well
+            logger.debug("Stats update could not be sent, closing subscription", e);
+            unsubscribe(subscriber);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private record TopicKey(String symbol, int kLevel) {
+    }
+
+    private static final class Topic {
+        final String symbol;
+        final int kLevel;
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean changed = new AtomicBoolean();
+
+        Topic(String symbol, int kLevel) {
+            this.symbol = symbol;
+            this.kLevel = kLevel;
+        }
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final List<TopicKey> keys;
+        final AtomicBoolean closed = new AtomicBoolean();
+        // Snapshot version last handed to the sender per topic, only used by the dispatcher thread
+        final Map<Topic, Long> sentVersions = new HashMap<>();
+        // Newest unsent update per topic and whether a sender drains them, guarded by the subscriber
+        final Map<Topic, StatsUpdate> pending = new LinkedHashMap<>();
+        boolean sending;
+
+        Subscriber(SseEmitter emitter, List<TopicKey> keys) {
+            this.emitter = emitter;
+            this.keys = keys;
+        }
+    }
+}
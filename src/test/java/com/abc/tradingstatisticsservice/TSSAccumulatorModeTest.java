@@ -0,0 +1,58 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.aggregation.AccumulatorMode;
+import com.abc.tradingstatisticsservice.aggregation.CompensatedAccumulator;
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TSSAccumulatorModeTest {
+
+    private static TradingStatsService serviceWithMode(AccumulatorMode mode) {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setAccumulatorMode(mode);
+        return new TradingStatsService(properties);
+    }
+
+    @Test
+    void testCompensatedAccumulatorKeepsSmallValuesNextToLargeOnes() {
+        CompensatedAccumulator accumulator = new CompensatedAccumulator();
+        accumulator.add(16_777_216f);
+        for (int i = 0; i < 1000; i++) {
+            accumulator.add(0.5f);
+        }
+        accumulator.subtract(16_777_216f);
+
+        assertEquals(0, new BigDecimal("500").compareTo(accumulator.sum()));
+        assertEquals(0, new BigDecimal("250").compareTo(accumulator.squaredSum()));
+    }
+
+    @Test
+    void testCompensatedModeMatchesBigDecimalMode() throws InsufficientDataException {
+        TradingStatsService bigDecimalService = serviceWithMode(AccumulatorMode.BIG_DECIMAL);
+        TradingStatsService compensatedService = serviceWithMode(AccumulatorMode.COMPENSATED);
+
+        Random random = new Random(42);
+        for (int batch = 0; batch < 25; batch++) {
+            Float[] values = new Float[1000];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Math.round((100 + random.nextGaussian() * 5) * 100) / 100f;
+            }
+            bigDecimalService.addBatch("AAPL", values);
+            compensatedService.addBatch("AAPL", values);
+        }
+
+        for (int k = 1; k <= 4; k++) {
+            TradingStats expected = bigDecimalService.calculateStats("AAPL", k);
+            TradingStats actual = compensatedService.calculateStats("AAPL", k);
+            assertEquals(expected, actual, "Stats for k=" + k + " should not depend on accumulator mode");
+        }
+    }
+}
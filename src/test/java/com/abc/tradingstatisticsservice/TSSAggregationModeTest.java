@@ -0,0 +1,103 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.aggregation.AggregationMode;
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TSSAggregationModeTest {
+
+    private static TradingStatsService serviceWithMode(AggregationMode mode) {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setAggregationMode(mode);
+        properties.setAutoEvaluationBatches(10);
+        return new TradingStatsService(properties);
+    }
+
+    private static Float[] randomBatch(Random random, int size) {
+        Float[] values = new Float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = Math.round((100 + random.nextGaussian() * 5) * 100) / 100f;
+        }
+        return values;
+    }
+
+    @Test
+    void testAllModesReturnSameStats() throws InsufficientDataException {
+        TradingStatsService eager = serviceWithMode(AggregationMode.EAGER);
+        TradingStatsService lazy = serviceWithMode(AggregationMode.LAZY);
+        TradingStatsService hybrid = serviceWithMode(AggregationMode.HYBRID);
+
+        Random random = new Random(11);
+        for (int batch = 0; batch < 40; batch++) {
+            // odd sizes so windows never line up with blocks
+            Float[] values = randomBatch(random, 777);
+            eager.addBatch("AAPL", values);
+            lazy.addBatch("AAPL", values);
+            hybrid.addBatch("AAPL", values);
+
+            for (int k = 1; k <= 4; k++) {
+                if (batch * 777 + 777 < Math.pow(10, k)) {
+                    continue;
+                }
+                assertEquals(eager.calculateStats("AAPL", k), lazy.calculateStats("AAPL", k), "lazy k=" + k);
+                assertEquals(eager.calculateStats("AAPL", k), hybrid.calculateStats("AAPL", k), "hybrid k=" + k);
+            }
+        }
+        assertThrows(InsufficientDataException.class, () -> lazy.calculateStats("AAPL", 5));
+        assertThrows(InsufficientDataException.class, () -> hybrid.calculateStats("AAPL", 5));
+    }
+
+    @Test
+    void testSymbolOverridesDefaultMode() throws InsufficientDataException {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setSymbolAggregationModes(Map.of("QUIET", AggregationMode.LAZY));
+        TradingStatsService tradingStatsService = new TradingStatsService(properties);
+
+        Float[] values = randomBatch(new Random(1), 10);
+        tradingStatsService.addBatch("QUIET", values);
+        tradingStatsService.addBatch("AAPL", values);
+
+        assertEquals(AggregationMode.LAZY, tradingStatsService.getActiveAggregationMode("QUIET"));
+        assertEquals(AggregationMode.EAGER, tradingStatsService.getActiveAggregationMode("AAPL"));
+    }
+
+    @Test
+    void testAutoModeFollowsReadWriteRatio() throws InsufficientDataException {
+        TradingStatsService tradingStatsService = serviceWithMode(AggregationMode.AUTO);
+        Random random = new Random(3);
+        tradingStatsService.addBatch("AAPL", randomBatch(random, 500));
+        assertEquals(AggregationMode.EAGER, tradingStatsService.getActiveAggregationMode("AAPL"));
+
+        // write heavy: no reads at all
+        assertEquals(AggregationMode.LAZY, autoModeAfter(tradingStatsService, random, 0));
+
+        // a read every few batches
+        assertEquals(AggregationMode.HYBRID, autoModeAfter(tradingStatsService, random, 3));
+
+        // read heavy: several reads per batch
+        assertEquals(AggregationMode.EAGER, autoModeAfter(tradingStatsService, random, -5));
+    }
+
+    // Adds 10 batches with a read every readEvery batches (negative: -readEvery reads per batch)
+    private static AggregationMode autoModeAfter(TradingStatsService tradingStatsService, Random random, int readEvery)
+            throws InsufficientDataException {
+        for (int batch = 0; batch < 10; batch++) {
+            tradingStatsService.addBatch("AAPL", randomBatch(random, 500));
+            if (readEvery > 0 && batch % readEvery == 0) {
+                tradingStatsService.calculateStats("AAPL", 2);
+            }
+            for (int read = 0; read < -readEvery; read++) {
+                tradingStatsService.calculateStats("AAPL", 2);
+            }
+        }
+        return tradingStatsService.getActiveAggregationMode("AAPL");
+    }
+}
@@ -0,0 +1,161 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.BackfillResult;
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.ingest.BackfillFormat;
+import com.abc.tradingstatisticsservice.ingest.BackfillLoader;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSBackfillTest {
+
+    @TempDir
+    Path directory;
+
+    private BackfillLoader loader(TradingStatsService service, long chunkBytes) {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getBackfill().setDirectory(directory);
+        properties.getBackfill().setChunkSize(DataSize.ofBytes(chunkBytes));
+        properties.getBackfill().setThreads(3);
+        return new BackfillLoader(service, properties);
+    }
+
+    // Quantiles are compared too
+    private static TradingStatsService service() {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setQuantilesEnabled(true);
+        return new TradingStatsService(properties);
+    }
+
+    // Same prices through 10k batches
+    private static TradingStatsService batched(String symbol, List<Float> prices) throws InsufficientDataException {
+        TradingStatsService service = service();
+        for (int from = 0; from < prices.size(); from += 10_000) {
+            List<Float> batch = prices.subList(from, Math.min(prices.size(), from + 10_000));
+            service.addBatch(symbol, batch.toArray(new Float[0]));
+        }
+        return service;
+    }
+
+    // Stats apart from the version, which counts batches
+    private static void assertSameStats(TradingStats expected, TradingStats actual, String message) {
+        assertEquals(expected.getAvg(), actual.getAvg(), message);
+        assertEquals(expected.getVariance(), actual.getVariance(), message);
+        assertEquals(expected.getMin(), actual.getMin(), message);
+        assertEquals(expected.getMax(), actual.getMax(), message);
+        assertEquals(expected.getLast(), actual.getLast(), message);
+        assertEquals(expected.getP50(), actual.getP50(), message);
+        assertEquals(expected.getP99(), actual.getP99(), message);
+    }
+
+    private static void assertSameStats(TradingStatsService expected, TradingStatsService actual, String symbol, long size)
+            throws InsufficientDataException {
+        for (int k = 1; k <= TradingStatsService.availableKLevels(size); k++) {
+            assertSameStats(expected.calculateStats(symbol, k), actual.calculateStats(symbol, k), "k=" + k);
+        }
+        for (long n : new long[]{1, 7, 777, size}) {
+            assertSameStats(expected.calculateWindowStats(symbol, n), actual.calculateWindowStats(symbol, n), "n=" + n);
+        }
+    }
+
+    @Test
+    void testCsvChunksAreParsedInParallelAndAppendedInOrder() throws IOException, InsufficientDataException {
+        Random random = new Random(4);
+        List<Float> prices = new ArrayList<>();
+        Path file = directory.resolve("prices.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("timestamp,price\n");
+            for (int i = 0; i < 25_000; i++) {
+                String text = switch (i % 6) {
+                    case 0 -> String.valueOf(random.nextInt(100_000) / 100.0);
+                    case 1 -> "-" + random.nextInt(1_000) + "." + random.nextInt(10);
+                    case 2 -> String.valueOf(random.nextFloat() * 1e6f);
+                    case 3 -> random.nextInt(9) + ".5e2";
+                    case 4 -> "0.00" + random.nextInt(1_000);
+                    default -> "123456789.123";
+                };
+                prices.add(Float.parseFloat(text));
+                writer.write((i % 2 == 0 ? i + "," : "") + text + (i % 3 == 0 ? "\r\n" : "\n"));
+                if (i % 1_000 == 0) {
+                    writer.write("\n");
+                }
+            }
+        }
+
+        TradingStatsService service = service();
+        BackfillResult result = loader(service, 100).load("CSV", "prices.csv", BackfillFormat.CSV);
+        assertNull(result.getError());
+        assertEquals(prices.size(), result.getPrices());
+        assertEquals(Files.size(file), result.getBytes());
+        assertSameStats(batched("CSV", prices), service, "CSV", prices.size());
+    }
+
+    @Test
+    void testBinaryFileIsLoadedBitForBit() throws IOException, InsufficientDataException {
+        Random random = new Random(8);
+        List<Float> prices = new ArrayList<>();
+        ByteBuffer bytes = ByteBuffer.allocate(30_000 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 30_000; i++) {
+            float price = 50 + random.nextFloat() * 10;
+            prices.add(price);
+            bytes.putFloat(price);
+        }
+        Files.write(directory.resolve("prices.bin"), bytes.array());
+
+        TradingStatsService service = service();
+        BackfillResult result = loader(service, 4_099).load("BIN", "prices.bin", BackfillFormat.BINARY);
+        assertNull(result.getError());
+        assertEquals(prices.size(), result.getPrices());
+        assertSameStats(batched("BIN", prices), service, "BIN", prices.size());
+    }
+
+    @Test
+    void testMalformedAndMissingFilesReportErrors() throws IOException {
+        TradingStatsService service = new TradingStatsService();
+        Files.writeString(directory.resolve("bad.csv"), "1.5\n2.5\nabc\n3.5\n");
+        BackfillResult result = loader(service, 1 << 20).load("BAD", "bad.csv", BackfillFormat.CSV);
+        assertEquals("Malformed price at byte 8", result.getError());
+        assertEquals(0, result.getPrices());
+
+        Files.write(directory.resolve("odd.bin"), new byte[7]);
+        assertEquals("Binary price file size must be a multiple of 4 bytes",
+                loader(service, 1 << 20).load("BAD", "odd.bin", BackfillFormat.BINARY).getError());
+        assertEquals("File not found: missing.csv",
+                loader(service, 1 << 20).load("BAD", "missing.csv", BackfillFormat.CSV).getError());
+    }
+
+    @Test
+    void testFilesOutsideBackfillDirectoryAreRejected(@TempDir Path elsewhere) throws IOException {
+        TradingStatsService service = new TradingStatsService();
+        Path outside = Files.writeString(elsewhere.resolve("outside.csv"), "1.5\n");
+        Files.createDirectories(directory.resolve("nested"));
+        Files.createSymbolicLink(directory.resolve("nested").resolve("link.csv"), outside);
+        Files.writeString(directory.resolve("inside.csv"), "2.5\n");
+
+        for (String file : new String[]{outside.toString(), "../" + elsewhere.getFileName() + "/outside.csv",
+                "nested/../../outside.csv", "nested/link.csv", "", "."}) {
+            assertEquals("File must be inside the backfill directory",
+                    loader(service, 1 << 20).load("OUT", file, BackfillFormat.CSV).getError(), file);
+        }
+        assertTrue(service.getSymbols().isEmpty());
+        assertNull(loader(service, 1 << 20).load("IN", "nested/../inside.csv", BackfillFormat.CSV).getError());
+    }
+}
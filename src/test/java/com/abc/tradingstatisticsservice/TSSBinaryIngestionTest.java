@@ -0,0 +1,94 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.ingest.BinaryBatchFormat;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class TSSBinaryIngestionTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testBinaryBatchAndGetStats() throws Exception {
+        byte[] body = BinaryBatchFormat.encode("BIN", new float[]{1.0f, 2.0f, 3.0f, 4.0f, 5.0f, 6.0f, 7.0f, 8.0f, 9.0f, 10.0f});
+
+        mockMvc.perform(post("/add_batch_binary/")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Batch added successfully."));
+
+        mockMvc.perform(get("/stats/")
+                        .param("symbol", "BIN")
+                        .param("k", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.avg").value(5.5))
+                .andExpect(jsonPath("$.variance").value(8.25))
+                .andExpect(jsonPath("$.min").value(1.0))
+                .andExpect(jsonPath("$.max").value(10.0))
+                .andExpect(jsonPath("$.last").value(10.0));
+    }
+
+    @Test
+    void testMalformedAndOversizedBinaryBatchesAreRejected() throws Exception {
+        byte[] body = BinaryBatchFormat.encode("BIN_BAD", new float[]{1.0f, 2.0f, 3.0f});
+
+        mockMvc.perform(post("/add_batch_binary/")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(Arrays.copyOf(body, body.length - 1)))
+                .andExpect(status().isBadRequest());
+
+        byte[] oversized = BinaryBatchFormat.encode("BIN_BAD", new float[10_001]);
+        mockMvc.perform(post("/add_batch_binary/")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(oversized))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testBinaryAndJsonBatchesGiveSameStats() throws InsufficientDataException {
+        TradingStatsService tradingStatsService = new TradingStatsService();
+        float[] prices = new float[1000];
+        Float[] boxedPrices = new Float[prices.length];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = 100 + (i % 37) * 0.25f;
+            boxedPrices[i] = prices[i];
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(BinaryBatchFormat.encode("BIN", prices)).order(ByteOrder.LITTLE_ENDIAN);
+        BinaryBatchFormat.Batch batch = BinaryBatchFormat.decode(buffer);
+        assertEquals("BIN", batch.symbol());
+        tradingStatsService.addBatch(batch.symbol(), batch.prices());
+        tradingStatsService.addBatch("JSON", boxedPrices);
+
+        TradingStats binaryStats = tradingStatsService.calculateStats("BIN", 3);
+        TradingStats jsonStats = tradingStatsService.calculateStats("JSON", 3);
+        assertEquals(jsonStats, binaryStats);
+
+        ByteBuffer wrongVersion = ByteBuffer.wrap(BinaryBatchFormat.encode("BIN", prices)).order(ByteOrder.LITTLE_ENDIAN);
+        wrongVersion.put(0, (byte) 9);
+        assertThrows(InsufficientDataException.class, () -> BinaryBatchFormat.decode(wrongVersion));
+    }
+}
@@ -0,0 +1,123 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.SymbolBatchResult;
+import com.abc.tradingstatisticsservice.dto.TradingDataBatch;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class TSSBulkBatchTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private TradingStatsService tradingStatsService;
+
+    @BeforeEach
+    void setUp() {
+        tradingStatsService = new TradingStatsService();
+    }
+
+    private static TradingDataBatch batch(String symbol, float from, int size) {
+        TradingDataBatch batch = new TradingDataBatch();
+        batch.setSymbol(symbol);
+        Float[] values = new Float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = from + i;
+        }
+        batch.setValues(values);
+        return batch;
+    }
+
+    @Test
+    void testBatchesOfManySymbolsAreAppliedInRequestOrderPerSymbol() throws InsufficientDataException {
+        List<TradingDataBatch> batches = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            for (int s = 0; s < 4; s++) {
+                batches.add(batch("SYMBOL" + s, round * 100 + 1, 100));
+            }
+        }
+
+        Map<String, SymbolBatchResult> results = tradingStatsService.addBatches(batches);
+
+        assertEquals(List.of("SYMBOL0", "SYMBOL1", "SYMBOL2", "SYMBOL3"), List.copyOf(results.keySet()));
+        for (int s = 0; s < 4; s++) {
+            SymbolBatchResult result = results.get("SYMBOL" + s);
+            assertEquals(5, result.getBatches());
+            assertEquals(500, result.getPrices());
+            assertNull(result.getError());
+            assertEquals(500.0, tradingStatsService.calculateStats("SYMBOL" + s, 1).getLast());
+            assertEquals(450.5, tradingStatsService.calculateStats("SYMBOL" + s, 2).getAvg(), 0.001);
+        }
+    }
+
+    @Test
+    void testRequestOverSymbolLimitIsRejectedAsWhole() throws InsufficientDataException {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setMaxSymbols(10);
+        TradingStatsService tradingStatsService = new TradingStatsService(properties);
+        for (int s = 0; s < 8; s++) {
+            tradingStatsService.addBatch("SYMBOL" + s, batch("SYMBOL" + s, 1, 10).getValues());
+        }
+
+        List<TradingDataBatch> batches = List.of(batch("SYMBOL0", 100, 10), batch("NEW1", 1, 10),
+                batch("NEW2", 1, 10), batch("NEW3", 1, 10));
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.addBatches(batches));
+
+        assertEquals(10.0, tradingStatsService.calculateStats("SYMBOL0", 1).getLast(), "Nothing should be applied");
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.calculateStats("NEW1", 1));
+
+        // two new symbols still fit
+        tradingStatsService.addBatches(List.of(batch("NEW1", 1, 10), batch("NEW2", 1, 10)));
+        assertEquals(10.0, tradingStatsService.calculateStats("NEW2", 1).getLast());
+    }
+
+    @Test
+    void testOversizedGroupRejectsWholeRequest() {
+        List<TradingDataBatch> batches = List.of(batch("AAPL", 1, 10), batch("MSFT", 1, 10_001));
+
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.addBatches(batches));
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.calculateStats("AAPL", 1));
+    }
+
+    @Test
+    void testBulkEndpoint() throws Exception {
+        String body = "{\"batches\":["
+                + "{\"symbol\":\"BULK1\",\"values\":[1,2,3,4,5,6,7,8,9,10]},"
+                + "{\"symbol\":\"BULK2\",\"values\":[10,20]},"
+                + "{\"symbol\":\"BULK1\",\"values\":[11]}]}";
+
+        mockMvc.perform(post("/add_batches/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.BULK1.batches").value(2))
+                .andExpect(jsonPath("$.BULK1.prices").value(11))
+                .andExpect(jsonPath("$.BULK2.prices").value(2));
+
+        mockMvc.perform(post("/add_batches/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"batches\":[{\"symbol\":\"BULK1\"}]}"))
+                .andExpect(status().isBadRequest());
+    }
+}
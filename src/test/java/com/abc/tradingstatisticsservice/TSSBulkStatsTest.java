@@ -0,0 +1,101 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.aggregation.AggregationMode;
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.SymbolStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class TSSBulkStatsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private static Float[] randomBatch(Random random, int size) {
+        Float[] values = new Float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = Math.round((100 + random.nextGaussian() * 5) * 100) / 100f;
+        }
+        return values;
+    }
+
+    @Test
+    void testAllLevelsMatchSingleLevelStatsInEveryMode() throws InsufficientDataException {
+        for (AggregationMode mode : List.of(AggregationMode.EAGER, AggregationMode.LAZY, AggregationMode.HYBRID)) {
+            TradingStatsProperties properties = new TradingStatsProperties();
+            properties.setAggregationMode(mode);
+            TradingStatsService bulk = new TradingStatsService(properties);
+            TradingStatsService single = new TradingStatsService(properties);
+
+            Random random = new Random(5);
+            for (int batch = 0; batch < 3; batch++) {
+                for (String symbol : List.of("AAPL", "MSFT", "GOOG")) {
+                    Float[] values = randomBatch(random, 4_321);
+                    bulk.addBatch(symbol, values);
+                    single.addBatch(symbol, values);
+                }
+            }
+
+            Map<String, SymbolStats> results = bulk.calculateAllStats(List.of("AAPL", "MSFT", "GOOG", "AAPL"));
+            assertEquals(List.of("AAPL", "MSFT", "GOOG"), List.copyOf(results.keySet()));
+            for (String symbol : results.keySet()) {
+                SymbolStats symbolStats = results.get(symbol);
+                assertNull(symbolStats.getError());
+                assertEquals(3, symbolStats.getVersion());
+                assertEquals(4, symbolStats.getStats().size(), "12963 prices cover k=1..4");
+                for (int k = 1; k <= 4; k++) {
+                    assertEquals(single.calculateStats(symbol, k), symbolStats.getStats().get(k), mode + " k=" + k);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSymbolErrorsDoNotFailOtherSymbols() throws InsufficientDataException {
+        TradingStatsService tradingStatsService = new TradingStatsService();
+        tradingStatsService.addBatch("AAPL", randomBatch(new Random(1), 20));
+        tradingStatsService.addBatch("FEW", randomBatch(new Random(2), 5));
+
+        Map<String, SymbolStats> results = tradingStatsService.calculateAllStats(List.of("AAPL", "FEW", "NONE"));
+
+        assertEquals(1, results.get("AAPL").getStats().size());
+        assertEquals("Insufficient data; at least 10 data needed", results.get("FEW").getError());
+        assertEquals("Symbol not found", results.get("NONE").getError());
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.calculateAllStats(List.of()));
+    }
+
+    @Test
+    void testAllStatsEndpoint() throws Exception {
+        mockMvc.perform(post("/add_batch/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"symbol\":\"ALLSTATS\",\"values\":[1,2,3,4,5,6,7,8,9,10,11,12]}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/stats/all/").param("symbols", "ALLSTATS,UNKNOWN"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ALLSTATS.version").value(1))
+                .andExpect(jsonPath("$.ALLSTATS.stats.1.min").value(3.0))
+                .andExpect(jsonPath("$.ALLSTATS.stats.1.last").value(12.0))
+                .andExpect(jsonPath("$.UNKNOWN.error").value("Symbol not found"));
+    }
+}
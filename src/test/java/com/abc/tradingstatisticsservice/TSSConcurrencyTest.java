@@ -0,0 +1,147 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TSSConcurrencyTest {
+
+    private static final int WRITERS = 8;
+    private static final int BATCHES_PER_WRITER = 25;
+    private static final int BATCH_SIZE = 500;
+
+    private final TradingStatsService tradingStatsService = new TradingStatsService();
+
+    private static Float[] sequentialBatch() {
+        Float[] batch = new Float[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch[i] = i + 1f;
+        }
+        return batch;
+    }
+
+    @Test
+    void testConcurrentBatchesForSameSymbolAreNotLost() throws Exception {
+        Float[] batch = sequentialBatch();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger consistentReads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 2);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                writers.add(executor.submit((Callable<Void>) () -> {
+                    for (int b = 0; b < BATCHES_PER_WRITER; b++) {
+                        tradingStatsService.addBatch("AAPL", batch);
+                    }
+                    return null;
+                }));
+            }
+            // Reader sees only whole batches, so the last 100 prices are always 401..500
+            Future<?> reader = executor.submit((Callable<Void>) () -> {
+                while (writing.get()) {
+                    try {
+                        TradingStats stats = tradingStatsService.calculateStats("AAPL", 2);
+                        assertEquals(450.5, stats.getAvg(), 0.0001);
+                        assertEquals(401.0, stats.getMin());
+                        assertEquals(500.0, stats.getMax());
+                        assertEquals(500.0, stats.getLast());
+                        consistentReads.incrementAndGet();
+                    } catch (InsufficientDataException e) {
+                        // symbol not registered yet
+                    }
+                }
+                return null;
+            });
+
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 8 * 25 * 500 = 100_000 prices, any lost update makes k=5 unavailable
+        TradingStats stats = tradingStatsService.calculateStats("AAPL", 5);
+        assertEquals(250.5, stats.getAvg(), 0.0001);
+        assertEquals(20833.25, stats.getVariance(), 0.0001);
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.calculateStats("AAPL", 6));
+    }
+
+    @Test
+    void testDifferentSymbolsAreIngestedInParallel() throws Exception {
+        Float[] batch = sequentialBatch();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                String symbol = "SYMBOL" + (w % 4);
+                writers.add(executor.submit((Callable<Void>) () -> {
+                    for (int b = 0; b < BATCHES_PER_WRITER; b++) {
+                        tradingStatsService.addBatch(symbol, batch);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int s = 0; s < 4; s++) {
+            // two writers per symbol: 2 * 25 * 500 = 25_000 prices
+            String symbol = "SYMBOL" + s;
+            TradingStats stats = tradingStatsService.calculateStats(symbol, 4);
+            assertEquals(250.5, stats.getAvg(), 0.0001);
+            assertThrows(InsufficientDataException.class, () -> tradingStatsService.calculateStats(symbol, 5));
+        }
+    }
+
+    @Test
+    void testConcurrentNewSymbolsNeverExceedLimit() throws Exception {
+        Float[] batch = sequentialBatch();
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setMaxSymbols(10);
+        TradingStatsService tradingStatsService = new TradingStatsService(properties);
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String symbol = "SYMBOL" + i;
+                writers.add(executor.submit((Callable<Void>) () -> {
+                    try {
+                        tradingStatsService.addBatch(symbol, batch);
+                    } catch (InsufficientDataException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(30, rejected.get(), "Only 10 unique symbols should be accepted");
+    }
+}
@@ -1,6 +1,9 @@
 package com.abc.tradingstatisticsservice;
 
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.TradingDataBatch;
 import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import java.util.List;
 import java.util.stream.IntStream;
 
 
@@ -10,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 public class TSSCornerCasesTest {
@@ -49,6 +53,21 @@ public class TSSCornerCasesTest {
         assertThrows(InsufficientDataException.class, () -> tradingStatsService.addBatch("AAPL", excessiveBatch));
     }
 
+    @Test
+    public void testEmptyOrOverlongSymbolShouldThrowException() {
+        Float[] batch = {1.0f, 2.0f};
+        String overlong = "é".repeat(128); // 256 bytes in UTF-8
+        TradingDataBatch bulkBatch = new TradingDataBatch();
+        bulkBatch.setSymbol(overlong);
+        bulkBatch.setValues(batch);
+
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.addBatch("", batch));
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.addBatch(overlong, batch));
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.addHistory("", new float[]{1.0f}, 1));
+        assertThrows(InsufficientDataException.class, () -> tradingStatsService.addBatches(List.of(bulkBatch)));
+        assertTrue(tradingStatsService.getSymbols().isEmpty());
+    }
+
 
     @Test
     public void testAddBatchForNonExistentSymbolThrowsException() throws InsufficientDataException {
@@ -61,6 +80,10 @@ public class TSSCornerCasesTest {
     @Test
     public void testAddingMoreThanTenUniqueSymbolsThrowsException() throws InsufficientDataException {
         Float[] batch = IntStream.rangeClosed(1, 10).mapToObj(i -> 5.0f).toArray(Float[]::new);
+        // symbols are bounded by the memory budget by default, the unique symbols cap is opt-in
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setMaxSymbols(10);
+        TradingStatsService tradingStatsService = new TradingStatsService(properties);
 
         for (int i = 1; i <= 10; i++) {
             tradingStatsService.addBatch("SYMBOL" + i, batch);
@@ -0,0 +1,112 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.abc.tradingstatisticsservice.storage.MappedPriceStore;
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+import com.abc.tradingstatisticsservice.storage.StorageMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSMappedStorageTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testMappedHistoryMatchesHeapHistoryAcrossWrapping() {
+        PriceHistory heap = new PriceHistory(5_000);
+        PriceHistory mapped = new PriceHistory(5_000, new MappedPriceStore(directory.resolve("wrap.prices"), 5_000));
+        Random random = new Random(3);
+
+        for (int batch = 0; batch < 20; batch++) {
+            float[] values = new float[1 + random.nextInt(1_200)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextFloat() * 100;
+            }
+            heap.appendAll(values, 0, values.length);
+            mapped.appendAll(values, 0, values.length);
+            heap.append(batch);
+            mapped.append(batch);
+        }
+
+        assertEquals(heap.written(), mapped.written());
+        for (long sequence = heap.oldestSequence(); sequence < heap.written(); sequence++) {
+            assertEquals(heap.get(sequence), mapped.get(sequence), "sequence " + sequence);
+        }
+    }
+
+    @Test
+    void testMappedStorageServesMoreSymbolsThanHeapDefault() throws InsufficientDataException, IOException {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setMaxSymbols(25);
+        properties.getStorage().setMode(StorageMode.MAPPED);
+        properties.getStorage().setDirectory(directory);
+        TradingStatsService mapped = new TradingStatsService(properties);
+        TradingStatsService heap = new TradingStatsService();
+
+        Float[] values = new Float[1_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) i;
+        }
+        for (int s = 0; s < 25; s++) {
+            mapped.addBatch("SYM/" + s, values);
+        }
+        heap.addBatch("SYM/0", values);
+
+        assertEquals(heap.calculateStats("SYM/0", 3), mapped.calculateStats("SYM/24", 3));
+        assertEquals(1, storeFiles("SYM%2F24-"));
+        // mapped prices are off the heap and not charged to the memory budget
+        assertTrue(mapped.getResidentBytes() / 25 < heap.getResidentBytes());
+    }
+
+    // Every history of a symbol has a file of its own, files of dropped histories are deleted
+    @Test
+    void testStoreFilesFollowSymbolLifecycle() throws Exception {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getStorage().setMode(StorageMode.MAPPED);
+        properties.getStorage().setDirectory(directory);
+        Files.createFile(directory.resolve("STALE-1.prices"));
+        TradingStatsService service = new TradingStatsService(properties);
+        assertEquals(0, storeFiles(""));
+
+        Float[] values = {1f, 2f, 3f, 4f, 5f, 6f, 7f, 8f, 9f, 10f};
+        service.addBatch("AAPL", values);
+        service.addBatch("MSFT", values);
+        ByteArrayOutputStream export = new ByteArrayOutputStream();
+        service.exportSymbol("AAPL", export);
+
+        assertThrows(InsufficientDataException.class,
+                () -> service.importSymbol("AAPL", new ByteArrayInputStream(export.toByteArray())));
+        assertEquals(5.5, service.calculateStats("AAPL", 1).getAvg());
+        assertEquals(1, storeFiles("AAPL-"));
+
+        service.replaceReplicatedSymbol("MSFT", new ByteArrayInputStream(export.toByteArray()));
+        assertEquals(5.5, service.calculateStats("MSFT", 1).getAvg());
+        assertEquals(1, storeFiles("MSFT-"));
+
+        service.removeSymbol("AAPL");
+        assertEquals(0, storeFiles("AAPL-"));
+        service.close();
+        assertEquals(0, storeFiles(""));
+    }
+
+    private long storeFiles(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSMemoryBudgetTest {
+
+    @TempDir
+    Path directory;
+
+    private static Float[] prices(int symbol) {
+        Float[] values = new Float[5_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) (1_000 + symbol * 100 + i % 97);
+        }
+        return values;
+    }
+
+    private TradingStatsProperties properties(long budget) {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getMemory().setBudget(DataSize.ofBytes(budget));
+        properties.getMemory().setSpillDirectory(directory.resolve("spill"));
+        return properties;
+    }
+
+    // Bytes held by one symbol with the prices of the tests
+    private static long symbolBytes() throws InsufficientDataException {
+        TradingStatsService service = new TradingStatsService();
+        service.addBatch("M0", prices(0));
+        return service.getResidentBytes();
+    }
+
+    @Test
+    void testLeastRecentlyUsedSymbolsAreSpilledAndReloaded() throws InsufficientDataException {
+        long budget = symbolBytes() * 7 / 2;
+        TradingStatsService limited = new TradingStatsService(properties(budget));
+        TradingStatsService unlimited = new TradingStatsService();
+
+        for (int s = 0; s < 10; s++) {
+            limited.addBatch("M" + s, prices(s));
+            unlimited.addBatch("M" + s, prices(s));
+            assertTrue(limited.getResidentBytes() <= budget, "resident bytes after M" + s);
+        }
+        Path spill = directory.resolve("spill");
+        assertTrue(Files.exists(spill.resolve("M0.spill")));
+        assertFalse(Files.exists(spill.resolve("M7.spill")));
+        assertFalse(Files.exists(spill.resolve("M9.spill")));
+
+        // M7 is the least recently used of the resident symbols, reading M0 spills it
+        assertEquals(unlimited.calculateStats("M0", 3), limited.calculateStats("M0", 3));
+        assertFalse(Files.exists(spill.resolve("M0.spill")));
+        assertTrue(Files.exists(spill.resolve("M7.spill")));
+
+        for (int s = 0; s < 10; s++) {
+            limited.addBatch("M" + s, prices(s + 1));
+            unlimited.addBatch("M" + s, prices(s + 1));
+        }
+        for (int s = 0; s < 10; s++) {
+            assertEquals(unlimited.calculateStats("M" + s, 4), limited.calculateStats("M" + s, 4), "M" + s);
+            assertEquals(unlimited.calculateWindowStats("M" + s, 7_777), limited.calculateWindowStats("M" + s, 7_777), "M" + s);
+            assertTrue(limited.getResidentBytes() <= budget);
+        }
+    }
+
+    @Test
+    void testBatchRejectedOnlyWhenBudgetCannotFitIt() throws InsufficientDataException {
+        TradingStatsService tiny = new TradingStatsService(properties(1_024));
+        InsufficientDataException exception = assertThrows(InsufficientDataException.class, () -> tiny.addBatch("BIG", prices(1)));
+        assertEquals("Memory budget exceeded. Batch rejected", exception.getMessage());
+
+        TradingStatsService oneSymbol = new TradingStatsService(properties(symbolBytes() + 1_000));
+        oneSymbol.addBatch("A", prices(1));
+        oneSymbol.addBatch("B", prices(2));
+        assertThrows(InsufficientDataException.class, () -> oneSymbol.addBatch("B", prices(3)));
+        assertEquals(5_000, oneSymbol.getSnapshot("A").getItemCount());
+    }
+
+    @Test
+    void testSpillDirectoryDefaultsUnderPersistenceDirectoryAndIsClearedOnStart() throws InsufficientDataException, IOException {
+        TradingStatsProperties properties = properties(symbolBytes() * 5 / 2);
+        properties.getMemory().setSpillDirectory(null);
+        properties.getPersistence().setDirectory(directory.resolve("data"));
+        Path spill = directory.resolve("data").resolve("spill");
+        Files.createDirectories(spill);
+        Files.createFile(spill.resolve("STALE.spill"));
+
+        TradingStatsService service = new TradingStatsService(properties);
+        assertFalse(Files.exists(spill.resolve("STALE.spill")));
+        for (int s = 0; s < 4; s++) {
+            service.addBatch("D" + s, prices(s));
+        }
+        assertTrue(Files.exists(spill.resolve("D0.spill")));
+    }
+
+    @Test
+    void testOptionalSymbolCap() throws InsufficientDataException {
+        TradingStatsProperties properties = properties(Long.MAX_VALUE);
+        properties.setMaxSymbols(2);
+        TradingStatsService service = new TradingStatsService(properties);
+        service.addBatch("A", prices(1));
+        service.addBatch("B", prices(2));
+        assertThrows(InsufficientDataException.class, () -> service.addBatch("C", prices(3)));
+    }
+
+    @Test
+    void testSpilledSymbolsAreCheckpointed() throws InsufficientDataException, IOException {
+        TradingStatsProperties properties = properties(symbolBytes() * 5 / 2);
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(directory.resolve("data"));
+        TradingStatsService service = new TradingStatsService(properties);
+        TradingStatsService unlimited = new TradingStatsService();
+        for (int s = 0; s < 5; s++) {
+            service.addBatch("P" + s, prices(s));
+            unlimited.addBatch("P" + s, prices(s));
+        }
+        service.close();
+
+        TradingStatsService restarted = new TradingStatsService(properties);
+        for (int s = 0; s < 5; s++) {
+            assertEquals(unlimited.calculateStats("P" + s, 3), restarted.calculateStats("P" + s, 3), "P" + s);
+        }
+        restarted.close();
+    }
+}
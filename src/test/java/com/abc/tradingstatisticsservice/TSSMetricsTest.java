@@ -0,0 +1,190 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.metrics.TradingStatsMetrics;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Metrics export is off in Spring Boot tests unless enabled
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class TSSMetricsTest {
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TradingStatsService tradingStatsService;
+
+    private static Float[] prices(int size) {
+        Float[] values = new Float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = 100f + i % 13;
+        }
+        return values;
+    }
+
+    private static double gauge(MeterRegistry registry, String name, String symbol, String tier) {
+        return registry.get(name).tag("symbol", symbol).tag("tier", tier).gauge().value();
+    }
+
+    @Test
+    void testBatchesRejectionsAndStatsAreRecorded() throws InsufficientDataException {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setMaxSymbols(2);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        TradingStatsService service = new TradingStatsService(properties, registry);
+
+        service.addBatch("M1", prices(1_000));
+        service.addBatch("M1", prices(500));
+        service.addBatch("M2", prices(10));
+        assertThrows(InsufficientDataException.class, () -> service.addBatch("M1", prices(10_001)));
+        assertThrows(InsufficientDataException.class, () -> service.addBatch("M3", prices(10)));
+        service.calculateStats("M1", 3);
+        service.calculateStats("M1", 3);
+        assertThrows(InsufficientDataException.class, () -> service.calculateStats("M2", 2));
+
+        assertEquals(2, registry.get(TradingStatsMetrics.INGEST_LATENCY).tag("symbol", "M1").timer().count());
+        assertEquals(1_500, registry.get(TradingStatsMetrics.INGEST_PRICES).tag("symbol", "M1").counter().count());
+        assertEquals(10, registry.get(TradingStatsMetrics.INGEST_PRICES).tag("symbol", "M2").counter().count());
+        assertEquals(1, registry.get(TradingStatsMetrics.INGEST_REJECTIONS).tag("reason", "batch_size").counter().count());
+        assertEquals(1, registry.get(TradingStatsMetrics.INGEST_REJECTIONS).tag("reason", "symbol_limit").counter().count());
+        assertEquals(0, registry.get(TradingStatsMetrics.INGEST_REJECTIONS).tag("reason", "memory_budget").counter().count());
+        assertEquals(2, registry.get(TradingStatsMetrics.STATS_LATENCY).tag("k", "3").timer().count());
+        assertEquals(1, registry.get(TradingStatsMetrics.STATS_LATENCY).tag("k", "2").timer().count());
+
+        assertEquals(1_500, gauge(registry, TradingStatsMetrics.SYMBOL_PRICES, "M1", "heap"));
+        assertEquals(0, gauge(registry, TradingStatsMetrics.SYMBOL_PRICES, "M1", "spilled"));
+        double bytes = gauge(registry, TradingStatsMetrics.SYMBOL_BYTES, "M1", "heap")
+                + gauge(registry, TradingStatsMetrics.SYMBOL_BYTES, "M2", "heap");
+        assertEquals(service.getResidentBytes(), bytes);
+        assertEquals(service.getResidentBytes(), registry.get("tss.resident.bytes").gauge().value());
+    }
+
+    @Test
+    void testSpilledSymbolsMoveToSpilledTier() throws InsufficientDataException {
+        TradingStatsProperties unlimited = new TradingStatsProperties();
+        TradingStatsService probe = new TradingStatsService(unlimited);
+        probe.addBatch("S0", prices(5_000));
+
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getMemory().setBudget(DataSize.ofBytes(probe.getResidentBytes() * 3 / 2));
+        properties.getMemory().setSpillDirectory(directory);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        TradingStatsService service = new TradingStatsService(properties, registry);
+        service.addBatch("S0", prices(5_000));
+        service.addBatch("S1", prices(5_000));
+
+        assertEquals(0, gauge(registry, TradingStatsMetrics.SYMBOL_PRICES, "S0", "heap"));
+        assertEquals(5_000, gauge(registry, TradingStatsMetrics.SYMBOL_PRICES, "S0", "spilled"));
+        assertTrue(gauge(registry, TradingStatsMetrics.SYMBOL_BYTES, "S0", "spilled") > 0);
+        assertEquals(5_000, gauge(registry, TradingStatsMetrics.SYMBOL_PRICES, "S1", "heap"));
+
+        // reloaded symbols keep counting on the same meters
+        service.addBatch("S0", prices(10));
+        assertEquals(5_010, gauge(registry, TradingStatsMetrics.SYMBOL_PRICES, "S0", "heap"));
+        assertEquals(0, gauge(registry, TradingStatsMetrics.SYMBOL_PRICES, "S0", "spilled"));
+        assertEquals(5_010, registry.get(TradingStatsMetrics.INGEST_PRICES).tag("symbol", "S0").counter().count());
+    }
+
+    @Test
+    void testMetersOfRemovedSymbolsAreRemoved() throws Exception {
+        TradingStatsProperties unlimited = new TradingStatsProperties();
+        TradingStatsService probe = new TradingStatsService(unlimited);
+        probe.addBatch("R0", prices(5_000));
+
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getMemory().setBudget(DataSize.ofBytes(probe.getResidentBytes() * 3 / 2));
+        properties.getMemory().setSpillDirectory(directory);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        TradingStatsService service = new TradingStatsService(properties, registry);
+        service.addBatch("R0", prices(5_000));
+        service.addBatch("R1", prices(5_000));
+        service.addBatch("R2", prices(10));
+
+        // R0 is spilled, R1 and R2 are resident
+        service.removeSymbol("R0");
+        service.removeSymbol("R1");
+        for (String symbol : new String[]{"R0", "R1"}) {
+            assertTrue(registry.find(TradingStatsMetrics.INGEST_LATENCY).tag("symbol", symbol).meters().isEmpty());
+            assertTrue(registry.find(TradingStatsMetrics.INGEST_PRICES).tag("symbol", symbol).meters().isEmpty());
+            assertTrue(registry.find(TradingStatsMetrics.SYMBOL_PRICES).tag("symbol", symbol).meters().isEmpty());
+            assertTrue(registry.find(TradingStatsMetrics.SYMBOL_BYTES).tag("symbol", symbol).meters().isEmpty());
+        }
+        assertEquals(10, registry.get(TradingStatsMetrics.INGEST_PRICES).tag("symbol", "R2").counter().count());
+        assertEquals(2, registry.find(TradingStatsMetrics.SYMBOL_PRICES).tag("symbol", "R2").meters().size());
+
+        // a batch after the removal starts the symbol over on new meters
+        service.addBatch("R1", prices(10));
+        assertEquals(10, registry.get(TradingStatsMetrics.INGEST_PRICES).tag("symbol", "R1").counter().count());
+        assertEquals(10, gauge(registry, TradingStatsMetrics.SYMBOL_PRICES, "R1", "heap"));
+    }
+
+    @Test
+    void testRecordingDoesNotAllocate() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        });
+        TradingStatsMetrics metrics = new TradingStatsMetrics(registry, 8);
+        TradingStatsMetrics.SymbolMeters meters = metrics.symbolMeters("ALLOC");
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = 0;
+        for (int round = 0; round < 3; round++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 100_000; i++) {
+                meters.batchCommitted(1_000, 1_000 + i);
+                metrics.statsCalculated(1 + i % 8, 100 + i);
+            }
+            allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        }
+        assertTrue(allocated < 1_024, allocated + " bytes allocated by 200000 recordings");
+    }
+
+    @Test
+    void testPrometheusEndpointExposesMeters() throws Exception {
+        tradingStatsService.addBatch("PROM", prices(10));
+        tradingStatsService.calculateStats("PROM", 1);
+
+        String body = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("tss_ingest_latency_seconds_bucket{symbol=\"PROM\""), body);
+        assertTrue(body.contains("tss_ingest_prices_total{symbol=\"PROM\"} 10.0"), body);
+        assertTrue(body.contains("tss_stats_latency_seconds_bucket{k=\"1\""), body);
+        assertTrue(body.contains("tss_symbol_prices{symbol=\"PROM\",tier=\"heap\"} 10.0"), body);
+        assertTrue(body.contains("tss_ingest_rejections_total{reason=\"batch_size\"}"), body);
+    }
+}
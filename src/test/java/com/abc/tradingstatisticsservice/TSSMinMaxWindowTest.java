@@ -0,0 +1,64 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.aggregation.BlockMinMaxIndex;
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TSSMinMaxWindowTest {
+
+    @Test
+    void testMinMaxOnlyCoverRequestedWindow() throws InsufficientDataException {
+        TradingStatsService tradingStatsService = new TradingStatsService();
+        Float[] values = new Float[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 50f;
+        }
+        values[0] = 1f;
+        values[1] = 1000f;
+        tradingStatsService.addBatch("AAPL", values);
+
+        TradingStats statsK1 = tradingStatsService.calculateStats("AAPL", 1);
+        assertEquals(50.0, statsK1.getMin(), "Min of last 10 should not see older prices");
+        assertEquals(50.0, statsK1.getMax(), "Max of last 10 should not see older prices");
+
+        TradingStats statsK2 = tradingStatsService.calculateStats("AAPL", 2);
+        assertEquals(1.0, statsK2.getMin());
+        assertEquals(1000.0, statsK2.getMax());
+    }
+
+    @Test
+    void testIndexMatchesBruteForceAcrossBlocksAndWrapping() {
+        int capacity = 10_000;
+        PriceHistory history = new PriceHistory(capacity);
+        BlockMinMaxIndex index = new BlockMinMaxIndex(history);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 3 * capacity + 123; i++) {
+            history.append(random.nextFloat() * 1000);
+            index.onAppend();
+
+            if (i % 997 == 0) {
+                for (long n : new long[]{1, 10, 1000, 1025, 4000, history.size()}) {
+                    if (n > history.size()) {
+                        continue;
+                    }
+                    float min = Float.POSITIVE_INFINITY;
+                    float max = Float.NEGATIVE_INFINITY;
+                    for (long sequence = history.written() - n; sequence < history.written(); sequence++) {
+                        min = Math.min(min, history.get(sequence));
+                        max = Math.max(max, history.get(sequence));
+                    }
+                    assertEquals(min, index.min(n), "min for n=" + n + " after " + i);
+                    assertEquals(max, index.max(n), "max for n=" + n + " after " + i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.persistence.FsyncPolicy;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSPersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    private TradingStatsService persistentService(FsyncPolicy fsync) {
+        return new TradingStatsService(persistentProperties(fsync));
+    }
+
+    private TradingStatsProperties persistentProperties(FsyncPolicy fsync) {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(directory);
+        properties.getPersistence().setFsync(fsync);
+        return properties;
+    }
+
+    private static Float[] randomBatch(Random random, int size) {
+        Float[] values = new Float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = Math.round((100 + random.nextGaussian() * 5) * 100) / 100f;
+        }
+        return values;
+    }
+
+    private static void assertSameStats(TradingStatsService expected, TradingStatsService actual, String symbol, int maxK)
+            throws InsufficientDataException {
+        for (int k = 1; k <= maxK; k++) {
+            assertEquals(expected.calculateStats(symbol, k), actual.calculateStats(symbol, k), symbol + " k=" + k);
+        }
+    }
+
+    private List<Path> walSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("wal-")).sorted().toList();
+        }
+    }
+
+    @Test
+    void testStateIsRecoveredFromWriteAheadLogAfterCrash() throws InsufficientDataException {
+        TradingStatsService crashed = persistentService(FsyncPolicy.ALWAYS);
+        Random random = new Random(1);
+        for (int batch = 0; batch < 12; batch++) {
+            crashed.addBatch("AAPL", randomBatch(random, 1_000));
+            crashed.addBatch("MSFT", randomBatch(random, 100));
+        }
+
+        // no close, the second instance only has the log
+        TradingStatsService recovered = persistentService(FsyncPolicy.ALWAYS);
+
+        assertSameStats(crashed, recovered, "AAPL", 4);
+        assertSameStats(crashed, recovered, "MSFT", 3);
+        assertEquals(12, recovered.getSnapshot("AAPL").getVersion());
+    }
+
+    @Test
+    void testCheckpointIsLoadedAndOnlyLogTailReplayed() throws InsufficientDataException, IOException {
+        TradingStatsService crashed = persistentService(FsyncPolicy.INTERVAL);
+        Random random = new Random(2);
+        for (int batch = 0; batch < 5; batch++) {
+            crashed.addBatch("AAPL", randomBatch(random, 3_000));
+        }
+        crashed.checkpoint();
+        assertEquals(1, walSegments().size(), "Segments covered by the checkpoint are deleted");
+
+        crashed.addBatch("AAPL", randomBatch(random, 10));
+        crashed.addBatch("GOOG", randomBatch(random, 10));
+        TradingStatsService recovered = persistentService(FsyncPolicy.INTERVAL);
+
+        assertSameStats(crashed, recovered, "AAPL", 4);
+        assertSameStats(crashed, recovered, "GOOG", 1);
+        assertEquals(6, recovered.getSnapshot("AAPL").getVersion());
+    }
+
+    // Moving a symbol in or out only logs it, the checkpoint is not rewritten
+    @Test
+    void testImportsAndRemovalsAreReplayedFromLog() throws InsufficientDataException, IOException {
+        Random random = new Random(6);
+        TradingStatsService source = new TradingStatsService(new TradingStatsProperties());
+        source.addBatch("MOVE", randomBatch(random, 1_000));
+        source.addBatch("MOVE", randomBatch(random, 500));
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        source.exportSymbol("MOVE", exported);
+
+        TradingStatsService crashed = persistentService(FsyncPolicy.NONE);
+        crashed.addBatch("GONE", randomBatch(random, 100));
+        crashed.addBatch("KEEP", randomBatch(random, 100));
+        crashed.checkpoint();
+        long checkpointModified = Files.getLastModifiedTime(directory.resolve("checkpoint.bin")).toMillis();
+        crashed.removeSymbol("GONE");
+        crashed.importSymbol("MOVE", new ByteArrayInputStream(exported.toByteArray()));
+        crashed.addBatch("MOVE", randomBatch(random, 10));
+        // removed and imported again, the log keeps the order
+        crashed.removeSymbol("KEEP");
+        crashed.addBatch("KEEP", randomBatch(random, 20));
+        assertEquals(checkpointModified, Files.getLastModifiedTime(directory.resolve("checkpoint.bin")).toMillis());
+        assertEquals(1, walSegments().size());
+
+        TradingStatsService recovered = persistentService(FsyncPolicy.NONE);
+
+        assertEquals(List.of("KEEP", "MOVE"), recovered.getSymbols());
+        assertFalse(recovered.getSymbols().contains("GONE"));
+        assertSameStats(crashed, recovered, "MOVE", 3);
+        assertEquals(3, recovered.getSnapshot("MOVE").getVersion());
+        assertSameStats(crashed, recovered, "KEEP", 1);
+        assertEquals(1, recovered.getSnapshot("KEEP").getVersion());
+    }
+
+    @Test
+    void testTornLogTailIsDropped() throws InsufficientDataException, IOException {
+        TradingStatsService crashed = persistentService(FsyncPolicy.NONE);
+        crashed.addBatch("AAPL", randomBatch(new Random(3), 20));
+        Path segment = walSegments().get(walSegments().size() - 1);
+        long validBytes = Files.size(segment);
+        Files.write(segment, new byte[]{42, 0, 0, 0, 1, 2}, StandardOpenOption.APPEND);
+
+        TradingStatsService recovered = persistentService(FsyncPolicy.NONE);
+
+        assertSameStats(crashed, recovered, "AAPL", 1);
+        assertEquals(validBytes, Files.size(segment));
+    }
+
+    @Test
+    void testCleanShutdownLeavesNothingToReplay() throws InsufficientDataException, IOException {
+        TradingStatsService stopped = persistentService(FsyncPolicy.ALWAYS);
+        stopped.addBatch("AAPL", randomBatch(new Random(4), 50));
+        stopped.close();
+        for (Path segment : walSegments()) {
+            assertEquals(0, Files.size(segment), "Everything is in the checkpoint");
+        }
+
+        TradingStatsService restarted = persistentService(FsyncPolicy.ALWAYS);
+
+        assertSameStats(stopped, restarted, "AAPL", 1);
+    }
+
+    // Logged batches were accepted once, a smaller budget or symbol cap must not keep the service from starting
+    @Test
+    void testLogIsReplayedPastShrunkLimits() throws InsufficientDataException {
+        TradingStatsService crashed = persistentService(FsyncPolicy.ALWAYS);
+        Random random = new Random(5);
+        for (int s = 0; s < 4; s++) {
+            crashed.addBatch("S" + s, randomBatch(random, 5_000));
+        }
+        long symbolBytes = crashed.getResidentBytes() / 4;
+
+        TradingStatsProperties properties = persistentProperties(FsyncPolicy.ALWAYS);
+        properties.getMemory().setBudget(DataSize.ofBytes(symbolBytes * 5 / 2));
+        properties.setMaxSymbols(2);
+        TradingStatsService recovered = new TradingStatsService(properties);
+
+        assertEquals(List.of("S0", "S1", "S2", "S3"), recovered.getSymbols());
+        assertTrue(recovered.getResidentBytes() <= symbolBytes * 5 / 2, "Symbols over the budget are spilled");
+        for (int s = 0; s < 4; s++) {
+            assertSameStats(crashed, recovered, "S" + s, 3);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.abc.tradingstatisticsservice.storage.CompressedPriceStore;
+import com.abc.tradingstatisticsservice.storage.PriceCodec;
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+import com.abc.tradingstatisticsservice.storage.StorageMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSPriceCompressionTest {
+
+    // Random walk on a 0.01 tick grid, most trades print at the previous price
+    private static float[] tickPrices(Random random, int size) {
+        float[] values = new float[size];
+        long ticks = 10_000;
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(10) < 4) {
+                ticks += random.nextInt(7) - 3;
+            }
+            values[i] = (float) (ticks / 100.0);
+        }
+        return values;
+    }
+
+    private static void assertSameBits(float[] expected, float[] actual, String message) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Float.floatToRawIntBits(expected[i]), Float.floatToRawIntBits(actual[i]), message + " at " + i);
+        }
+    }
+
+    @Test
+    void testCodecRoundTripsAnyFloatBitForBit() {
+        Random random = new Random(5);
+        float[] special = {0f, -0f, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.MIN_VALUE,
+                Float.MAX_VALUE, -Float.MAX_VALUE, 1e-3f, 123.456f, 3e9f, -42.5f};
+        float[][] runs = {
+                special,
+                tickPrices(random, 1024),
+                {7.25f},
+                new float[1024],
+                new float[1000]
+        };
+        for (int i = 0; i < runs[4].length; i++) {
+            runs[4][i] = Float.intBitsToFloat(random.nextInt());
+        }
+        for (float[] run : runs) {
+            float[] decoded = new float[run.length];
+            PriceCodec.decode(PriceCodec.encode(run, 0, run.length), decoded, 0, run.length);
+            assertSameBits(run, decoded, "run of " + run.length);
+        }
+    }
+
+    @Test
+    void testCompressedHistoryMatchesHeapHistoryAcrossWrapping() {
+        PriceHistory heap = new PriceHistory(5_000);
+        PriceHistory compressed = new PriceHistory(5_000, new CompressedPriceStore(5_000));
+        Random random = new Random(3);
+
+        for (int batch = 0; batch < 30; batch++) {
+            float[] values = batch % 3 == 0 ? tickPrices(random, 1 + random.nextInt(1_500)) : new float[1 + random.nextInt(1_500)];
+            if (batch % 3 != 0) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = random.nextFloat() * 100;
+                }
+            }
+            heap.appendAll(values, 0, values.length);
+            compressed.appendAll(values, 0, values.length);
+            heap.append(batch);
+            compressed.append(batch);
+
+            for (long sequence = heap.oldestSequence(); sequence < heap.written(); sequence++) {
+                assertEquals(heap.get(sequence), compressed.get(sequence), "sequence " + sequence);
+            }
+            int length = (int) heap.size() - 7;
+            float[] expected = new float[length];
+            float[] actual = new float[length];
+            heap.copyTo(heap.oldestSequence() + 7, expected, 0, length);
+            compressed.copyTo(heap.oldestSequence() + 7, actual, 0, length);
+            assertSameBits(expected, actual, "copy after batch " + batch);
+        }
+    }
+
+    @Test
+    void testCompressedStorageGivesSameStats() throws InsufficientDataException {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getStorage().setMode(StorageMode.COMPRESSED);
+        TradingStatsService compressed = new TradingStatsService(properties);
+        TradingStatsService heap = new TradingStatsService();
+
+        Random random = new Random(9);
+        for (int batch = 0; batch < 20; batch++) {
+            float[] prices = tickPrices(random, 5_000);
+            Float[] values = new Float[prices.length];
+            for (int i = 0; i < prices.length; i++) {
+                values[i] = prices[i];
+            }
+            compressed.addBatch("ZIP", values);
+            heap.addBatch("ZIP", values);
+        }
+
+        for (int k = 1; k <= 5; k++) {
+            assertEquals(heap.calculateStats("ZIP", k), compressed.calculateStats("ZIP", k), "k=" + k);
+        }
+    }
+
+    // Decode speed is measured by PriceDecodeBenchmark, resident bytes per price by FootprintBenchmark
+    @Test
+    void testTickPricesCompressAtLeastThreefold() {
+        int capacity = 1_000_000;
+        float[] values = tickPrices(new Random(11), capacity);
+        CompressedPriceStore store = new CompressedPriceStore(capacity);
+        PriceHistory history = new PriceHistory(capacity, store);
+        history.appendAll(values, 0, values.length);
+
+        double ratio = (double) capacity * Float.BYTES / store.residentBytes();
+        assertTrue(ratio >= 3, "ratio " + ratio);
+    }
+}
@@ -0,0 +1,55 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSPriceHistoryTest {
+
+    @Test
+    void testAppendAndGetBeforeWrapping() {
+        PriceHistory history = new PriceHistory(100);
+        assertTrue(history.isEmpty());
+
+        for (int i = 0; i < 50; i++) {
+            history.append(i);
+        }
+
+        assertEquals(50, history.size());
+        assertEquals(0, history.oldestSequence());
+        assertEquals(0f, history.get(0));
+        assertEquals(49f, history.last());
+    }
+
+    @Test
+    void testOldestPricesAreOverwrittenWhenFull() {
+        PriceHistory history = new PriceHistory(100);
+
+        for (int i = 0; i < 250; i++) {
+            history.append(i);
+        }
+
+        assertEquals(100, history.size());
+        assertEquals(250, history.written());
+        assertEquals(150, history.oldestSequence());
+        for (long sequence = history.oldestSequence(); sequence < history.written(); sequence++) {
+            assertEquals((float) sequence, history.get(sequence));
+        }
+    }
+
+    @Test
+    void testCapacitySpanningSeveralChunks() {
+        int capacity = 200_000;
+        PriceHistory history = new PriceHistory(capacity);
+
+        for (int i = 0; i < capacity + 70_000; i++) {
+            history.append(i);
+        }
+
+        assertEquals(capacity, history.size());
+        assertEquals(70_000f, history.get(history.oldestSequence()));
+        assertEquals(capacity + 69_999f, history.last());
+    }
+}
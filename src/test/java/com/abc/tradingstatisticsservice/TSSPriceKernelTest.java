@@ -0,0 +1,116 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.aggregation.AccumulatorMode;
+import com.abc.tradingstatisticsservice.aggregation.AggregationMode;
+import com.abc.tradingstatisticsservice.aggregation.AggregationStrategy;
+import com.abc.tradingstatisticsservice.aggregation.PriceAccumulator;
+import com.abc.tradingstatisticsservice.aggregation.PriceKernel;
+import com.abc.tradingstatisticsservice.aggregation.ScalarPriceKernel;
+import com.abc.tradingstatisticsservice.aggregation.VectorPriceKernel;
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSPriceKernelTest {
+
+    private final PriceKernel scalar = new ScalarPriceKernel();
+    private final PriceKernel vector = new VectorPriceKernel();
+
+    private static float[] randomPrices(Random random, int size) {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(10) == 0 ? random.nextFloat() * 1e-3f : (float) (100 + random.nextGaussian() * 50);
+        }
+        return values;
+    }
+
+    @Test
+    void testVectorKernelIsSelectedWhenModuleIsEnabled() {
+        assertInstanceOf(VectorPriceKernel.class, PriceKernel.get());
+    }
+
+    @Test
+    void testScalarAndVectorKernelsAreBitIdentical() {
+        Random random = new Random(21);
+        for (int length : new int[]{0, 1, 7, 8, 9, 31, 1024, 10_000}) {
+            float[] values = randomPrices(random, length + 5);
+            values[random.nextInt(values.length)] = -0.0f;
+            for (int from : new int[]{0, 3}) {
+                int to = from + length;
+                double[] expected = new double[4];
+                double[] actual = new double[4];
+                // scratch left over from an earlier run must not leak into the sums
+                double[] lanes = new double[PriceKernel.LANE_SCRATCH];
+                Arrays.fill(lanes, 42d);
+                scalar.sum(values, from, to, expected, lanes);
+                Arrays.fill(lanes, 42d);
+                vector.sum(values, from, to, actual, lanes);
+                assertArrayEquals(expected, actual, "sums of " + length + " from " + from);
+                assertEquals(Float.floatToRawIntBits(scalar.min(values, from, to)), Float.floatToRawIntBits(vector.min(values, from, to)));
+                assertEquals(Float.floatToRawIntBits(scalar.max(values, from, to)), Float.floatToRawIntBits(vector.max(values, from, to)));
+            }
+        }
+    }
+
+    @Test
+    void testKernelSumsMatchExactSums() {
+        float[] values = randomPrices(new Random(4), 10_000);
+        double[] sums = new double[4];
+        PriceKernel.get().sum(values, 0, values.length, sums, new double[PriceKernel.LANE_SCRATCH]);
+
+        BigDecimal sum = BigDecimal.ZERO;
+        BigDecimal squaredSum = BigDecimal.ZERO;
+        for (float value : values) {
+            BigDecimal exact = new BigDecimal(value);
+            sum = sum.add(exact);
+            squaredSum = squaredSum.add(exact.multiply(exact));
+        }
+        BigDecimal kernelSum = new BigDecimal(sums[0]).add(new BigDecimal(sums[1]));
+        BigDecimal kernelSquaredSum = new BigDecimal(sums[2]).add(new BigDecimal(sums[3]));
+        assertTrue(sum.subtract(kernelSum).abs().compareTo(new BigDecimal("1e-15")) < 0);
+        assertTrue(squaredSum.subtract(kernelSquaredSum).abs().compareTo(new BigDecimal("1e-11")) < 0);
+    }
+
+    @Test
+    void testBatchAppendMatchesPriceByPriceAppend() {
+        int capacity = 10_000;
+        for (AggregationMode mode : new AggregationMode[]{AggregationMode.EAGER, AggregationMode.HYBRID}) {
+            PriceHistory batchHistory = new PriceHistory(capacity);
+            PriceHistory priceHistory = new PriceHistory(capacity);
+            AggregationStrategy batchAppend = mode.newStrategy(batchHistory, AccumulatorMode.BIG_DECIMAL);
+            AggregationStrategy priceAppend = mode.newStrategy(priceHistory, AccumulatorMode.BIG_DECIMAL);
+
+            Random random = new Random(17);
+            for (int batch = 0; batch < 40; batch++) {
+                float[] values = randomPrices(random, 1 + random.nextInt(2_500));
+                batchAppend.appendAll(values, 0, values.length);
+                for (float value : values) {
+                    priceAppend.append(value);
+                }
+
+                for (long n : new long[]{1, 10, 1000, 1500, batchHistory.size()}) {
+                    if (n > batchHistory.size()) {
+                        continue;
+                    }
+                    PriceAccumulator expected = AccumulatorMode.BIG_DECIMAL.newAccumulator();
+                    PriceAccumulator actual = AccumulatorMode.BIG_DECIMAL.newAccumulator();
+                    priceAppend.accumulateNewest(n, expected);
+                    batchAppend.accumulateNewest(n, actual);
+                    String message = mode + " n=" + n + " after batch " + batch;
+                    assertEquals(0, expected.sum().compareTo(actual.sum()), message);
+                    assertEquals(0, expected.squaredSum().compareTo(actual.squaredSum()), message);
+                    assertEquals(priceAppend.minOfNewest(n), batchAppend.minOfNewest(n), message);
+                    assertEquals(priceAppend.maxOfNewest(n), batchAppend.maxOfNewest(n), message);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.aggregation.WindowQuantiles;
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSQuantilesTest {
+
+    private static float[] randomPrices(Random random, int size) {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(50) == 0 ? 0.01f + random.nextFloat() * 500 : (float) (100 + random.nextGaussian() * 10);
+        }
+        return values;
+    }
+
+    // Nearest-rank quantiles of the newest window prices
+    private static float[] exactQuantiles(PriceHistory history, int window) {
+        float[] newest = new float[window];
+        history.copyTo(history.written() - window, newest, 0, window);
+        Arrays.sort(newest);
+        float[] result = new float[WindowQuantiles.QUANTILES.length];
+        for (int q = 0; q < result.length; q++) {
+            result[q] = newest[(int) Math.max(1, Math.ceil(WindowQuantiles.QUANTILES[q] * window)) - 1];
+        }
+        return result;
+    }
+
+    @Test
+    void testRollingQuantilesMatchSortedWindowsAcrossWrapping() {
+        int[] windows = {10, 100, 1000, 3000, 5000};
+        PriceHistory history = new PriceHistory(5_000);
+        WindowQuantiles quantiles = new WindowQuantiles(history, windows);
+        Random random = new Random(12);
+
+        for (int batch = 0; batch < 40; batch++) {
+            float[] values = randomPrices(random, 1 + random.nextInt(batch % 5 == 0 ? 9_000 : 700));
+            history.appendAll(values, 0, values.length);
+            quantiles.append(values, 0, values.length);
+
+            for (int window : windows) {
+                if (window > history.size()) {
+                    continue;
+                }
+                float[] expected = exactQuantiles(history, window);
+                float[] actual = quantiles.quantiles(window, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+                for (int q = 0; q < expected.length; q++) {
+                    String message = "window " + window + " quantile " + WindowQuantiles.QUANTILES[q] + " after batch " + batch;
+                    if (window <= 100) {
+                        assertEquals(expected[q], actual[q], message);
+                    } else {
+                        assertEquals(expected[q], actual[q], Math.abs(expected[q]) * 0.0005, message);
+                    }
+                }
+            }
+        }
+
+        // a sketch rebuilt from the history counts the same prices
+        WindowQuantiles rebuilt = new WindowQuantiles(history, windows);
+        for (int window : windows) {
+            assertTrue(Arrays.equals(quantiles.quantiles(window, 0, 1000), rebuilt.quantiles(window, 0, 1000)), "window " + window);
+        }
+        assertNull(quantiles.quantiles(2000, 0, 1000));
+    }
+
+    @Test
+    void testStatsReportQuantilesOfKLevels() throws InsufficientDataException {
+        TradingStatsService service = new TradingStatsService();
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setQuantilesEnabled(false);
+        TradingStatsService disabled = new TradingStatsService(properties);
+
+        Float[] values = new Float[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) (i % 1000);
+        }
+        service.addBatch("Q", values);
+        disabled.addBatch("Q", values);
+
+        TradingStats k1 = service.calculateStats("Q", 1);
+        assertEquals(994.0, k1.getP50());
+        assertEquals(999.0, k1.getP99());
+        TradingStats k4 = service.calculateStats("Q", 4);
+        assertEquals(499.0, k4.getP50(), 499 * 0.0005);
+        assertEquals(949.0, k4.getP95(), 949 * 0.0005);
+        assertEquals(989.0, k4.getP99(), 989 * 0.0005);
+        assertEquals(k4, service.calculateWindowStats("Q", 10_000));
+
+        assertNull(service.calculateWindowStats("Q", 5_000).getP50());
+        assertNull(disabled.calculateStats("Q", 4).getP50());
+        assertEquals(k4.getAvg(), disabled.calculateStats("Q", 4).getAvg());
+        assertNotNull(service.calculateAllStats(java.util.List.of("Q")).get("Q").getStats().get(3).getP95());
+    }
+}
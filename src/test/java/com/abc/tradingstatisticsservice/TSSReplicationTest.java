@@ -0,0 +1,254 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.dto.ReplicationStatus;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.replication.ReplicaStatsFilter;
+import com.abc.tradingstatisticsservice.replication.ReplicationLog;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSReplicationTest {
+    private static final int SYMBOLS = 40;
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @AfterEach
+    void stop() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    // Arguments take precedence over application.properties
+    private ConfigurableApplicationContext start(String... args) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TradingStatisticsServiceApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off")
+                .run(args);
+        contexts.add(context);
+        return context;
+    }
+
+    private ConfigurableApplicationContext startReplica(String primaryUrl, String... args) {
+        List<String> replicaArgs = new ArrayList<>(List.of("--tss.replication.role=REPLICA",
+                "--tss.replication.primary-url=" + primaryUrl, "--tss.replication.heartbeat-ms=100",
+                "--tss.replication.reconnect-ms=100"));
+        replicaArgs.addAll(List.of(args));
+        return start(replicaArgs.toArray(new String[0]));
+    }
+
+    private static String url(ConfigurableApplicationContext context) {
+        return "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static TradingStatsService service(ConfigurableApplicationContext context) {
+        return context.getBean(TradingStatsService.class);
+    }
+
+    private HttpResponse<String> get(String url) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private ReplicationStatus status(ConfigurableApplicationContext context) throws Exception {
+        return objectMapper.readValue(get(url(context) + "/replication/status/").body(), ReplicationStatus.class);
+    }
+
+    private ReplicationStatus awaitStatus(ConfigurableApplicationContext replica, Predicate<ReplicationStatus> condition)
+            throws Exception {
+        for (int attempt = 0; attempt < 200; attempt++) {
+            ReplicationStatus status = status(replica);
+            if (condition.test(status)) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Replica did not reach the expected state: " + status(replica));
+    }
+
+    private static Float[] prices(int size, int offset) {
+        Float[] values = new Float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = 100f + (offset * 7 + i) % 23;
+        }
+        return values;
+    }
+
+    private static void addBatches(TradingStatsService service, int rounds, int offset) throws InsufficientDataException {
+        for (int round = 0; round < rounds; round++) {
+            for (int s = 0; s < SYMBOLS; s++) {
+                service.addBatch("S" + s, prices(60, offset + round * SYMBOLS + s));
+            }
+        }
+    }
+
+    private void assertSameStats(ConfigurableApplicationContext primary, ConfigurableApplicationContext replica)
+            throws Exception {
+        assertEquals(service(primary).getSymbols(), service(replica).getSymbols());
+        for (String symbol : service(primary).getSymbols()) {
+            for (int k = 1; k <= 2; k++) {
+                // symbols started over may not have k=2 yet, then both refuse it the same way
+                HttpResponse<String> replicated = get(url(replica) + "/stats/?symbol=" + symbol + "&k=" + k);
+                HttpResponse<String> primaryStats = get(url(primary) + "/stats/?symbol=" + symbol + "&k=" + k);
+                assertEquals(primaryStats.statusCode(), replicated.statusCode(), replicated.body());
+                assertEquals("0", replicated.headers().firstValue(ReplicaStatsFilter.LAG_HEADER).orElseThrow());
+                assertEquals(primaryStats.body(), replicated.body(), symbol);
+            }
+        }
+    }
+
+    // The replica starts after the primary took batches, then follows batches committed while and after it loads
+    @Test
+    void testLateReplicaCatchesUpAndFollows() throws Exception {
+        ConfigurableApplicationContext primary = start("--tss.replication.role=PRIMARY");
+        addBatches(service(primary), 3, 0);
+
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                addBatches(service(primary), 20, 3);
+            } catch (InsufficientDataException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        ConfigurableApplicationContext replica = startReplica(url(primary));
+        writer.join();
+        long head = status(primary).getAppliedSequence();
+        assertEquals(23L * SYMBOLS, head);
+        ReplicationStatus caughtUp = awaitStatus(replica, status -> status.getAppliedSequence() == head);
+        assertTrue(caughtUp.isSynced() && caughtUp.isConnected());
+        assertSameStats(primary, replica);
+
+        // removed on the primary, then started over
+        service(primary).removeSymbol("S0");
+        service(primary).removeSymbol("S1");
+        service(primary).addBatch("S1", prices(20, 1));
+        addBatches(service(primary), 1, 50);
+        long next = status(primary).getAppliedSequence();
+        awaitStatus(replica, status -> status.getAppliedSequence() == next && status.getLag() == 0);
+        assertSameStats(primary, replica);
+        assertEquals(2, service(replica).calculateStats("S1", 1).getVersion());
+
+        HttpResponse<String> rejected = client.send(HttpRequest.newBuilder(URI.create(url(replica) + "/add_batch/"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"symbol\":\"S2\",\"values\":[1.0,2.0]}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, rejected.statusCode());
+        assertEquals("Error: Replica is read only, batches are accepted by the primary", rejected.body());
+    }
+
+    @Test
+    void testReplicaBehindTheLogLoadsSnapshot() throws Exception {
+        ConfigurableApplicationContext primary = start("--tss.replication.role=PRIMARY", "--tss.replication.log-size=16KB");
+        addBatches(service(primary), 5, 0);
+        ReplicationStatus primaryStatus = status(primary);
+        assertTrue(primaryStatus.getOldestRetained() > 1);
+
+        HttpResponse<String> evicted = get(url(primary) + "/replication/stream/?from=1&epoch=" + primaryStatus.getEpoch());
+        assertEquals(400, evicted.statusCode());
+        assertEquals("Error: Sequence 1 is no longer retained, oldest is " + primaryStatus.getOldestRetained(), evicted.body());
+
+        ConfigurableApplicationContext replica = startReplica(url(primary));
+        awaitStatus(replica, status -> status.getAppliedSequence() == primaryStatus.getAppliedSequence());
+        assertSameStats(primary, replica);
+    }
+
+    // Sequences start over with the restarted primary, the replica must not take them for batches it applied
+    @Test
+    void testReplicaResyncsWithRestartedPrimary() throws Exception {
+        ConfigurableApplicationContext primary = start("--tss.replication.role=PRIMARY");
+        String primaryUrl = url(primary);
+        addBatches(service(primary), 3, 0);
+        ConfigurableApplicationContext replica = startReplica(primaryUrl);
+        long firstEpoch = status(primary).getEpoch();
+        awaitStatus(replica, status -> status.getAppliedSequence() == 3L * SYMBOLS && status.getEpoch() == firstEpoch);
+
+        HttpResponse<String> otherEpoch = get(primaryUrl + "/replication/stream/?from=1&epoch=" + (firstEpoch + 1));
+        assertEquals(400, otherEpoch.statusCode());
+
+        primary.close();
+        ConfigurableApplicationContext restarted = start("--tss.replication.role=PRIMARY",
+                "--server.port=" + primaryUrl.substring(primaryUrl.lastIndexOf(':') + 1));
+        long secondEpoch = status(restarted).getEpoch();
+        assertTrue(secondEpoch != firstEpoch);
+        // fewer batches than the replica applied, under the same symbols and versions it already has
+        addBatches(service(restarted), 1, 100);
+        service(restarted).addBatch("NEW", prices(10, 0));
+
+        ReplicationStatus resynced = awaitStatus(replica, status -> status.getEpoch() == secondEpoch
+                && status.getAppliedSequence() == SYMBOLS + 1 && status.getLag() == 0);
+        assertTrue(resynced.isSynced());
+        assertSameStats(restarted, replica);
+        assertEquals(1, service(replica).calculateStats("S0", 1).getVersion());
+
+        // and keeps following the restarted primary
+        addBatches(service(restarted), 1, 200);
+        awaitStatus(replica, status -> status.getAppliedSequence() == 2L * SYMBOLS + 1);
+        assertSameStats(restarted, replica);
+    }
+
+    @Test
+    void testStaleReplicaRefusesStats() throws Exception {
+        ConfigurableApplicationContext primary = start("--tss.replication.role=PRIMARY");
+        addBatches(service(primary), 1, 0);
+        ConfigurableApplicationContext replica = startReplica(url(primary), "--tss.replication.timeout-ms=1000");
+        awaitStatus(replica, status -> status.getStaleness() == null && status.getAppliedSequence() == SYMBOLS);
+        assertEquals(200, get(url(replica) + "/stats/?symbol=S3&k=1").statusCode());
+
+        primary.close();
+        ReplicationStatus stale = awaitStatus(replica, status -> status.getStaleness() != null);
+        assertFalse(stale.isConnected());
+        HttpResponse<String> refused = get(url(replica) + "/stats/?symbol=S3&k=1");
+        assertEquals(503, refused.statusCode());
+        assertTrue(refused.body().startsWith("Error: Replica has not heard from the primary for "), refused.body());
+
+        ConfigurableApplicationContext orphan = startReplica("http://localhost:1");
+        HttpResponse<String> unsynced = get(url(orphan) + "/stats/?symbol=S3&k=1");
+        assertEquals(503, unsynced.statusCode());
+        assertEquals("Error: Replica has not loaded a snapshot of the primary yet", unsynced.body());
+    }
+
+    @Test
+    void testLogRetainsNewestFramesWithinItsSize() throws Exception {
+        ReplicationLog log = new ReplicationLog(1_000);
+        float[] prices = new float[50];
+        for (int i = 1; i <= 20; i++) {
+            assertEquals(i, log.appendBatch("A", i, prices, prices.length));
+        }
+        assertEquals(20, log.head());
+        // a batch frame of 50 prices takes 224 bytes
+        assertEquals(17, log.oldest());
+        assertEquals(4, log.read(17, 0).size());
+        assertEquals(1, log.read(20, 0).size());
+        assertTrue(log.read(21, 10).isEmpty());
+        InsufficientDataException evicted = assertThrows(InsufficientDataException.class, () -> log.read(16, 0));
+        assertEquals("Sequence 16 is no longer retained, oldest is 17", evicted.getMessage());
+
+        CompletableFuture<Integer> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return log.read(21, 10_000).size();
+            } catch (InsufficientDataException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        log.appendReset("A");
+        assertEquals(1, waiting.get());
+    }
+}
@@ -0,0 +1,377 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.cluster.ShardRing;
+import com.abc.tradingstatisticsservice.dto.BulkTradingDataBatch;
+import com.abc.tradingstatisticsservice.dto.RebalanceResult;
+import com.abc.tradingstatisticsservice.dto.TradingDataBatch;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSSShardingTest {
+    private static final int SYMBOLS = 60;
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private final List<HttpServer> proxies = new ArrayList<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void stop() {
+        proxies.forEach(proxy -> proxy.stop(0));
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    // Forwards requests to the node, DELETE requests fail while failDeletes is set
+    private String proxy(ConfigurableApplicationContext node, AtomicBoolean failDeletes) throws IOException {
+        HttpServer proxy = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        proxy.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        proxy.createContext("/", exchange -> {
+            try (exchange) {
+                forward(exchange, url(node), failDeletes.get());
+            }
+        });
+        proxy.start();
+        proxies.add(proxy);
+        return "http://localhost:" + proxy.getAddress().getPort();
+    }
+
+    private void forward(HttpExchange exchange, String node, boolean failDelete) throws IOException {
+        if (failDelete && exchange.getRequestMethod().equals("DELETE")) {
+            exchange.sendResponseHeaders(500, -1);
+            return;
+        }
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(node + exchange.getRequestURI()))
+                .method(exchange.getRequestMethod(), body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null) {
+            request.header("Content-Type", contentType);
+        }
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        response.headers().firstValue("Content-Type").ifPresent(value -> exchange.getResponseHeaders().add("Content-Type", value));
+        exchange.sendResponseHeaders(response.statusCode(), response.body().length == 0 ? -1 : response.body().length);
+        exchange.getResponseBody().write(response.body());
+    }
+
+    // Arguments such as --tss.cluster.mode=ROUTER, which take precedence over application.properties
+    private ConfigurableApplicationContext start(String... args) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TradingStatisticsServiceApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off")
+                .run(args);
+        contexts.add(context);
+        return context;
+    }
+
+    // Routers of a test share their state file, so a router started again routes like the one before
+    private ConfigurableApplicationContext startRouter(String... nodes) {
+        return start("--tss.cluster.mode=ROUTER", "--tss.cluster.nodes=" + String.join(",", nodes),
+                "--tss.cluster.state-file=" + directory.resolve("cluster.json"));
+    }
+
+    private static String url(ConfigurableApplicationContext context) {
+        return "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static List<String> symbols(ConfigurableApplicationContext node) {
+        return node.getBean(TradingStatsService.class).getSymbols();
+    }
+
+    private HttpResponse<String> get(String url, String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).GET();
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String url, Object body) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static TradingDataBatch batch(String symbol, int size, int offset) {
+        Float[] values = new Float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = 50f + (offset + i) % 17 + symbol.length();
+        }
+        TradingDataBatch batch = new TradingDataBatch();
+        batch.setSymbol(symbol);
+        batch.setValues(values);
+        return batch;
+    }
+
+    // First batch of each symbol one by one, the second ones in a single bulk request
+    private void addSymbols(String router) throws Exception {
+        List<TradingDataBatch> bulk = new ArrayList<>();
+        for (int s = 0; s < SYMBOLS; s++) {
+            assertEquals(200, post(router + "/add_batch/", batch("S" + s, 100, s)).statusCode());
+            bulk.add(batch("S" + s, 50, 2 * s));
+        }
+        BulkTradingDataBatch request = new BulkTradingDataBatch();
+        request.setBatches(bulk);
+        HttpResponse<String> response = post(router + "/add_batches/", request);
+        assertEquals(200, response.statusCode());
+        JsonNode results = objectMapper.readTree(response.body());
+        for (int s = 0; s < SYMBOLS; s++) {
+            assertEquals(50, results.get("S" + s).get("prices").asLong(), "S" + s);
+        }
+    }
+
+    @Test
+    void testRingIsBalancedAndAddedNodeOnlyTakesSymbols() {
+        List<String> nodes = List.of("http://a:8080", "http://b:8080", "http://c:8080", "http://d:8080");
+        ShardRing ring = new ShardRing(nodes, 160);
+        ShardRing reversed = new ShardRing(nodes.reversed(), 160);
+        ShardRing grown = ring.withNode("http://e:8080");
+
+        Map<String, Integer> owned = new HashMap<>();
+        int moved = 0;
+        int symbols = 20_000;
+        for (int s = 0; s < symbols; s++) {
+            String symbol = "SYM" + s;
+            String owner = ring.owner(symbol);
+            owned.merge(owner, 1, Integer::sum);
+            assertEquals(owner, reversed.owner(symbol));
+            if (!grown.owner(symbol).equals(owner)) {
+                assertEquals("http://e:8080", grown.owner(symbol));
+                moved++;
+            }
+        }
+        for (String node : nodes) {
+            int count = owned.getOrDefault(node, 0);
+            assertTrue(count > symbols / 4 * 0.8 && count < symbols / 4 * 1.2, node + " owns " + count);
+        }
+        assertTrue(moved > symbols / 5 * 0.8 && moved < symbols / 5 * 1.2, moved + " symbols moved");
+    }
+
+    @Test
+    void testRequestsAreServedByTheOwningNode() throws Exception {
+        ConfigurableApplicationContext first = start();
+        ConfigurableApplicationContext second = start();
+        String router = url(startRouter(url(first), url(second)));
+        addSymbols(router);
+
+        ShardRing ring = new ShardRing(List.of(url(first), url(second)), 160);
+        for (int s = 0; s < SYMBOLS; s++) {
+            String symbol = "S" + s;
+            ConfigurableApplicationContext owner = ring.owner(symbol).equals(url(first)) ? first : second;
+            ConfigurableApplicationContext other = owner == first ? second : first;
+            assertTrue(symbols(owner).contains(symbol), symbol);
+            assertFalse(symbols(other).contains(symbol), symbol);
+
+            HttpResponse<String> routed = get(router + "/stats/?symbol=" + symbol + "&k=2");
+            assertEquals(200, routed.statusCode());
+            assertEquals(get(url(owner) + "/stats/?symbol=" + symbol + "&k=2").body(), routed.body());
+            String eTag = routed.headers().firstValue("ETag").orElseThrow();
+            assertEquals(304, get(router + "/stats/?symbol=" + symbol + "&k=2", "If-None-Match", eTag).statusCode());
+            assertEquals(get(url(owner) + "/stats/window/?symbol=" + symbol + "&n=77").body(),
+                    get(router + "/stats/window/?symbol=" + symbol + "&n=77").body());
+        }
+        assertTrue(symbols(first).size() > SYMBOLS / 4 && symbols(second).size() > SYMBOLS / 4);
+
+        HttpResponse<String> tooFew = get(router + "/stats/?symbol=S1&k=3");
+        assertEquals(400, tooFew.statusCode());
+        assertTrue(tooFew.body().startsWith("Error: "), tooFew.body());
+
+        JsonNode all = objectMapper.readTree(get(router + "/stats/all/?symbols=S0,S1,S2,S3,S4,NONE").body());
+        List<String> order = new ArrayList<>();
+        all.fieldNames().forEachRemaining(order::add);
+        assertEquals(List.of("S0", "S1", "S2", "S3", "S4", "NONE"), order);
+        assertEquals(2, all.get("S3").get("version").asLong());
+        assertEquals("Symbol not found", all.get("NONE").get("error").asText());
+    }
+
+    // Writers keep adding batches through the router while a third node is added, no batch may get lost
+    @Test
+    void testAddedNodeTakesOverItsSymbols() throws Exception {
+        ConfigurableApplicationContext first = start();
+        ConfigurableApplicationContext second = start();
+        String router = url(startRouter(url(first), url(second)));
+        addSymbols(router);
+        Map<String, String> statsBefore = new HashMap<>();
+        for (int s = 0; s < SYMBOLS; s++) {
+            statsBefore.put("S" + s, get(router + "/stats/?symbol=S" + s + "&k=2").body());
+        }
+
+        ConfigurableApplicationContext third = start();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        int[] written = new int[SYMBOLS];
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            Random random = new Random(3);
+            try {
+                while (writing.get()) {
+                    int s = random.nextInt(SYMBOLS / 2);
+                    assertEquals(200, post(router + "/add_batch/", batch("W" + s, 10, s)).statusCode());
+                    written[s]++;
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        HttpResponse<String> response = post(router + "/admin/cluster/nodes/?url=" + url(third), null);
+        writing.set(false);
+        writer.join();
+
+        assertEquals(200, response.statusCode(), response.body());
+        RebalanceResult result = objectMapper.readValue(response.body(), RebalanceResult.class);
+        assertEquals(List.of(url(first), url(second), url(third)), result.getNodes());
+        assertTrue(result.getFailed().isEmpty());
+        // symbols the writer added once the node was on the ring were never moved
+        List<String> moved = symbols(third).stream().filter(symbol -> symbol.startsWith("S")).toList();
+        assertTrue(moved.size() > 0 && result.getMovedSymbols() >= moved.size());
+        assertTrue(result.getMovedSymbols() <= symbols(third).size());
+        assertEquals(List.of(url(first), url(second), url(third)),
+                objectMapper.readValue(get(router + "/admin/cluster/nodes/").body(), List.class));
+
+        ShardRing ring = new ShardRing(result.getNodes(), 160);
+        for (int s = 0; s < SYMBOLS; s++) {
+            String symbol = "S" + s;
+            String owner = ring.owner(symbol);
+            for (ConfigurableApplicationContext node : List.of(first, second, third)) {
+                assertEquals(url(node).equals(owner), symbols(node).contains(symbol), symbol + " on " + url(node));
+            }
+            // same prices and version after the move
+            assertEquals(statsBefore.get(symbol), get(router + "/stats/?symbol=" + symbol + "&k=2").body());
+        }
+        for (int s = 0; s < SYMBOLS / 2; s++) {
+            if (written[s] > 0) {
+                JsonNode stats = objectMapper.readTree(get(router + "/stats/?symbol=W" + s + "&k=1").body());
+                assertEquals(written[s], stats.get("version").asLong(), "W" + s);
+            }
+        }
+
+        String movedSymbol = moved.getFirst();
+        long version = objectMapper.readTree(statsBefore.get(movedSymbol)).get("version").asLong();
+        assertEquals(200, post(router + "/add_batch/", batch(movedSymbol, 10, 0)).statusCode());
+        assertEquals(version + 1, third.getBean(TradingStatsService.class).calculateStats(movedSymbol, 1).getVersion());
+
+        // the saved nodes take precedence over the configured ones
+        String restarted = url(startRouter(url(first), url(second)));
+        assertEquals(List.of(url(first), url(second), url(third)),
+                objectMapper.readValue(get(restarted + "/admin/cluster/nodes/").body(), List.class));
+        assertEquals(200, post(restarted + "/add_batch/", batch(movedSymbol, 10, 0)).statusCode());
+        assertEquals(version + 2, third.getBean(TradingStatsService.class).calculateStats(movedSymbol, 1).getVersion());
+    }
+
+    // A moved symbol its old node fails to remove stays routed to the new owner, the next rebalance removes the copy
+    @Test
+    void testStaleCopyOfFailedRemovalIsRemovedLater() throws Exception {
+        AtomicBoolean failDeletes = new AtomicBoolean();
+        ConfigurableApplicationContext first = start();
+        ConfigurableApplicationContext second = start();
+        String firstUrl = proxy(first, failDeletes);
+        String router = url(startRouter(firstUrl, url(second)));
+        addSymbols(router);
+
+        ConfigurableApplicationContext third = start();
+        failDeletes.set(true);
+        RebalanceResult result = objectMapper.readValue(
+                post(router + "/admin/cluster/nodes/?url=" + url(third), null).body(), RebalanceResult.class);
+        assertTrue(result.getFailed().isEmpty(), result.getFailed().toString());
+        List<String> stale = symbols(third).stream().filter(symbols(first)::contains).toList();
+        assertFalse(stale.isEmpty());
+        String symbol = stale.getFirst();
+        long version = third.getBean(TradingStatsService.class).calculateStats(symbol, 1).getVersion();
+        assertEquals(200, post(router + "/add_batch/", batch(symbol, 10, 0)).statusCode());
+        assertEquals(version + 1, third.getBean(TradingStatsService.class).calculateStats(symbol, 1).getVersion());
+
+        // still failing: reported, the symbol is neither moved back nor routed to the stale copy
+        result = objectMapper.readValue(
+                post(router + "/admin/cluster/nodes/?url=" + url(third), null).body(), RebalanceResult.class);
+        assertEquals(0, result.getMovedSymbols());
+        assertEquals(stale.size(), result.getFailed().size());
+        assertTrue(result.getFailed().get(symbol).contains("Removal from " + firstUrl + " failed"), result.getFailed().toString());
+        assertEquals(200, post(router + "/add_batch/", batch(symbol, 10, 0)).statusCode());
+        assertEquals(version + 2, third.getBean(TradingStatsService.class).calculateStats(symbol, 1).getVersion());
+
+        failDeletes.set(false);
+        result = objectMapper.readValue(
+                post(router + "/admin/cluster/nodes/?url=" + url(third), null).body(), RebalanceResult.class);
+        assertEquals(0, result.getMovedSymbols());
+        assertTrue(result.getFailed().isEmpty(), result.getFailed().toString());
+        for (String copy : stale) {
+            assertFalse(symbols(first).contains(copy), copy);
+            assertTrue(symbols(third).contains(copy), copy);
+        }
+        JsonNode stats = objectMapper.readTree(get(router + "/stats/?symbol=" + symbol + "&k=1").body());
+        assertEquals(version + 2, stats.get("version").asLong());
+    }
+
+    @Test
+    void testInvalidOrUnreachableNodeIsNotAdded() throws Exception {
+        ConfigurableApplicationContext node = start();
+        String router = url(startRouter(url(node) + "/"));
+
+        for (String invalid : List.of("ftp://localhost:8080", "localhost:8080", "http:///path", "http://localhost:8080?a=1")) {
+            HttpResponse<String> response = post(router + "/admin/cluster/nodes/?url=" + invalid, null);
+            assertEquals(400, response.statusCode(), invalid);
+            assertTrue(response.body().startsWith("Error: "), response.body());
+        }
+
+        HttpResponse<String> response = post(router + "/admin/cluster/nodes/?url=http://localhost:1", null);
+        assertEquals(500, response.statusCode());
+        RebalanceResult result = objectMapper.readValue(response.body(), RebalanceResult.class);
+        assertNotNull(result.getError());
+        assertTrue(result.getFailed().isEmpty());
+        assertEquals(List.of(url(node)), result.getNodes());
+        assertEquals(List.of(url(node)), objectMapper.readValue(get(router + "/admin/cluster/nodes/").body(), List.class));
+    }
+
+    @Test
+    void testUnavailableNodeIsReported() throws Exception {
+        ConfigurableApplicationContext node = start();
+        String router = url(startRouter(url(node), "http://localhost:1"));
+        ShardRing ring = new ShardRing(List.of(url(node), "http://localhost:1"), 160);
+        String down = null;
+        for (int s = 0; down == null; s++) {
+            down = ring.owner("S" + s).equals(url(node)) ? null : "S" + s;
+        }
+
+        HttpResponse<String> response = post(router + "/add_batch/", batch(down, 10, 0));
+        assertEquals(503, response.statusCode());
+        assertEquals("Node http://localhost:1 is unavailable.", response.body());
+        JsonNode all = objectMapper.readTree(get(router + "/stats/all/?symbols=" + down).body());
+        assertEquals("Node http://localhost:1 is unavailable.", all.get(down).get("error").asText());
+    }
+}
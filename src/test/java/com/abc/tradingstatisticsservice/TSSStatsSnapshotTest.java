@@ -0,0 +1,67 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.dto.TradingStats;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.StatsSnapshot;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TSSStatsSnapshotTest {
+
+    private TradingStatsService tradingStatsService;
+
+    @BeforeEach
+    void setUp() {
+        tradingStatsService = new TradingStatsService();
+    }
+
+    @Test
+    void testSnapshotVersionFollowsCommittedBatches() throws InsufficientDataException {
+        Float[] values = {1.0f, 2.0f, 3.0f, 4.0f, 5.0f, 6.0f, 7.0f, 8.0f, 9.0f, 10.0f};
+
+        tradingStatsService.addBatch("AAPL", values);
+        StatsSnapshot first = tradingStatsService.getSnapshot("AAPL");
+        assertEquals(1, first.getVersion());
+        assertEquals(1, tradingStatsService.calculateStats("AAPL", 1).getVersion());
+
+        tradingStatsService.addBatch("AAPL", values);
+        StatsSnapshot second = tradingStatsService.getSnapshot("AAPL");
+        assertEquals(2, second.getVersion());
+        assertEquals(2, tradingStatsService.calculateStats("AAPL", 1).getVersion());
+
+        // already published snapshot is not touched by later batches
+        assertEquals(1, first.getStats(1).getVersion());
+    }
+
+    @Test
+    void testSnapshotHoldsAllAvailableKLevels() throws InsufficientDataException {
+        Float[] values = new Float[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1f;
+        }
+        tradingStatsService.addBatch("AAPL", values);
+
+        StatsSnapshot snapshot = tradingStatsService.getSnapshot("AAPL");
+        assertNotNull(snapshot.getStats(1));
+        assertNotNull(snapshot.getStats(2));
+        assertNotNull(snapshot.getStats(3));
+        assertNull(snapshot.getStats(4));
+        assertEquals(500.5, snapshot.getStats(3).getAvg(), 0.001);
+        assertEquals(995.5, snapshot.getStats(1).getAvg(), 0.001);
+    }
+
+    @Test
+    void testRepeatedReadsReturnPrecomputedStats() throws InsufficientDataException {
+        tradingStatsService.addBatch("AAPL", new Float[]{1.0f, 2.0f, 3.0f, 4.0f, 5.0f, 6.0f, 7.0f, 8.0f, 9.0f, 10.0f});
+
+        TradingStats first = tradingStatsService.calculateStats("AAPL", 1);
+        TradingStats second = tradingStatsService.calculateStats("AAPL", 1);
+        assertSame(first, second);
+    }
+}
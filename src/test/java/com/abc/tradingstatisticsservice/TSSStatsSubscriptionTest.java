@@ -0,0 +1,174 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.StatsUpdate;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.abc.tradingstatisticsservice.subscription.StatsSubscriptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Relies on the default tss.subscriptions.interval-ms of 100
+@SpringBootTest
+@AutoConfigureMockMvc
+class TSSStatsSubscriptionTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TradingStatsService tradingStatsService;
+
+    @Autowired
+    private TradingStatsProperties properties;
+
+    private static Float[] prices(int size, float value) {
+        Float[] values = new Float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = value + i;
+        }
+        return values;
+    }
+
+    private static int events(String body) {
+        return body.split("event:stats", -1).length - 1;
+    }
+
+    // Waits for a body ending with a complete event which meets the condition
+    private static String awaitBody(MockHttpServletResponse response, Predicate<String> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        String body = response.getContentAsString();
+        while (!(body.endsWith("\n\n") && condition.test(body)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            body = response.getContentAsString();
+        }
+        return body;
+    }
+
+    @Test
+    void testSubscriberReceivesCoalescedUpdates() throws Exception {
+        tradingStatsService.addBatch("SSE", prices(10, 1));
+        MockHttpServletResponse response = mockMvc.perform(get("/stats/subscribe/").param("keys", "SSE:1,SSE:2"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        // current stats of the available level right away, level 2 once it has enough prices
+        String body = awaitBody(response, b -> events(b) == 1);
+        assertEquals(1, events(body));
+        assertTrue(body.contains("\"symbol\":\"SSE\",\"k\":1"), body);
+        assertFalse(body.contains("\"k\":2"), body);
+
+        long start = System.nanoTime();
+        int batches = 200;
+        for (int batch = 0; batch < batches; batch++) {
+            tradingStatsService.addBatch("SSE", prices(10, batch));
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        body = awaitBody(response, b -> b.contains("\"version\":" + (batches + 1)));
+        assertTrue(body.contains("\"k\":2"), body);
+        assertTrue(body.contains("\"version\":" + (batches + 1)), body);
+        // at most one event per interval, plus the ones around the start and end of the batches
+        int updates = events(body) - 1;
+        assertTrue(updates <= elapsedMs / 100 + 3, updates + " events for " + batches + " batches in " + elapsedMs + " ms");
+    }
+
+    // Emitter recording the versions of the sent updates, the first send waits for the latch when one is given
+    private static final class RecordingEmitter extends SseEmitter {
+        final BlockingQueue<List<Long>> sent = new LinkedBlockingQueue<>();
+        final CountDownLatch release;
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (release != null && sent.isEmpty()) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            for (DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof List<?> updates) {
+                    sent.add(updates.stream().map(update -> ((StatsUpdate) update).getStats().getVersion()).toList());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSlowSubscriberDoesNotDelayOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(release);
+        RecordingEmitter fast = new RecordingEmitter(null);
+        RecordingEmitter[] next = {slow, fast};
+        StatsSubscriptions subscriptions = new StatsSubscriptions(tradingStatsService, properties) {
+            private int created;
+
+            @Override
+            protected SseEmitter createEmitter(long timeoutMs) {
+                return next[created++];
+            }
+        };
+        try {
+            tradingStatsService.addBatch("SLOW", prices(10, 1));
+            subscriptions.subscribe(List.of("SLOW:1"));
+            subscriptions.subscribe(List.of("SLOW:1"));
+            assertEquals(List.of(1L), fast.sent.poll(5, TimeUnit.SECONDS));
+
+            // the slow subscriber is stuck in its first send while the fast one keeps up
+            for (int batch = 0; batch < 20; batch++) {
+                tradingStatsService.addBatch("SLOW", prices(10, batch));
+                Thread.sleep(30);
+            }
+            List<Long> last = null;
+            while (last == null || last.get(0) < 21) {
+                last = fast.sent.poll(5, TimeUnit.SECONDS);
+                assertNotNull(last, "fast subscriber did not receive version 21");
+            }
+            assertTrue(slow.sent.isEmpty());
+
+            // once released it gets its first update and the newest one, the versions in between are coalesced
+            release.countDown();
+            assertEquals(List.of(1L), slow.sent.poll(5, TimeUnit.SECONDS));
+            assertEquals(List.of(21L), slow.sent.poll(5, TimeUnit.SECONDS));
+            assertNull(slow.sent.poll(300, TimeUnit.MILLISECONDS));
+        } finally {
+            subscriptions.shutdown();
+        }
+    }
+
+    @Test
+    void testInvalidKeysAreRejected() throws Exception {
+        mockMvc.perform(get("/stats/subscribe/").param("keys", "SSE:9"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Error: Invalid kLevel: 9"));
+        mockMvc.perform(get("/stats/subscribe/").param("keys", "SSE"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Error: Invalid key 'SSE', symbol:k expected"));
+    }
+}
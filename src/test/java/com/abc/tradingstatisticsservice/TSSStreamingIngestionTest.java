@@ -0,0 +1,167 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.dto.StreamIngestResult;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.ingest.StreamingIngestor;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class TSSStreamingIngestionTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private static StreamingIngestor ingestor(TradingStatsService tradingStatsService, int microBatchSize, int queueBatches) {
+        return ingestor(tradingStatsService, microBatchSize, queueBatches, new TradingStatsProperties());
+    }
+
+    private static StreamingIngestor ingestor(TradingStatsService tradingStatsService, int microBatchSize, int queueBatches,
+                                              TradingStatsProperties properties) {
+        properties.getStream().setMicroBatchSize(microBatchSize);
+        properties.getStream().setWriterQueueBatches(queueBatches);
+        properties.getStream().setFlushIntervalMs(60_000);
+        return new StreamingIngestor(tradingStatsService, new ObjectMapper(), properties);
+    }
+
+    private static ByteArrayInputStream interleavedFrames(int pricesPerSymbol) {
+        StringBuilder frames = new StringBuilder();
+        for (int i = 1; i <= pricesPerSymbol; i++) {
+            frames.append("{\"symbol\":\"AAPL\",\"value\":").append(i).append("}\n");
+            frames.append("{\"symbol\":\"MSFT\",\"values\":[").append(i).append(',').append(2 * i).append("]}\n");
+        }
+        return new ByteArrayInputStream(frames.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testInterleavedFramesAreCoalescedPerSymbol() throws IOException, InsufficientDataException {
+        TradingStatsService tradingStatsService = new TradingStatsService();
+        StreamingIngestor streamingIngestor = ingestor(tradingStatsService, 1000, 2);
+
+        StreamIngestResult result = streamingIngestor.ingest(interleavedFrames(10_000));
+
+        assertNull(result.getError());
+        assertEquals(20_000, result.getFrames());
+        assertEquals(30_000, result.getPrices());
+        assertEquals(30, result.getBatches());
+        assertEquals(5000.5, tradingStatsService.calculateStats("AAPL", 4).getAvg(), 0.001);
+        assertEquals(10000.0, tradingStatsService.calculateStats("AAPL", 1).getLast());
+        assertEquals(20000.0, tradingStatsService.calculateStats("MSFT", 1).getLast());
+        streamingIngestor.shutdown();
+    }
+
+    @Test
+    void testSlowWriterBlocksStreamReader() throws IOException {
+        TradingStatsService slowService = new TradingStatsService() {
+            @Override
+            public void addBatch(String symbol, FloatBuffer values) throws InsufficientDataException {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.addBatch(symbol, values);
+            }
+        };
+        StreamingIngestor streamingIngestor = ingestor(slowService, 100, 1);
+
+        StreamIngestResult result = streamingIngestor.ingest(interleavedFrames(2_000));
+
+        assertEquals(6_000, result.getPrices());
+        assertTrue(result.getBackpressureWaitMs() > 0, "Reader should have waited for the writer");
+        streamingIngestor.shutdown();
+    }
+
+    @Test
+    void testMalformedFrameStopsStreamKeepingEarlierFrames() throws IOException, InsufficientDataException {
+        TradingStatsService tradingStatsService = new TradingStatsService();
+        StreamingIngestor streamingIngestor = ingestor(tradingStatsService, 1000, 2);
+        String frames = "{\"symbol\":\"AAPL\",\"values\":[1,2,3,4,5,6,7,8,9,10]}\n{\"values\":[11]}\n{\"symbol\":\"AAPL\",\"value\":12}\n";
+
+        StreamIngestResult result = streamingIngestor.ingest(new ByteArrayInputStream(frames.getBytes(StandardCharsets.UTF_8)));
+
+        assertNotNull(result.getError());
+        assertEquals(10, result.getPrices());
+        assertEquals(10.0, tradingStatsService.calculateStats("AAPL", 1).getLast());
+        streamingIngestor.shutdown();
+    }
+
+    // Many distinct symbols only keep a few partial micro-batches, idle writers stop and start again on demand
+    @Test
+    void testPendingSymbolsAreCappedAndIdleWritersStop() throws Exception {
+        TradingStatsService tradingStatsService = new TradingStatsService();
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getStream().setMaxPendingSymbols(4);
+        properties.getStream().setWriterIdleMs(300);
+        StreamingIngestor streamingIngestor = ingestor(tradingStatsService, 1000, 2, properties);
+        StringBuilder frames = new StringBuilder();
+        for (int round = 1; round <= 3; round++) {
+            for (int s = 0; s < 100; s++) {
+                frames.append("{\"symbol\":\"SYM").append(s).append("\",\"value\":").append(round).append("}\n");
+            }
+        }
+
+        StreamIngestResult result = streamingIngestor.ingest(new ByteArrayInputStream(frames.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertNull(result.getError());
+        assertEquals(300, result.getPrices());
+        // every frame evicts the oldest pending symbol, so each price is its own micro-batch
+        assertEquals(300, result.getBatches());
+        assertEquals(3, tradingStatsService.getSnapshot("SYM7").getItemCount());
+        assertTrue(streamingIngestor.getActiveWriters() > 0);
+        for (int attempt = 0; attempt < 100 && streamingIngestor.getActiveWriters() > 0; attempt++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, streamingIngestor.getActiveWriters());
+
+        tradingStatsService.removeSymbol("SYM7");
+        result = streamingIngestor.ingest(new ByteArrayInputStream("{\"symbol\":\"SYM7\",\"values\":[5,6,7,8,9,10,11,12,13,14]}\n"
+                .getBytes(StandardCharsets.UTF_8)));
+        assertEquals(10, result.getPrices());
+        assertEquals(9.5, tradingStatsService.calculateStats("SYM7", 1).getAvg());
+        streamingIngestor.shutdown();
+    }
+
+    @Test
+    void testStreamEndpoint() throws Exception {
+        StringBuilder frames = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            frames.append("{\"symbol\":\"STREAM\",\"value\":").append(i).append("}\n");
+        }
+
+        mockMvc.perform(post("/add_stream/")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(frames.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.frames").value(10))
+                .andExpect(jsonPath("$.prices").value(10));
+
+        mockMvc.perform(get("/stats/")
+                        .param("symbol", "STREAM")
+                        .param("k", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.avg").value(5.5));
+    }
+}
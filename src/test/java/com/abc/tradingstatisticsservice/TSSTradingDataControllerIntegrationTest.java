@@ -48,5 +48,42 @@ class TSSTradingDataControllerIntegrationTest {
                 .andExpect(jsonPath("$.max").value(10.0))
                 .andExpect(jsonPath("$.last").value(10.0));
     }
+
+    @Test
+    void testStatsNotModifiedUntilNextBatch() throws Exception {
+        TradingDataBatch batch = new TradingDataBatch();
+        batch.setSymbol("ETAG");
+        batch.setValues(new Float[]{1.0f, 2.0f, 3.0f, 4.0f, 5.0f, 6.0f, 7.0f, 8.0f, 9.0f, 10.0f});
+
+        mockMvc.perform(post("/add_batch/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/stats/")
+                        .param("symbol", "ETAG")
+                        .param("k", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.version").value(1));
+
+        mockMvc.perform(get("/stats/")
+                        .param("symbol", "ETAG")
+                        .param("k", "1")
+                        .header("If-None-Match", "\"1\""))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/add_batch/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/stats/")
+                        .param("symbol", "ETAG")
+                        .param("k", "1")
+                        .header("If-None-Match", "\"1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""));
+    }
 }
 
@@ -0,0 +1,97 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.persistence.FsyncPolicy;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.threads.virtual.enabled=true")
+class TSSVirtualThreadsTest {
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    private static Float[] prices(int size, int offset) {
+        Float[] values = new Float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = 50f + (offset + i) % 17;
+        }
+        return values;
+    }
+
+    @Test
+    void testRequestsRunOnVirtualThreads() throws Exception {
+        TomcatWebServer webServer = (TomcatWebServer) context.getWebServer();
+        Executor executor = webServer.getTomcat().getConnector().getProtocolHandler().getExecutor();
+        CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+        executor.execute(() -> virtual.complete(Thread.currentThread().isVirtual()));
+        assertTrue(virtual.get());
+    }
+
+    // Writers queue up on two hot symbols and on the fsync of every batch, waiting must unmount them
+    @Test
+    void testWritersWaitingForBusySymbolsDoNotPinCarriers() throws Exception {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(directory);
+        properties.getPersistence().setFsync(FsyncPolicy.ALWAYS);
+        TradingStatsService service = new TradingStatsService(properties);
+        service.addBatch("HOT0", prices(1_000, 0));
+        service.addBatch("HOT1", prices(1_000, 0));
+
+        Path events = directory.resolve("pinned.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            try (ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> requests = new ArrayList<>();
+                for (int w = 0; w < 200; w++) {
+                    int writer = w;
+                    requests.add(writers.submit(() -> {
+                        for (int batch = 0; batch < 5; batch++) {
+                            service.addBatch("HOT" + writer % 2, prices(100, writer + batch));
+                            service.calculateStats("HOT" + (writer + 1) % 2, 3);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> request : requests) {
+                    request.get();
+                }
+            }
+            recording.stop();
+            recording.dump(events);
+        }
+        service.close();
+
+        List<RecordedEvent> pinned = RecordingFile.readAllEvents(events);
+        assertEquals(List.of(), pinned.stream().map(event -> String.valueOf(event.getStackTrace())).toList());
+        assertEquals(2_000 + 200 * 5 * 100,
+                service.getSnapshot("HOT0").getItemCount() + service.getSnapshot("HOT1").getItemCount());
+    }
+}
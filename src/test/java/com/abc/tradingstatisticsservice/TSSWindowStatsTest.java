@@ -0,0 +1,88 @@
+package com.abc.tradingstatisticsservice;
+
+import com.abc.tradingstatisticsservice.aggregation.AccumulatorMode;
+import com.abc.tradingstatisticsservice.aggregation.AggregationMode;
+import com.abc.tradingstatisticsservice.aggregation.BlockPrefixSums;
+import com.abc.tradingstatisticsservice.aggregation.PriceAccumulator;
+import com.abc.tradingstatisticsservice.config.TradingStatsProperties;
+import com.abc.tradingstatisticsservice.exception.InsufficientDataException;
+import com.abc.tradingstatisticsservice.service.TradingStatsService;
+import com.abc.tradingstatisticsservice.storage.PriceHistory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TSSWindowStatsTest {
+
+    @Test
+    void testPrefixSumsMatchBruteForceAcrossBlocksAndWrapping() {
+        int capacity = 10_000;
+        PriceHistory history = new PriceHistory(capacity);
+        BlockPrefixSums sums = new BlockPrefixSums(history, AccumulatorMode.BIG_DECIMAL);
+        Random random = new Random(9);
+
+        for (int i = 0; i < 3 * capacity + 321; i++) {
+            float value = Math.round(random.nextFloat() * 100_000) / 100f;
+            history.append(value);
+            sums.onAppend(value);
+
+            if (i % 997 == 0) {
+                // an index rebuilt from the wrapped history has to give the same answers
+                BlockPrefixSums rebuilt = new BlockPrefixSums(history, AccumulatorMode.BIG_DECIMAL);
+                for (long[] range : new long[][]{{0, 1}, {0, 10}, {0, 1025}, {10, 4000}, {1000, 2100}, {0, history.size()}}) {
+                    if (range[1] > history.size()) {
+                        continue;
+                    }
+                    PriceAccumulator expected = AccumulatorMode.BIG_DECIMAL.newAccumulator();
+                    for (long sequence = history.written() - range[1]; sequence < history.written() - range[0]; sequence++) {
+                        expected.add(history.get(sequence));
+                    }
+                    for (BlockPrefixSums index : List.of(sums, rebuilt)) {
+                        PriceAccumulator actual = AccumulatorMode.BIG_DECIMAL.newAccumulator();
+                        index.accumulateBetween(range[0], range[1], actual);
+                        String message = "range " + range[0] + ".." + range[1] + " after " + i;
+                        assertEquals(0, expected.sum().compareTo(actual.sum()), message);
+                        assertEquals(0, expected.squaredSum().compareTo(actual.squaredSum()), message);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testAnyWindowMatchesAcrossModesAndKLevels() throws InsufficientDataException {
+        TradingStatsService lazy = serviceWithMode(AggregationMode.LAZY);
+        List<TradingStatsService> indexed = List.of(serviceWithMode(AggregationMode.EAGER), serviceWithMode(AggregationMode.HYBRID));
+
+        Random random = new Random(13);
+        for (int batch = 0; batch < 5; batch++) {
+            Float[] values = new Float[2_345];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Math.round((100 + random.nextGaussian() * 5) * 100) / 100f;
+            }
+            lazy.addBatch("AAPL", values);
+            for (TradingStatsService service : indexed) {
+                service.addBatch("AAPL", values);
+            }
+        }
+
+        for (long n : new long[]{1, 10, 500, 1000, 2_500, 11_725}) {
+            for (TradingStatsService service : indexed) {
+                assertEquals(lazy.calculateWindowStats("AAPL", n), service.calculateWindowStats("AAPL", n), "n=" + n);
+            }
+        }
+        assertEquals(lazy.calculateStats("AAPL", 3), indexed.get(0).calculateWindowStats("AAPL", 1000));
+        assertThrows(InsufficientDataException.class, () -> lazy.calculateWindowStats("AAPL", 11_726));
+        assertThrows(InsufficientDataException.class, () -> lazy.calculateWindowStats("AAPL", 0));
+    }
+
+    private static TradingStatsService serviceWithMode(AggregationMode mode) {
+        TradingStatsProperties properties = new TradingStatsProperties();
+        properties.setAggregationMode(mode);
+        return new TradingStatsService(properties);
+    }
+}